@@ -0,0 +1,51 @@
+package chess.benchmarks;
+
+/**
+ * Corpus of positions used by the benchmarks.
+ *
+ * <p>Positions are written in Forsyth-Edwards Notation (FEN), and can be
+ * loaded using {@link chess.Game#Game(CharSequence)}.
+ *
+ * @author Dan Bryce
+ */
+public abstract class Positions {
+
+    /**
+     * Ruy Lopez, after 1. e4 e5 2. Nf3 Nc6 3. Bb5 a6.
+     */
+    public static final String OPENING =
+            "r1bqkbnr/1ppp1ppp/p1n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 0 4";
+
+    /**
+     * "Kiwipete", a middlegame position with many captures, pins and castling
+     * options.
+     */
+    public static final String MIDDLEGAME =
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    /**
+     * Rook and pawns endgame.
+     */
+    public static final String ENDGAME =
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+
+    /**
+     * Gets the FEN for the position with the given name.
+     *
+     * @param name
+     * @return
+     */
+    public static String get(String name) {
+        switch (name){
+        case "opening":
+            return OPENING;
+        case "middlegame":
+            return MIDDLEGAME;
+        case "endgame":
+            return ENDGAME;
+        default:
+            throw new IllegalArgumentException("Unknown position: " + name);
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package chess.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import chess.Action;
+import chess.Bitboards;
+import chess.Game;
+import chess.GamePiece.Player;
+import chess.MoveList;
+
+/**
+ * Benchmarks for the hot paths of the rules engine.
+ *
+ * <p>Each benchmark is run against every position in the corpus (see
+ * {@link Positions}).
+ *
+ * @author Dan Bryce
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RulesBenchmark {
+
+    @Param({ "opening", "middlegame", "endgame" })
+    private String position;
+
+    private Game game;
+
+    private MoveList moves;
+
+    private List<Action> actions;
+
+    @Setup
+    public void setUp() {
+        game = new Game(Positions.get(position));
+        moves = new MoveList();
+
+        MoveList validMoves = new MoveList();
+        game.getValidMoves(validMoves);
+        actions = new ArrayList<>();
+        for (int i = 0; i < validMoves.size(); i++){
+            actions.add(game.createAction(validMoves.get(i)));
+        }
+    }
+
+    /**
+     * Runs all benchmarks, reporting allocation rates as well as timings.
+     *
+     * <p>Any arguments are passed through to JMH, so this can be used like
+     * the standard JMH launcher.
+     *
+     * @param args
+     * @throws CommandLineOptionException
+     * @throws RunnerException
+     */
+    public static void main(String[] args)
+            throws CommandLineOptionException, RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(RulesBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    @Benchmark
+    public MoveList generateValidMoves() {
+        game.getValidMoves(moves);
+        return moves;
+    }
+
+    /**
+     * Tests every square against both players.
+     *
+     * @param blackhole
+     */
+    @Benchmark
+    public void isSquareAttackedByPlayer(Blackhole blackhole) {
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++){
+            blackhole.consume(
+                    game.isSquareAttackedByPlayer(square, Player.WHITE));
+            blackhole.consume(
+                    game.isSquareAttackedByPlayer(square, Player.BLACK));
+        }
+    }
+
+    @Benchmark
+    public boolean determineGameOver() {
+        game.determineGameOver();
+        return game.isGameOver();
+    }
+
+    /**
+     * Executes and undoes every valid action in turn.
+     */
+    @Benchmark
+    public void executeAndUndo() {
+        for (int i = 0; i < actions.size(); i++){
+            Action action = actions.get(i);
+            action.execute(game);
+            action.undo(game);
+        }
+    }
+
+}
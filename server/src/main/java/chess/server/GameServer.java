@@ -0,0 +1,124 @@
+package chess.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import chess.profiling.RulesProfiler;
+
+/**
+ * Headless server that hosts any number of games at once.
+ *
+ * <p>Each connection gets its own game (see {@link Session}), which is played
+ * using a simple line-based text protocol. Every connection is served by its
+ * own virtual thread, so thousands of mostly-idle connections cost very
+ * little, and since sessions share no mutable state, they never wait for
+ * each other.
+ *
+ * <p>Usage:
+ *
+ * <ul>
+ *  <li>No arguments: listen on the default TCP port, on the loopback
+ *  interface only.</li>
+ *  <li>A number: listen on that TCP port, on the loopback interface only.
+ *  </li>
+ *  <li>Anything else: listen on a Unix domain socket at that path.</li>
+ * </ul>
+ *
+ * <p>The address may be preceded by "--profile", which switches on the
+ * {@link RulesProfiler} for the lifetime of the server. Its report is
+ * printed to standard error every minute, and when the server shuts down.
+ * Clients cannot change or read the profiler.
+ *
+ * @author Dan Bryce
+ */
+public abstract class GameServer {
+
+    private static final int DEFAULT_PORT = 7777;
+
+    private static final String PROFILE_OPTION = "--profile";
+
+    private static final long PROFILE_REPORT_SECONDS = 60;
+
+    /**
+     * The entry point of the application.
+     *
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        int i = 0;
+        boolean profile = args.length > 0 && args[0].equals(PROFILE_OPTION);
+        if (profile){
+            i++;
+        }
+        SocketAddress address = args.length == i
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                        DEFAULT_PORT)
+                : parseAddress(args[i]);
+        if (profile){
+            startProfiling();
+        }
+
+        try (ServerSocketChannel server = open(address);
+                ExecutorService sessions =
+                        Executors.newVirtualThreadPerTaskExecutor()){
+            System.out.println("Listening on " + address);
+            while (true){
+                SocketChannel channel = server.accept();
+                sessions.submit(new Session(channel));
+            }
+        }
+    }
+
+    /**
+     * Switches on the RulesProfiler, and prints its report regularly and at
+     * shutdown.
+     */
+    private static void startProfiling() {
+        RulesProfiler.setEnabled(true);
+        ScheduledExecutorService reporter =
+                Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "Profile reporter");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        reporter.scheduleAtFixedRate(GameServer::printProfile,
+                PROFILE_REPORT_SECONDS, PROFILE_REPORT_SECONDS,
+                TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(GameServer::printProfile, "Profile reporter"));
+    }
+
+    private static void printProfile() {
+        System.err.print(RulesProfiler.getReport());
+        System.err.flush();
+    }
+
+    private static SocketAddress parseAddress(String arg) {
+        if (arg.chars().allMatch(Character::isDigit)){
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    Integer.parseInt(arg));
+        }
+        return UnixDomainSocketAddress.of(arg);
+    }
+
+    private static ServerSocketChannel open(SocketAddress address)
+            throws IOException {
+        ServerSocketChannel server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        server.bind(address);
+        return server;
+    }
+
+}
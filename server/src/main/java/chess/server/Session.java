@@ -0,0 +1,251 @@
+package chess.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import chess.Fen;
+import chess.Game;
+import chess.GamePiece.Player;
+import chess.MoveList;
+import chess.Moves;
+
+/**
+ * A single game, played over a connection to the {@link GameServer}.
+ *
+ * <p>The client sends one command per line, and the server responds to each
+ * with a single line. Moves are given in coordinate notation, for example,
+ * "e2e4", or "e7e8q" for a promotion.
+ *
+ * <pre>
+ *  Command          Response
+ *  -------          --------
+ *  new [fen]        ok
+ *  move e2e4        ok
+ *  undo             ok
+ *  moves            moves e2e3 e2e4 ...
+ *  moves e2         moves e2e3 e2e4
+ *  state            state white playing
+ *  fen              fen rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w ...
+ *  quit             (connection is closed)
+ * </pre>
+ *
+ * <p>The state is the player to move, followed by one of "playing", "check",
+ * "checkmate", "stalemate", "repetition" or "fifty-move". A new game
+ * starts from the standard position, unless another position is given in
+ * Forsyth-Edwards Notation (FEN).
+ *
+ * <p>If a command fails, the response is "error", followed by a reason.
+ * A command longer than 256 characters gets the error "line too long",
+ * and the connection is closed.
+ *
+ * <p>The Game belongs to this Session alone, and is only ever used by the
+ * thread running the Session.
+ *
+ * @author Dan Bryce
+ */
+class Session implements Runnable {
+
+    private static final String OK = "ok";
+
+    /**
+     * The longest command accepted, in characters.
+     *
+     * <p>This is plenty for any FEN, and stops a client from using up the
+     * server's memory with an endless line.
+     */
+    private static final int MAX_LINE_LENGTH = 256;
+
+    private final SocketChannel channel;
+
+    private Game game = new Game();
+
+    /**
+     * Reused when building responses.
+     */
+    private final StringBuilder response = new StringBuilder();
+
+    /**
+     * Reused when reading commands.
+     */
+    private final StringBuilder lineBuffer =
+            new StringBuilder(MAX_LINE_LENGTH);
+
+    Session(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void run() {
+        try (SocketChannel channel = this.channel;
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        Channels.newInputStream(channel),
+                        StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        Channels.newOutputStream(channel),
+                        StandardCharsets.UTF_8))){
+            String line;
+            while ((line = readLine(in)) != null){
+                if (line.length() > MAX_LINE_LENGTH){
+                    out.write(error("line too long"));
+                    out.write('\n');
+                    break;
+                }
+                String response = handle(line.trim());
+                if (response == null){
+                    break;
+                }
+                out.write(response);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The connection was lost; there is no-one left to tell
+        }
+    }
+
+    /**
+     * Reads a line, without its line terminator.
+     *
+     * <p>Unlike {@link BufferedReader#readLine()}, this gives up as soon as
+     * the line is longer than {@link #MAX_LINE_LENGTH}.
+     *
+     * @param in
+     * @return The line, or null at the end of the stream. If the line was
+     *      too long, only its first MAX_LINE_LENGTH + 1 characters are
+     *      returned.
+     * @throws IOException
+     */
+    private String readLine(Reader in) throws IOException {
+        lineBuffer.setLength(0);
+        int c;
+        while ((c = in.read()) != -1){
+            if (c == '\n'){
+                return lineBuffer.toString();
+            }
+            lineBuffer.append((char) c);
+            if (lineBuffer.length() > MAX_LINE_LENGTH){
+                return lineBuffer.toString();
+            }
+        }
+        return lineBuffer.length() == 0 ? null : lineBuffer.toString();
+    }
+
+    /**
+     * Carries out a command.
+     *
+     * @param command
+     * @return The response, or null if the connection should be closed.
+     */
+    private String handle(String command) {
+        String[] args = command.split("\\s+", 2);
+        switch (args[0]){
+        case "new":
+            return args.length == 1 ? newGame(Fen.START_POSITION)
+                    : newGame(args[1]);
+        case "move":
+            return args.length == 2
+                    ? move(args[1])
+                    : error("usage: move e2e4");
+        case "undo":
+            return undo();
+        case "moves":
+            return args.length == 1 ? moves(null) : moves(args[1]);
+        case "state":
+            return state();
+        case "fen":
+            return "fen " + game.toFen();
+        case "quit":
+            return null;
+        default:
+            return error("unknown command");
+        }
+    }
+
+    private String newGame(String fen) {
+        try {
+            game = new Game(fen);
+        } catch (IllegalArgumentException e) {
+            return error("invalid position");
+        }
+        game.determineGameOver();
+        return OK;
+    }
+
+    private String move(String name) {
+        if (game.isGameOver()){
+            return error("game over");
+        }
+        int move = Moves.parse(game, name);
+        if (move == Moves.NONE){
+            return error("illegal move");
+        }
+        game.play(move);
+        return OK;
+    }
+
+    private String undo() {
+        if (!game.canUndo()){
+            return error("nothing to undo");
+        }
+        game.undo();
+        return OK;
+    }
+
+    private String moves(String squareName) {
+        int from = Game.NO_SQUARE;
+        if (squareName != null){
+            if (squareName.length() != 2){
+                return error("invalid square");
+            }
+            from = Moves.parseSquare(squareName, 0);
+            if (from == Game.NO_SQUARE){
+                return error("invalid square");
+            }
+        }
+
+        response.setLength(0);
+        response.append("moves");
+        if (!game.isGameOver()){
+            MoveList moves = game.getLegalMoves();
+            for (int i = 0; i < moves.size(); i++){
+                int move = moves.get(i);
+                if (from == Game.NO_SQUARE || Moves.getFrom(move) == from){
+                    response.append(' ').append(Moves.toString(move));
+                }
+            }
+        }
+        return response.toString();
+    }
+
+    private String state() {
+        Player player = game.getCurrentPlayer();
+        return "state " + player.name().toLowerCase() + " " + getStatus();
+    }
+
+    private String getStatus() {
+        boolean inCheck = game.isPlayerInCheck(game.getCurrentPlayer());
+        if (!game.isGameOver()){
+            return inCheck ? "check" : "playing";
+        }
+        if (game.getLegalMoves().isEmpty()){
+            return inCheck ? "checkmate" : "stalemate";
+        }
+        if (game.isThreefoldRepetition()){
+            return "repetition";
+        }
+        return "fifty-move";
+    }
+
+    private static String error(String reason) {
+        return "error " + reason;
+    }
+
+}
@@ -6,41 +6,45 @@ package chess;
  * <p>Crucially, every Action must be reversable without side-effects, in order
  * to support the "undo" functionality.
  *
+ * <p>Each Action wraps a move in the packed format described in
+ * {@link Moves}, which is what the Game actually executes. Actions are only
+ * created for the moves that are played (see {@link Game#play}), so that
+ * they can be undone and redone.
+ *
  * @author Dan Bryce
  */
 public abstract class Action {
 
     protected GamePiece piece;
 
-    /**
-     * The position on the game board representing this action.
-     *
-     * <p>Note that this is not necessarily the "destination" of the move (in
-     * the case of castling, for example); it is just the square that, when
-     * clicked, will cause this move to be carried out.
-     */
-    protected int x, y;
+    protected int move;
 
-    public Action(GamePiece piece, int x, int y) {
+    public Action(GamePiece piece, int move) {
         this.piece = piece;
-        this.x = x;
-        this.y = y;
-    }
-
-    public int getX() {
-        return x;
-    }
-
-    public int getY() {
-        return y;
+        this.move = move;
     }
 
     public abstract void execute(Game game);
 
     public abstract void undo(Game game);
 
+    /**
+     * Carries out this Action again after it has been undone.
+     *
+     * <p>By default, this is the same as executing it.
+     *
+     * @param game
+     */
+    public void redo(Game game) {
+        execute(game);
+    }
+
     public GamePiece getPiece() {
         return piece;
     }
 
+    public int getMove() {
+        return move;
+    }
+
 }
@@ -0,0 +1,350 @@
+package chess;
+
+import chess.GamePiece.Player;
+
+/**
+ * Precomputed attack tables for each type of piece.
+ *
+ * <p>Knight, King and Pawn attacks depend only on the square, so they are
+ * stored in simple lookup tables. Rook and Bishop attacks also depend on which
+ * squares are occupied; for these we use "magic bitboards", whereby the
+ * relevant occupied squares are multiplied by a magic number to produce an
+ * index into a table of attacks.
+ *
+ * <p>All tables are built once when this class is loaded. After that, every
+ * query is a few array lookups and never allocates.
+ *
+ * @author Dan Bryce
+ */
+public abstract class Attacks {
+
+    private static final long[] KNIGHT_ATTACKS =
+            new long[Bitboards.NUM_SQUARES];
+
+    private static final long[] KING_ATTACKS =
+            new long[Bitboards.NUM_SQUARES];
+
+    /**
+     * Pawn attacks, indexed by player and then square.
+     */
+    private static final long[][] PAWN_ATTACKS =
+            new long[Player.values().length][Bitboards.NUM_SQUARES];
+
+    private static final Magic[] ROOK_MAGICS =
+            new Magic[Bitboards.NUM_SQUARES];
+
+    private static final Magic[] BISHOP_MAGICS =
+            new Magic[Bitboards.NUM_SQUARES];
+
+    /**
+     * Squares strictly between two squares, indexed by both squares, if they
+     * share a rank, file or diagonal; otherwise empty.
+     */
+    private static final long[][] BETWEEN =
+            new long[Bitboards.NUM_SQUARES][Bitboards.NUM_SQUARES];
+
+    /**
+     * The entire line through two squares (from one edge of the board to the
+     * other), indexed by both squares, if they share a rank, file or
+     * diagonal; otherwise empty.
+     */
+    private static final long[][] LINE =
+            new long[Bitboards.NUM_SQUARES][Bitboards.NUM_SQUARES];
+
+    /**
+     * Shared table of sliding attacks for all Rook and Bishop magics.
+     *
+     * <p>Each Magic owns a contiguous region of this table, starting at its
+     * offset.
+     */
+    private static final long[] SLIDING_ATTACKS;
+
+    /**
+     * Magic numbers for Rook attacks on each square.
+     *
+     * <p>These were found by a simple random search: any number that maps
+     * every relevant occupancy to an index holding the correct attacks will
+     * do. Searching takes too long to do every time the game starts.
+     */
+    private static final long[] ROOK_MAGIC_NUMBERS = {
+            0x008000908064C000L, 0x0040200040001000L,
+            0x0180100080A0010AL, 0x8880041000800800L,
+            0x1200100201200804L, 0x0200020004011008L,
+            0x2180010000800600L, 0x0200005088210204L,
+            0x0000800080204001L, 0x1000804000802001L,
+            0x8240801000200080L, 0x8611001004200900L,
+            0x008180800C001800L, 0x0100800200800400L,
+            0x0A02000102000408L, 0x8020802300104280L,
+            0x0080004000402000L, 0xE010104000402000L,
+            0x0800808010002000L, 0xA280210008100100L,
+            0x0001818014000800L, 0xA002010100080400L,
+            0x0008040088020130L, 0x0001020004048845L,
+            0x0081826280004004L, 0x2020810900284000L,
+            0x0200100080802000L, 0x0200080080100080L,
+            0x8083080100100500L, 0x4406000901000400L,
+            0x0005020080800100L, 0x0090204200008114L,
+            0x0010400094800420L, 0x0900804000802002L,
+            0x0201001841002000L, 0x4100080080801000L,
+            0x4540040080800800L, 0x0000800400800200L,
+            0x9281800100808200L, 0x8004048102000854L,
+            0x4420802040008006L, 0x0880500020004002L,
+            0x0801200241050010L, 0x8400080010008080L,
+            0x0008000500090010L, 0x0082009084020008L,
+            0x4012000108020004L, 0x9000104D08860004L,
+            0x2004204114800100L, 0x0148802112400300L,
+            0x0202842000100880L, 0x001B080080900080L,
+            0x001A002008100600L, 0x0004008004020080L,
+            0x5181000600040300L, 0x0000044401128A00L,
+            0x8044110480002441L, 0x1023012082044112L,
+            0x00804080200A0012L, 0x000420310A004A42L,
+            0x0023001004020801L, 0x0882001008040102L,
+            0x000230088118020CL, 0x0000019025040042L
+    };
+
+    /**
+     * Magic numbers for Bishop attacks on each square.
+     *
+     * @see #ROOK_MAGIC_NUMBERS
+     */
+    private static final long[] BISHOP_MAGIC_NUMBERS = {
+            0x1010220204082A00L, 0x80E0020202002804L,
+            0x2008480104200020L, 0x000220920280002DL,
+            0x32040421000B0284L, 0x1002080404000400L,
+            0x0004160892080040L, 0x2203024206204201L,
+            0x0002404264010200L, 0x1120908408428124L,
+            0xB100424403002280L, 0x240008060440C288L,
+            0x2040040420490400L, 0x0100620210040022L,
+            0x0400084104202028L, 0x0010050080908820L,
+            0x0C90A04490824802L, 0x000200A008210130L,
+            0x0C08001000204010L, 0x0008000186014480L,
+            0x0601044820080021L, 0x0002000101013100L,
+            0x1400A08108080204L, 0x0250401104485410L,
+            0x4820240810142843L, 0x0009142A20182200L,
+            0x0848140048440020L, 0x2020120000400440L,
+            0x0108840200802003L, 0x0009070082009492L,
+            0x020C0C0038424245L, 0xCA44005808210410L,
+            0x8011212000500404L, 0x2028840510101008L,
+            0x0004042A00041400L, 0x0624020080980080L,
+            0x1820410040840040L, 0x2201004202050100L,
+            0x402A088A24040224L, 0x0242061040002400L,
+            0x90020202400821A0L, 0x00C9009004E01002L,
+            0x58C2060202023100L, 0x0000012214040800L,
+            0x0210846810100200L, 0x0004208081010200L,
+            0x01A4108404442100L, 0x8054082C80280106L,
+            0x0004144904104208L, 0x00324C0A11104000L,
+            0x1000020231040100L, 0x2080001042020004L,
+            0x0544021020288104L, 0x1103501408083020L,
+            0x4010451004960002L, 0x003010091C44902CL,
+            0x0102402884202000L, 0x0480804C00841086L,
+            0x04602C8602210400L, 0x0000004000420200L,
+            0x0040000020442C18L, 0x4483804089094100L,
+            0x80000B0248020400L, 0x0045010808008680L
+    };
+
+    /**
+     * The magic lookup parameters for a single square.
+     */
+    private static class Magic {
+
+        /**
+         * Squares whose occupancy affects the attacks from this square.
+         *
+         * <p>This excludes the edges of the board, since a piece on the edge
+         * can never block anything beyond it.
+         */
+        final long mask;
+
+        final long magic;
+        final int shift;
+        final int offset;
+
+        Magic(long mask, long magic, int shift, int offset) {
+            this.mask = mask;
+            this.magic = magic;
+            this.shift = shift;
+            this.offset = offset;
+        }
+
+        int index(long occupied) {
+            return offset + (int) (((occupied & mask) * magic) >>> shift);
+        }
+
+    }
+
+    static {
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++){
+            KNIGHT_ATTACKS[square] = Bitboards.knightAttacks(square);
+            KING_ATTACKS[square] = Bitboards.kingAttacks(square);
+            for (Player player : Player.values()){
+                PAWN_ATTACKS[player.ordinal()][square] =
+                        Bitboards.pawnAttacks(player, square);
+            }
+        }
+
+        int size = 0;
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++){
+            size += 1 << Long.bitCount(getRelevantMask(square, true));
+            size += 1 << Long.bitCount(getRelevantMask(square, false));
+        }
+        SLIDING_ATTACKS = new long[size];
+
+        int offset = 0;
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++){
+            ROOK_MAGICS[square] = createMagic(square, true,
+                    ROOK_MAGIC_NUMBERS[square], offset);
+            offset += 1 << (64 - ROOK_MAGICS[square].shift);
+            BISHOP_MAGICS[square] = createMagic(square, false,
+                    BISHOP_MAGIC_NUMBERS[square], offset);
+            offset += 1 << (64 - BISHOP_MAGICS[square].shift);
+        }
+
+        for (int a = 0; a < Bitboards.NUM_SQUARES; a++){
+            for (int b = 0; b < Bitboards.NUM_SQUARES; b++){
+                if (a == b){
+                    continue;
+                }
+                long bitA = Bitboards.bit(a);
+                long bitB = Bitboards.bit(b);
+                if ((rook(a, 0) & bitB) != 0){
+                    BETWEEN[a][b] = rook(a, bitB) & rook(b, bitA);
+                    LINE[a][b] = (rook(a, 0) & rook(b, 0)) | bitA | bitB;
+                } else if ((bishop(a, 0) & bitB) != 0){
+                    BETWEEN[a][b] = bishop(a, bitB) & bishop(b, bitA);
+                    LINE[a][b] = (bishop(a, 0) & bishop(b, 0)) | bitA | bitB;
+                }
+            }
+        }
+    }
+
+    public static long knight(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long king(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * Gets the squares attacked by a Pawn belonging to the given player.
+     *
+     * <p>Since Pawn attacks are symmetrical, this can also be used in reverse:
+     * the squares from which a Pawn belonging to one player could attack a
+     * square are the squares attacked by an opposing Pawn on that square.
+     *
+     * @param player
+     * @param square
+     * @return
+     */
+    public static long pawn(Player player, int square) {
+        return PAWN_ATTACKS[player.ordinal()][square];
+    }
+
+    public static long rook(int square, long occupied) {
+        return SLIDING_ATTACKS[ROOK_MAGICS[square].index(occupied)];
+    }
+
+    public static long bishop(int square, long occupied) {
+        return SLIDING_ATTACKS[BISHOP_MAGICS[square].index(occupied)];
+    }
+
+    public static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    /**
+     * Gets the squares strictly between the two given squares, if they share
+     * a rank, file or diagonal.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * Gets the entire line through the two given squares, if they share a
+     * rank, file or diagonal.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * Gets the squares whose occupancy affects the attacks of a sliding piece
+     * on the given square.
+     *
+     * @param square
+     * @param orthogonal
+     *      True for Rook attacks, false for Bishop attacks.
+     * @return
+     */
+    private static long getRelevantMask(int square, boolean orthogonal) {
+        long attacks = orthogonal
+                ? Bitboards.rookAttacks(square, 0)
+                : Bitboards.bishopAttacks(square, 0);
+
+        // Edge squares are only irrelevant if we are not already on that edge
+        long edges = 0;
+        int x = Bitboards.getX(square);
+        int y = Bitboards.getY(square);
+        if (x != 0){
+            edges |= Bitboards.FILE_A;
+        }
+        if (x != Game.SQUARES_PER_SIDE - 1){
+            edges |= Bitboards.FILE_H;
+        }
+        if (y != 0){
+            edges |= Bitboards.RANK_TOP;
+        }
+        if (y != Game.SQUARES_PER_SIDE - 1){
+            edges |= Bitboards.RANK_BOTTOM;
+        }
+        return attacks & ~edges;
+    }
+
+    /**
+     * Creates the Magic for the given square, and fills in its region of the
+     * sliding attacks table.
+     *
+     * <p>Different occupancies may share an index, as long as they produce the
+     * same attacks.
+     *
+     * @param square
+     * @param orthogonal
+     * @param magicNumber
+     * @param offset
+     * @return
+     */
+    private static Magic createMagic(int square, boolean orthogonal,
+            long magicNumber, int offset) {
+
+        long mask = getRelevantMask(square, orthogonal);
+        Magic magic = new Magic(mask, magicNumber, 64 - Long.bitCount(mask),
+                offset);
+
+        // Enumerate every subset of the mask, and the resulting attacks
+        long subset = 0;
+        do {
+            long attacks = orthogonal
+                    ? Bitboards.rookAttacks(square, subset)
+                    : Bitboards.bishopAttacks(square, subset);
+            int index = magic.index(subset);
+            if (SLIDING_ATTACKS[index] != 0 &&
+                    SLIDING_ATTACKS[index] != attacks){
+                throw new IllegalStateException(
+                        "Invalid magic number for square " + square);
+            }
+            SLIDING_ATTACKS[index] = attacks;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+
+        return magic;
+    }
+
+}
@@ -0,0 +1,157 @@
+package chess;
+
+import chess.GamePiece.Player;
+
+/**
+ * Helper methods for working with bitboards.
+ *
+ * <p>A bitboard is a 64-bit long in which each bit represents one square of
+ * the game board. Square indices run from left to right and then from top to
+ * bottom, in the same orientation as the board is drawn; that is, square 0 is
+ * (0, 0) in the top-left corner (Black's side), and square 63 is (7, 7) in the
+ * bottom-right corner (White's side).
+ *
+ * <p>The attack calculations here work everything out from scratch, which is
+ * too slow to do during play; they are used to build the lookup tables in
+ * {@link Attacks}.
+ *
+ * @author Dan Bryce
+ */
+public abstract class Bitboards {
+
+    public static final int NUM_SQUARES =
+            Game.SQUARES_PER_SIDE * Game.SQUARES_PER_SIDE;
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << (Game.SQUARES_PER_SIDE - 1);
+
+    public static final long RANK_TOP = 0xFFL;
+    public static final long RANK_BOTTOM =
+            RANK_TOP << (NUM_SQUARES - Game.SQUARES_PER_SIDE);
+
+    private static final long NOT_FILE_A = ~FILE_A;
+    private static final long NOT_FILE_AB = ~(FILE_A | (FILE_A << 1));
+    private static final long NOT_FILE_H = ~FILE_H;
+    private static final long NOT_FILE_GH = ~(FILE_H | (FILE_H >>> 1));
+
+    public static int square(int x, int y) {
+        return y * Game.SQUARES_PER_SIDE + x;
+    }
+
+    public static int getX(int square) {
+        return square & (Game.SQUARES_PER_SIDE - 1);
+    }
+
+    public static int getY(int square) {
+        return square >>> 3;
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static long bit(int x, int y) {
+        return 1L << square(x, y);
+    }
+
+    /**
+     * Gets the index of the lowest set bit in the given bitboard.
+     *
+     * <p>This is typically used to iterate over the squares in a bitboard,
+     * in combination with {@link #popLowestSquare}.
+     *
+     * @param bitboard
+     * @return
+     */
+    public static int lowestSquare(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    public static long popLowestSquare(long bitboard) {
+        return bitboard & (bitboard - 1);
+    }
+
+    public static long knightAttacks(int square) {
+        long b = bit(square);
+        return ((b << 17) & NOT_FILE_A)
+                | ((b << 15) & NOT_FILE_H)
+                | ((b << 10) & NOT_FILE_AB)
+                | ((b << 6) & NOT_FILE_GH)
+                | ((b >>> 17) & NOT_FILE_H)
+                | ((b >>> 15) & NOT_FILE_A)
+                | ((b >>> 10) & NOT_FILE_GH)
+                | ((b >>> 6) & NOT_FILE_AB);
+    }
+
+    public static long kingAttacks(int square) {
+        long b = bit(square);
+        long sideways = ((b << 1) & NOT_FILE_A) | ((b >>> 1) & NOT_FILE_H);
+        long row = b | sideways;
+        return sideways | (row << 8) | (row >>> 8);
+    }
+
+    /**
+     * Gets the squares attacked by a Pawn belonging to the given player.
+     *
+     * <p>Black Pawns move down the board (increasing y), and White Pawns move
+     * up the board.
+     *
+     * @param player
+     * @param square
+     * @return
+     */
+    public static long pawnAttacks(Player player, int square) {
+        long b = bit(square);
+        if (player == Player.BLACK){
+            return ((b << 9) & NOT_FILE_A) | ((b << 7) & NOT_FILE_H);
+        }
+        return ((b >>> 7) & NOT_FILE_A) | ((b >>> 9) & NOT_FILE_H);
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return slidingAttacks(square, occupied, 0, -1)
+                | slidingAttacks(square, occupied, 0, 1)
+                | slidingAttacks(square, occupied, -1, 0)
+                | slidingAttacks(square, occupied, 1, 0);
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return slidingAttacks(square, occupied, -1, -1)
+                | slidingAttacks(square, occupied, -1, 1)
+                | slidingAttacks(square, occupied, 1, -1)
+                | slidingAttacks(square, occupied, 1, 1);
+    }
+
+    /**
+     * Scans a line of the board and finds all squares attacked from the given
+     * square.
+     *
+     * <p>This line could be orthogonal or diagonal. The first occupied square
+     * in the line is included, since it can be attacked, but nothing beyond
+     * it.
+     *
+     * @param square
+     * @param occupied
+     * @param xDir
+     * @param yDir
+     * @return
+     */
+    public static long slidingAttacks(int square, long occupied,
+            int xDir, int yDir) {
+        long attacks = 0;
+        int x = getX(square) + xDir;
+        int y = getY(square) + yDir;
+        while (Game.isValidPosition(x, y)){
+            long b = bit(x, y);
+            attacks |= b;
+            if ((occupied & b) != 0){
+                // A piece is blocking the way, so stop with this direction
+                break;
+            }
+            x += xDir;
+            y += yDir;
+        }
+        return attacks;
+    }
+
+}
@@ -7,6 +7,11 @@ import java.io.IOException;
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
 
+import chess.GamePiece.Player;
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import chess.engine.TranspositionTable;
+
 /**
  * Class responsible for creating the window and starting the game.
  *
@@ -16,13 +21,49 @@ public abstract class ChessLauncher {
 
     private static final String TITLE = "Chess";
 
+    /**
+     * How long the computer player thinks for each move, in milliseconds.
+     */
+    private static final long COMPUTER_TIME_MILLIS = 2000;
+
     /**
      * The entry point of the application.
      *
+     * <p>The initial size of the board, in pixels, may be given as an
+     * argument. The window can be resized later, and the board is scaled to
+     * fit.
+     *
+     * <p>A colour ("white" or "black") may be given as a second argument,
+     * in which case the computer plays that side.
+     *
      * @param args
      */
     public static void main(String[] args) {
 
+        int squareSize = GamePanel.DEFAULT_SQUARE_SIZE;
+        if (args.length > 0){
+            try {
+                squareSize = Integer.parseInt(args[0])
+                        / Game.SQUARES_PER_SIDE;
+            } catch (NumberFormatException e) {
+                squareSize = 0;
+            }
+            if (squareSize <= 0){
+                System.err.println("Invalid board size: " + args[0]);
+                System.exit(-1);
+            }
+        }
+
+        Player computerPlayer = null;
+        if (args.length > 1){
+            try {
+                computerPlayer = Player.valueOf(args[1].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid colour: " + args[1]);
+                System.exit(-1);
+            }
+        }
+
         BufferedImage sprite = null;
         try {
             sprite = ImageIO.read(new File("pieces.png"));
@@ -31,11 +72,17 @@ public abstract class ChessLauncher {
             System.exit(-1);
         }
 
-        Game game = new Game();
+        GameController controller = new GameController(new Game());
+        if (computerPlayer != null){
+            Engine engine = new Engine(new TranspositionTable(),
+                    Runtime.getRuntime().availableProcessors());
+            controller.setEngine(engine, computerPlayer,
+                    SearchLimits.time(COMPUTER_TIME_MILLIS));
+        }
 
         JFrame frame = new JFrame(TITLE);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setContentPane(new GamePanel(game, sprite));
+        frame.setContentPane(new GamePanel(controller, sprite, squareSize));
         frame.pack();
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
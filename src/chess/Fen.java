@@ -0,0 +1,434 @@
+package chess;
+
+import java.nio.ByteBuffer;
+
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+import chess.actions.Castle;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation (FEN).
+ *
+ * <p>A FEN record has 6 fields, separated by spaces: the piece placement,
+ * the player to move, the castling rights, the en passant square, the
+ * halfmove clock and the fullmove number. The last 2 fields may be left
+ * out, as in EPD, in which case they are taken to be 0 and 1.
+ *
+ * <p>Only legal positions are accepted: each player must have exactly one
+ * King, there must be no Pawns on the first or last rank, and the player
+ * who has just moved must not be left in check.
+ *
+ * <p>Positions are read directly from the given text, and an existing Game
+ * can be reused for any number of positions, so the only objects created
+ * are the pieces themselves.
+ *
+ * @author Dan Bryce
+ */
+public abstract class Fen {
+
+    /**
+     * The standard starting position.
+     */
+    public static final String START_POSITION =
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_LETTERS = "pnbrqk";
+
+    private static final Type[] TYPES = Type.values();
+
+    /**
+     * The type of piece that starts on each square of the back rank.
+     */
+    private static final String BACK_RANK = "rnbqkbnr";
+
+    private static final int MAX_LENGTH = 90;
+
+    /**
+     * Sets up the given Game in the given position.
+     *
+     * <p>Everything about the Game's previous position, including its
+     * history, is discarded. En passant and castling rights are only kept if
+     * they could actually be used.
+     *
+     * @param game
+     * @param fen
+     * @throws IllegalArgumentException if the FEN is not valid, in which case
+     *      the Game must not be used until another position is loaded.
+     */
+    public static void load(Game game, CharSequence fen) {
+        game.clear();
+
+        int i = readPlacement(game, fen, 0);
+
+        i = skipSpace(fen, i);
+        if (i >= fen.length()){
+            throw invalid(fen, "missing player to move");
+        }
+        char player = fen.charAt(i++);
+        if (player == 'b'){
+            game.flipTurn();
+        } else if (player != 'w'){
+            throw invalid(fen, "invalid player to move");
+        }
+
+        i = readCastlingRights(game, fen, skipSpace(fen, i));
+        i = readEnPassantSquare(game, fen, skipSpace(fen, i));
+
+        int halfmoveClock = 0;
+        int fullmoveNumber = 1;
+        if (i < fen.length()){
+            i = skipSpace(fen, i);
+            halfmoveClock = readNumber(fen, i);
+            i = skipNumber(fen, i);
+            i = skipSpace(fen, i);
+            fullmoveNumber = Math.max(1, readNumber(fen, i));
+            i = skipNumber(fen, i);
+        }
+        if (i != fen.length()){
+            throw invalid(fen, "unexpected text at end");
+        }
+        if (halfmoveClock > Game.MAX_STORED_HALFMOVE_CLOCK){
+            throw invalid(fen, "halfmove clock too large");
+        }
+        checkLegal(game, fen);
+
+        game.setHalfmoveClock(halfmoveClock);
+        game.setInitialPly((fullmoveNumber - 1) * 2
+                + (player == 'b' ? 1 : 0));
+    }
+
+    /**
+     * Sets up the given Game in the position described by the given bytes.
+     *
+     * <p>This is the same as {@link #load(Game, CharSequence)}, for text that
+     * has not been decoded, for example, in a memory-mapped file. The text
+     * must be ASCII.
+     *
+     * @param game
+     * @param buffer
+     * @param start Index of the first byte of the FEN.
+     * @param end Index after the last byte of the FEN.
+     */
+    public static void load(Game game, ByteBuffer buffer, int start,
+            int end) {
+        load(game, new AsciiSequence(buffer, start, end));
+    }
+
+    private static int readPlacement(Game game, CharSequence fen, int i) {
+        int x = 0;
+        int y = 0;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++){
+            char c = fen.charAt(i);
+            if (c == '/'){
+                if (x != Game.SQUARES_PER_SIDE
+                        || y == Game.SQUARES_PER_SIDE - 1){
+                    throw invalid(fen, "invalid rank");
+                }
+                x = 0;
+                y++;
+            } else if (c >= '1' && c <= '8'){
+                x += c - '0';
+                if (x > Game.SQUARES_PER_SIDE){
+                    throw invalid(fen, "rank too long");
+                }
+            } else {
+                int index = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+                if (index < 0 || x >= Game.SQUARES_PER_SIDE){
+                    throw invalid(fen, "invalid piece placement");
+                }
+                Player owner = Character.isUpperCase(c)
+                        ? Player.WHITE
+                        : Player.BLACK;
+                GamePiece piece = GamePiece.create(TYPES[index], x, y,
+                        owner);
+                piece.setMoved(!isInitialSquare(piece));
+                game.addPiece(piece);
+                x++;
+            }
+        }
+        if (x != Game.SQUARES_PER_SIDE || y != Game.SQUARES_PER_SIDE - 1){
+            throw invalid(fen, "wrong number of squares");
+        }
+        return i;
+    }
+
+    /**
+     * Checks that the position that has been read is one that could occur in
+     * a game.
+     *
+     * @param game
+     * @param fen
+     */
+    private static void checkLegal(Game game, CharSequence fen) {
+        for (Player player : Player.values()){
+            if (Long.bitCount(game.getBitboard(player, Type.KING)) != 1){
+                throw invalid(fen, "each player must have one King");
+            }
+            long backRanks = Bitboards.RANK_TOP | Bitboards.RANK_BOTTOM;
+            if ((game.getBitboard(player, Type.PAWN) & backRanks) != 0){
+                throw invalid(fen, "Pawn on first or last rank");
+            }
+        }
+        if (game.isPlayerInCheck(game.getCurrentPlayer().getOpponent())){
+            throw invalid(fen, "player not to move is in check");
+        }
+    }
+
+    /**
+     * Determines if the given piece is on a square where a piece of its type
+     * starts the game.
+     *
+     * @param piece
+     * @return
+     */
+    private static boolean isInitialSquare(GamePiece piece) {
+        int backRank = getBackRank(piece.getOwner());
+        if (piece.getType() == Type.PAWN){
+            int pawnRank = piece.isWhite() ? backRank - 1 : backRank + 1;
+            return piece.getY() == pawnRank;
+        }
+        return piece.getY() == backRank
+                && BACK_RANK.charAt(piece.getX())
+                        == PIECE_LETTERS.charAt(piece.getType().ordinal());
+    }
+
+    private static int getBackRank(Player player) {
+        return player == Player.WHITE ? Game.SQUARES_PER_SIDE - 1 : 0;
+    }
+
+    private static int readCastlingRights(Game game, CharSequence fen,
+            int i) {
+        if (i < fen.length() && fen.charAt(i) == '-'){
+            return i + 1;
+        }
+        int castlingRights = 0;
+        int east = 0;
+        int west = Game.SQUARES_PER_SIDE - 1;
+        for (; i < fen.length() && fen.charAt(i) != ' '; i++){
+            switch (fen.charAt(i)){
+            case 'K':
+                castlingRights |= getCastlingRight(game, Player.WHITE, west,
+                        Game.CASTLE_WHITE_WEST);
+                break;
+            case 'Q':
+                castlingRights |= getCastlingRight(game, Player.WHITE, east,
+                        Game.CASTLE_WHITE_EAST);
+                break;
+            case 'k':
+                castlingRights |= getCastlingRight(game, Player.BLACK, west,
+                        Game.CASTLE_BLACK_WEST);
+                break;
+            case 'q':
+                castlingRights |= getCastlingRight(game, Player.BLACK, east,
+                        Game.CASTLE_BLACK_EAST);
+                break;
+            default:
+                throw invalid(fen, "invalid castling rights");
+            }
+        }
+        game.setCastlingRights(castlingRights);
+        return i;
+    }
+
+    /**
+     * Gets the given castling right, if the King and Rook are in place to
+     * use it.
+     *
+     * @param game
+     * @param player
+     * @param rookX
+     * @param castlingRight
+     * @return The castling right, or 0.
+     */
+    private static int getCastlingRight(Game game, Player player, int rookX,
+            int castlingRight) {
+        int y = getBackRank(player);
+        GamePiece king = game.getPieceAt(Castle.KING_INITIAL_X, y);
+        GamePiece rook = game.getPieceAt(rookX, y);
+        boolean inPlace = king != null && king.getType() == Type.KING
+                && king.getOwner() == player
+                && rook != null && rook.getType() == Type.ROOK
+                && rook.getOwner() == player;
+        return inPlace ? castlingRight : 0;
+    }
+
+    private static int readEnPassantSquare(Game game, CharSequence fen,
+            int i) {
+        if (i < fen.length() && fen.charAt(i) == '-'){
+            return i + 1;
+        }
+        if (i + 2 > fen.length()){
+            throw invalid(fen, "missing en passant square");
+        }
+        int square = Moves.parseSquare(fen, i);
+        if (square == Game.NO_SQUARE){
+            throw invalid(fen, "invalid en passant square");
+        }
+
+        // Only keep the square if the opponent's Pawn has just skipped over
+        // it, and a Pawn can actually capture onto it
+        Player player = game.getCurrentPlayer();
+        Player opponent = player.getOpponent();
+        int skippedY = player == Player.WHITE
+                ? 2
+                : Game.SQUARES_PER_SIDE - 3;
+        int y = Bitboards.getY(square);
+        int pawnY = player == Player.WHITE ? y + 1 : y - 1;
+        long pawns = game.getBitboard(player, Type.PAWN);
+        long opponentPawns = game.getBitboard(opponent, Type.PAWN);
+        if (y == skippedY
+                && (opponentPawns
+                        & Bitboards.bit(Bitboards.getX(square), pawnY)) != 0
+                && (Attacks.pawn(opponent, square) & pawns) != 0){
+            game.setEnPassantSquare(square);
+        }
+        return i + 2;
+    }
+
+    private static int skipSpace(CharSequence fen, int i) {
+        if (i >= fen.length() || fen.charAt(i) != ' '){
+            throw invalid(fen, "missing field");
+        }
+        return i + 1;
+    }
+
+    private static int readNumber(CharSequence fen, int i) {
+        int end = skipNumber(fen, i);
+        if (end == i || end - i > 9){
+            throw invalid(fen, "invalid number");
+        }
+        int value = 0;
+        for (; i < end; i++){
+            value = value * 10 + (fen.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static int skipNumber(CharSequence fen, int i) {
+        while (i < fen.length() && Character.isDigit(fen.charAt(i))){
+            i++;
+        }
+        return i;
+    }
+
+    private static IllegalArgumentException invalid(CharSequence fen,
+            String reason) {
+        return new IllegalArgumentException(
+                "Invalid FEN \"" + fen + "\": " + reason);
+    }
+
+    /**
+     * Gets the FEN of the current position of the given Game.
+     *
+     * @param game
+     * @return
+     */
+    public static String toFen(Game game) {
+        StringBuilder sb = new StringBuilder(MAX_LENGTH);
+        appendFen(sb, game);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the FEN of the current position of the given Game to the given
+     * StringBuilder.
+     *
+     * @param sb
+     * @param game
+     */
+    public static void appendFen(StringBuilder sb, Game game) {
+        for (int y = 0; y < Game.SQUARES_PER_SIDE; y++){
+            if (y > 0){
+                sb.append('/');
+            }
+            int emptySquares = 0;
+            for (int x = 0; x < Game.SQUARES_PER_SIDE; x++){
+                GamePiece piece = game.getPieceAt(x, y);
+                if (piece == null){
+                    emptySquares++;
+                    continue;
+                }
+                if (emptySquares > 0){
+                    sb.append(emptySquares);
+                    emptySquares = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(piece.getType().ordinal());
+                sb.append(piece.isWhite()
+                        ? Character.toUpperCase(letter)
+                        : letter);
+            }
+            if (emptySquares > 0){
+                sb.append(emptySquares);
+            }
+        }
+
+        sb.append(game.getCurrentPlayer() == Player.WHITE ? " w " : " b ");
+
+        int castlingRights = game.getCastlingRights();
+        if (castlingRights == 0){
+            sb.append('-');
+        }
+        if ((castlingRights & Game.CASTLE_WHITE_WEST) != 0){
+            sb.append('K');
+        }
+        if ((castlingRights & Game.CASTLE_WHITE_EAST) != 0){
+            sb.append('Q');
+        }
+        if ((castlingRights & Game.CASTLE_BLACK_WEST) != 0){
+            sb.append('k');
+        }
+        if ((castlingRights & Game.CASTLE_BLACK_EAST) != 0){
+            sb.append('q');
+        }
+
+        sb.append(' ');
+        if (game.getEnPassantSquare() == Game.NO_SQUARE){
+            sb.append('-');
+        } else {
+            Moves.appendSquareName(sb, game.getEnPassantSquare());
+        }
+
+        sb.append(' ').append(game.getHalfmoveClock());
+        sb.append(' ').append(game.getFullmoveNumber());
+    }
+
+    /**
+     * View of ASCII text in a ByteBuffer as a CharSequence.
+     */
+    private static class AsciiSequence implements CharSequence {
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        AsciiSequence(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new AsciiSequence(buffer, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(length());
+            sb.append(this);
+            return sb.toString();
+        }
+
+    }
+
+}
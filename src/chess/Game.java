@@ -1,17 +1,20 @@
 package chess;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 
 import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+import chess.actions.Attack;
+import chess.actions.AttackingPromotion;
+import chess.actions.Castle;
+import chess.actions.Move;
 import chess.actions.Promotion;
-import chess.pieces.Bishop;
-import chess.pieces.King;
-import chess.pieces.Knight;
-import chess.pieces.Pawn;
-import chess.pieces.Queen;
 import chess.pieces.Rook;
+import chess.profiling.Operation;
+import chess.profiling.RulesEvent;
+import chess.profiling.RulesProfiler;
 
 /**
  * Class representing the current state of the game.
@@ -22,85 +25,803 @@ public class Game {
 
     public static final int SQUARES_PER_SIDE = 8;
 
+    public static final int CASTLE_WHITE_EAST = 1;
+    public static final int CASTLE_WHITE_WEST = 1 << 1;
+    public static final int CASTLE_BLACK_EAST = 1 << 2;
+    public static final int CASTLE_BLACK_WEST = 1 << 3;
+
+    /**
+     * Value used in place of a square when there is no such square.
+     */
+    public static final int NO_SQUARE = -1;
+
+    private static final int NUM_PLAYERS = Player.values().length;
+
+    private static final int NUM_TYPES = Type.values().length;
+
+    private static final int INITIAL_STACK_SIZE = 256;
+
+    private static final long ALL_SQUARES = -1L;
+
+    private static final int ALL_CASTLING_RIGHTS = CASTLE_WHITE_EAST
+            | CASTLE_WHITE_WEST | CASTLE_BLACK_EAST | CASTLE_BLACK_WEST;
+
+    /**
+     * The castling rights that are kept when a piece moves to or from each
+     * square.
+     */
+    private static final int[] CASTLING_RIGHTS_KEPT =
+            new int[Bitboards.NUM_SQUARES];
+
+    /**
+     * The number of times a position must occur for the game to be drawn.
+     */
+    private static final int MAX_REPETITIONS = 3;
+
+    /**
+     * The number of consecutive moves (by either player) without a capture or
+     * a Pawn move after which the game is drawn.
+     */
+    private static final int MAX_HALFMOVE_CLOCK = 100;
+
+    /*
+     * Layout of the state saved by each move made, so that it can be restored
+     * when the move is unmade:
+     *
+     *  bit      0  whether this was the moved piece's first move
+     *  bits   1-4  castling rights
+     *  bits  5-11  en passant square + 1, or 0 if there was none
+     *  bits 12-31  halfmove clock
+     */
+    private static final int STATE_FIRST_MOVE = 1;
+    private static final int STATE_CASTLING_SHIFT = 1;
+    private static final int STATE_CASTLING_MASK = 0xf;
+    private static final int STATE_EN_PASSANT_SHIFT = 5;
+    private static final int STATE_EN_PASSANT_MASK = 0x7f;
+    private static final int STATE_HALFMOVE_SHIFT = 12;
+
+    /**
+     * The largest halfmove clock that fits in the saved state.
+     */
+    public static final int MAX_STORED_HALFMOVE_CLOCK =
+            (1 << (Integer.SIZE - STATE_HALFMOVE_SHIFT)) - 1;
+
+    static {
+        Arrays.fill(CASTLING_RIGHTS_KEPT, ALL_CASTLING_RIGHTS);
+        for (Player player : Player.values()){
+            int y = player == Player.BLACK ? 0 : SQUARES_PER_SIDE - 1;
+            int east = getCastlingRight(player, 0);
+            int west = getCastlingRight(player, SQUARES_PER_SIDE - 1);
+            CASTLING_RIGHTS_KEPT[Bitboards.square(0, y)] &= ~east;
+            CASTLING_RIGHTS_KEPT[Bitboards.square(SQUARES_PER_SIDE - 1, y)] &=
+                    ~west;
+            CASTLING_RIGHTS_KEPT[Bitboards.square(Castle.KING_INITIAL_X, y)] &=
+                    ~(east | west);
+        }
+    }
+
+    /**
+     * The piece occupying each square, indexed by square (see
+     * {@link Bitboards}).
+     *
+     * <p>This lets us get from a square back to the GamePiece object; all
+     * other queries about the position should use the bitboards below.
+     */
+    private GamePiece[] board = new GamePiece[Bitboards.NUM_SQUARES];
+
+    /**
+     * Bitboard of the squares occupied by each type of piece, for each player.
+     *
+     * <p>These are indexed by {@link #getBitboardIndex}.
+     *
+     * <p>It is imperative that these are kept in-sync with the board! That
+     * is, if a piece's position is changed, it must also be moved in these
+     * bitboards. The methods in this class should be used for all movement to
+     * ensure that this happens.
+     */
+    private long[] bitboards = new long[NUM_PLAYERS * NUM_TYPES];
+
+    /**
+     * Bitboard of the squares occupied by each player's pieces.
+     */
+    private long[] occupancy = new long[NUM_PLAYERS];
+
+    /**
+     * Bitboard of all occupied squares.
+     */
+    private long occupied;
+
+    /**
+     * The square of each player's King, or NO_SQUARE if the player has no
+     * King.
+     *
+     * <p>This is kept up-to-date as pieces are added, removed and moved, so
+     * that check tests do not need to search for the King.
+     */
+    private int[] kingSquares = { NO_SQUARE, NO_SQUARE };
+
+    /**
+     * Which castling moves are still permitted, as a combination of the
+     * CASTLE_* flags.
+     *
+     * <p>A right is lost as soon as the King or the relevant Rook moves, or
+     * the Rook is captured; whether castling is actually possible right now
+     * depends on the position as well.
+     */
+    private int castlingRights;
+
+    /**
+     * The square onto which a Pawn can be captured en passant, or NO_SQUARE.
+     *
+     * <p>This is the square that a Pawn skipped over in moving 2 squares on
+     * the last move. It is only set if an enemy Pawn is in a position to make
+     * the capture, so that positions differing only by an impossible capture
+     * are considered the same.
+     */
+    private int enPassantSquare = NO_SQUARE;
+
+    /**
+     * The number of moves made since the last capture or Pawn move.
+     */
+    private int halfmoveClock;
+
+    /**
+     * Zobrist hash of the current position.
+     *
+     * <p>This is updated incrementally whenever pieces are added, removed or
+     * moved, the castling rights change, or the turn passes.
+     *
+     * @see Zobrist
+     */
+    private long hash;
+
+    /*
+     * Running totals of the middlegame and endgame scores of every piece, and
+     * of the phase of the game, updated alongside the hash.
+     *
+     * @see PieceSquareTables
+     */
+    private int midgameScore;
+    private int endgameScore;
+    private int phase;
+
+    /**
+     * How many times each position before the current one has occurred.
+     */
+    private RepetitionTable repetitions = new RepetitionTable();
+
+    /**
+     * The piece that was moved by each move made with {@link #makeMove}, so
+     * that the move can be unmade.
+     *
+     * <p>This and the following arrays form a stack, indexed by ply.
+     */
+    private GamePiece[] movedPieces = new GamePiece[INITIAL_STACK_SIZE];
+
+    /**
+     * The piece that was captured by each move made, if any.
+     */
+    private GamePiece[] capturedPieces = new GamePiece[INITIAL_STACK_SIZE];
+
+    /**
+     * The state of the game before each move made, packed into an int (see
+     * {@link #packState}).
+     */
+    private int[] previousStates = new int[INITIAL_STACK_SIZE];
+
+    /**
+     * The hash of the position before each move made.
+     *
+     * <p>Each of these is also recorded in the repetition table.
+     */
+    private long[] previousHashes = new long[INITIAL_STACK_SIZE];
+
+    /**
+     * The number of moves that have been made and not yet unmade.
+     */
+    private int ply;
+
+    /**
+     * The number of moves played before the position in which the Game was
+     * set up, so that the move number can be worked out.
+     */
+    private int initialPly;
+
+    /**
+     * All valid moves for the current player in the current position.
+     *
+     * <p>These are generated when first needed, and kept until the position
+     * changes. Moves for the same piece are always consecutive.
+     */
+    private MoveList legalMoves = new MoveList();
+
+    /**
+     * Whether legalMoves (and the following indexes) are up-to-date.
+     */
+    private boolean legalMovesValid;
+
+    /**
+     * Used to find out if any valid move exists without generating them all.
+     */
+    private MoveGenerator moveGenerator = new MoveGenerator();
+
+    /**
+     * Used to count pseudo-legal moves while profiling; created when first
+     * needed.
+     */
+    private MoveList pseudoLegalMoves;
+
+    /**
+     * Index into legalMoves of the first move of the piece on each square.
+     */
+    private int[] firstLegalMoveFrom = new int[Bitboards.NUM_SQUARES];
+
+    /**
+     * The number of legal moves of the piece on each square.
+     */
+    private int[] numLegalMovesFrom = new int[Bitboards.NUM_SQUARES];
+
+    /**
+     * Bitboard of the squares that the piece on each square can move to.
+     */
+    private long[] legalDestinations = new long[Bitboards.NUM_SQUARES];
+
+    /**
+     * Bitboard of the squares from which a piece can move to each square.
+     */
+    private long[] legalSources = new long[Bitboards.NUM_SQUARES];
+
+    /**
+     * Used by {@link #resolveExchange} to hold the material balance after
+     * each capture in an exchange.
+     */
+    private int[] exchangeGains = new int[Bitboards.NUM_SQUARES];
+
+    /**
+     * Stack of the Actions that have been played.
+     *
+     * <p>Beyond the top of the stack are any Actions that have been undone,
+     * which can be redone.
+     */
+    private Action[] history = new Action[INITIAL_STACK_SIZE];
+
+    /**
+     * The number of Actions that have been played and not undone.
+     */
+    private int historySize;
+
+    /**
+     * The number of Actions in the history, including those that can be
+     * redone.
+     */
+    private int redoLimit;
+
+    private Player currentPlayer = Player.WHITE;
+
+    private boolean gameOver;
+
+    public Game() {
+        this(Fen.START_POSITION);
+    }
+
+    /**
+     * Creates a Game set up in the given position.
+     *
+     * @param fen
+     *      The position, in Forsyth-Edwards Notation.
+     * @see Fen#load(Game, CharSequence)
+     */
+    public Game(CharSequence fen) {
+        Fen.load(this, fen);
+    }
+
+    /**
+     * Creates a copy of the given Game, in the same position.
+     *
+     * <p>The copy has its own pieces and shares no state with the original,
+     * so the two can be used by different threads. The copy knows which
+     * positions have occurred before (for detecting repetitions), but not
+     * the moves that led to them, so they cannot be undone.
+     *
+     * @param other
+     */
+    public Game(Game other) {
+        long remaining = other.occupied;
+        while (remaining != 0){
+            int square = Bitboards.lowestSquare(remaining);
+            remaining = Bitboards.popLowestSquare(remaining);
+            GamePiece piece = other.board[square];
+            GamePiece copy = GamePiece.create(piece.getType(),
+                    piece.getX(), piece.getY(), piece.getOwner());
+            copy.setMoved(piece.hasMoved());
+            board[square] = copy;
+        }
+        System.arraycopy(other.bitboards, 0, bitboards, 0, bitboards.length);
+        System.arraycopy(other.occupancy, 0, occupancy, 0, occupancy.length);
+        occupied = other.occupied;
+        System.arraycopy(other.kingSquares, 0, kingSquares, 0,
+                kingSquares.length);
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        initialPly = other.initialPly + other.ply;
+        hash = other.hash;
+        midgameScore = other.midgameScore;
+        endgameScore = other.endgameScore;
+        phase = other.phase;
+        repetitions = new RepetitionTable(other.repetitions);
+        currentPlayer = other.currentPlayer;
+        gameOver = other.gameOver;
+    }
+
+    /**
+     * Removes every piece and forgets all previous positions and moves,
+     * leaving an empty board with White to move and no castling rights.
+     */
+    public void clear() {
+        long remaining = occupied;
+        while (remaining != 0){
+            board[Bitboards.lowestSquare(remaining)] = null;
+            remaining = Bitboards.popLowestSquare(remaining);
+        }
+        Arrays.fill(bitboards, 0);
+        Arrays.fill(occupancy, 0);
+        occupied = 0;
+        Arrays.fill(kingSquares, NO_SQUARE);
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        hash = Zobrist.castling(castlingRights);
+        midgameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        repetitions.clear();
+
+        Arrays.fill(movedPieces, 0, ply, null);
+        Arrays.fill(capturedPieces, 0, ply, null);
+        ply = 0;
+        initialPly = 0;
+        Arrays.fill(history, 0, redoLimit, null);
+        historySize = 0;
+        redoLimit = 0;
+
+        legalMovesValid = false;
+        currentPlayer = Player.WHITE;
+        gameOver = false;
+    }
+
+    public void addPiece(GamePiece piece) {
+        int square = piece.getSquare();
+        if (piece.getType() == Type.KING){
+            kingSquares[piece.getOwner().ordinal()] = square;
+        }
+        board[square] = piece;
+        toggleSquare(piece, Bitboards.bit(square));
+        hash ^= Zobrist.piece(piece.getOwner(), piece.getType(), square);
+        midgameScore += PieceSquareTables.midgame(
+                piece.getOwner(), piece.getType(), square);
+        endgameScore += PieceSquareTables.endgame(
+                piece.getOwner(), piece.getType(), square);
+        phase += PieceSquareTables.phase(piece.getType());
+    }
+
+    public void removePiece(GamePiece piece) {
+        int square = piece.getSquare();
+        if (piece.getType() == Type.KING){
+            kingSquares[piece.getOwner().ordinal()] = NO_SQUARE;
+        }
+        board[square] = null;
+        toggleSquare(piece, Bitboards.bit(square));
+        hash ^= Zobrist.piece(piece.getOwner(), piece.getType(), square);
+        midgameScore -= PieceSquareTables.midgame(
+                piece.getOwner(), piece.getType(), square);
+        endgameScore -= PieceSquareTables.endgame(
+                piece.getOwner(), piece.getType(), square);
+        phase -= PieceSquareTables.phase(piece.getType());
+    }
+
+    public void movePiece(GamePiece piece, int x, int y){
+        int oldSquare = piece.getSquare();
+        int newSquare = Bitboards.square(x, y);
+        if (piece.getType() == Type.KING){
+            kingSquares[piece.getOwner().ordinal()] = newSquare;
+        }
+        board[oldSquare] = null;
+        piece.x = x;
+        piece.y = y;
+        board[newSquare] = piece;
+        toggleSquare(piece,
+                Bitboards.bit(oldSquare) | Bitboards.bit(newSquare));
+        Player owner = piece.getOwner();
+        Type type = piece.getType();
+        hash ^= Zobrist.piece(owner, type, oldSquare)
+                ^ Zobrist.piece(owner, type, newSquare);
+        midgameScore += PieceSquareTables.midgame(owner, type, newSquare)
+                - PieceSquareTables.midgame(owner, type, oldSquare);
+        endgameScore += PieceSquareTables.endgame(owner, type, newSquare)
+                - PieceSquareTables.endgame(owner, type, oldSquare);
+        piece.setMoved(true);
+    }
+
+    /**
+     * Flips the given bits in all of the bitboards relevant to the given
+     * piece.
+     *
+     * <p>Since this means the position has changed, the cached legal moves
+     * are discarded.
+     *
+     * @param piece
+     * @param bits
+     */
+    private void toggleSquare(GamePiece piece, long bits) {
+        bitboards[getBitboardIndex(piece.getOwner(), piece.getType())] ^= bits;
+        occupancy[piece.getOwner().ordinal()] ^= bits;
+        occupied ^= bits;
+        legalMovesValid = false;
+    }
+
+    /**
+     * Makes the given move.
+     *
+     * <p>Moves must be unmade in the reverse order to that in which they were
+     * made, using {@link #unmakeMove}. This does not change the current
+     * player.
+     *
+     * @param move
+     */
+    public void makeMove(int move) {
+        if (ply == movedPieces.length){
+            growStack();
+        }
+
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        int toX = Bitboards.getX(to);
+        int toY = Bitboards.getY(to);
+        GamePiece piece = board[from];
+        GamePiece captured = Moves.isCapture(move)
+                ? board[Moves.getCapturedSquare(move)]
+                : null;
+
+        movedPieces[ply] = piece;
+        capturedPieces[ply] = captured;
+        previousStates[ply] = packState(!piece.hasMoved());
+        previousHashes[ply] = hash;
+        repetitions.increment(hash);
+        ply++;
+
+        setCastlingRights(castlingRights
+                & CASTLING_RIGHTS_KEPT[from]
+                & CASTLING_RIGHTS_KEPT[to]);
+        setEnPassantSquare(NO_SQUARE);
+        boolean pawnMoved = piece.getType() == Type.PAWN;
+        halfmoveClock = (captured != null || pawnMoved)
+                ? 0
+                : Math.min(halfmoveClock + 1, MAX_STORED_HALFMOVE_CLOCK);
+
+        if (captured != null){
+            removePiece(captured);
+        }
+
+        if (Moves.isPromotion(move)){
+            // We don't bother moving the pawn, because we can just remove it
+            // and place the new piece at the end of the board.
+            removePiece(piece);
+            GamePiece newPiece = GamePiece.create(Moves.getPromotion(move),
+                    toX, toY, piece.getOwner());
+            newPiece.setMoved(true);
+            addPiece(newPiece);
+            return;
+        }
+
+        movePiece(piece, toX, toY);
+
+        if (Moves.isCastle(move)){
+            GamePiece rook = board[Bitboards.square(
+                    Castle.getRookInitialX(toX), toY)];
+            movePiece(rook, Castle.getRookDestX(toX), toY);
+        }
+
+        int fromY = Bitboards.getY(from);
+        if (pawnMoved && Math.abs(toY - fromY) == 2){
+            int skipped = Bitboards.square(toX, (fromY + toY) / 2);
+            long enemyPawns = getBitboard(piece.getOpponent(), Type.PAWN);
+            if ((Attacks.pawn(piece.getOwner(), skipped) & enemyPawns) != 0){
+                setEnPassantSquare(skipped);
+            }
+        }
+    }
+
+    /**
+     * Unmakes the given move, which must be the last move that was made.
+     *
+     * @param move
+     */
+    public void unmakeMove(int move) {
+        ply--;
+        GamePiece piece = movedPieces[ply];
+        GamePiece captured = capturedPieces[ply];
+        movedPieces[ply] = null;
+        capturedPieces[ply] = null;
+
+        int state = previousStates[ply];
+        int to = Moves.getTo(move);
+        int toX = Bitboards.getX(to);
+        int toY = Bitboards.getY(to);
+
+        if (Moves.isPromotion(move)){
+            removePiece(board[to]);
+            addPiece(piece);
+        } else {
+            int from = Moves.getFrom(move);
+            movePiece(piece, Bitboards.getX(from), Bitboards.getY(from));
+            piece.setMoved((state & STATE_FIRST_MOVE) == 0);
+
+            if (Moves.isCastle(move)){
+                GamePiece rook = board[Bitboards.square(
+                        Castle.getRookDestX(toX), toY)];
+                movePiece(rook, Castle.getRookInitialX(toX), toY);
+                rook.setMoved(false);
+            }
+        }
+
+        if (captured != null){
+            addPiece(captured);
+        }
+
+        setCastlingRights(
+                (state >>> STATE_CASTLING_SHIFT) & STATE_CASTLING_MASK);
+        setEnPassantSquare(
+                ((state >>> STATE_EN_PASSANT_SHIFT) & STATE_EN_PASSANT_MASK)
+                - 1);
+        halfmoveClock = state >>> STATE_HALFMOVE_SHIFT;
+        repetitions.decrement(previousHashes[ply]);
+    }
+
+    /**
+     * Packs the parts of the current state that cannot be derived from a move
+     * into an int, so that they can be restored when the move is unmade.
+     *
+     * @param firstMove
+     *      Whether the move is the first move of the moved piece.
+     * @return
+     */
+    private int packState(boolean firstMove) {
+        return (firstMove ? STATE_FIRST_MOVE : 0)
+                | (castlingRights << STATE_CASTLING_SHIFT)
+                | ((enPassantSquare + 1) << STATE_EN_PASSANT_SHIFT)
+                | (halfmoveClock << STATE_HALFMOVE_SHIFT);
+    }
+
+    private void growStack() {
+        int newSize = movedPieces.length * 2;
+        movedPieces = Arrays.copyOf(movedPieces, newSize);
+        capturedPieces = Arrays.copyOf(capturedPieces, newSize);
+        previousStates = Arrays.copyOf(previousStates, newSize);
+        previousHashes = Arrays.copyOf(previousHashes, newSize);
+    }
+
+    /**
+     * Gets the castling right for the given player with the Rook at the given
+     * x-position.
+     *
+     * @param player
+     * @param rookX
+     * @return
+     */
+    private static int getCastlingRight(Player player, int rookX) {
+        if (player == Player.WHITE){
+            return rookX == 0 ? CASTLE_WHITE_EAST : CASTLE_WHITE_WEST;
+        }
+        return rookX == 0 ? CASTLE_BLACK_EAST : CASTLE_BLACK_WEST;
+    }
+
+    /**
+     * Determines if the given player has the right to castle with the Rook at
+     * the given x-position.
+     *
+     * @param player
+     * @param rookX
+     * @return
+     */
+    public boolean hasCastlingRight(Player player, int rookX) {
+        return (castlingRights & getCastlingRight(player, rookX)) != 0;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        hash ^= Zobrist.castling(this.castlingRights)
+                ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+        legalMovesValid = false;
+    }
+
+    /**
+     * Gets the square onto which a Pawn can currently be captured en passant.
+     *
+     * @return The square, or NO_SQUARE.
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        if (this.enPassantSquare != NO_SQUARE){
+            hash ^= Zobrist.enPassant(this.enPassantSquare);
+        }
+        if (enPassantSquare != NO_SQUARE){
+            hash ^= Zobrist.enPassant(enPassantSquare);
+        }
+        this.enPassantSquare = enPassantSquare;
+        legalMovesValid = false;
+    }
+
+    /**
+     * Gets the number of moves made since the last capture or Pawn move.
+     *
+     * @return
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Sets the number of moves made since the last capture or Pawn move.
+     *
+     * @param halfmoveClock
+     * @throws IllegalArgumentException if the value is negative or above
+     *      {@link #MAX_STORED_HALFMOVE_CLOCK}.
+     */
+    public void setHalfmoveClock(int halfmoveClock) {
+        if (halfmoveClock < 0 || halfmoveClock > MAX_STORED_HALFMOVE_CLOCK){
+            throw new IllegalArgumentException(
+                    "Invalid halfmove clock: " + halfmoveClock);
+        }
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * Determines if the game is drawn because too many moves have been made
+     * without a capture or a Pawn move (the "50-move rule").
+     *
+     * @return
+     */
+    public boolean isFiftyMoveRuleDraw() {
+        return halfmoveClock >= MAX_HALFMOVE_CLOCK;
+    }
+
+    /**
+     * Gets the number of the current move, starting at 1 and increasing
+     * after each move by Black.
+     *
+     * @return
+     */
+    public int getFullmoveNumber() {
+        return (initialPly + ply) / 2 + 1;
+    }
+
+    /**
+     * Sets the number of moves that were played before the current position.
+     *
+     * @param initialPly
+     */
+    void setInitialPly(int initialPly) {
+        this.initialPly = initialPly;
+    }
+
+    /**
+     * Gets the FEN of the current position.
+     *
+     * @return
+     * @see Fen
+     */
+    public String toFen() {
+        return Fen.toFen(this);
+    }
+
+    /**
+     * Gets the Zobrist hash of the current position.
+     *
+     * <p>Two positions with the same pieces on the same squares, the same
+     * castling rights, the same en passant capture (if any) and the same
+     * player to move will (almost certainly)
+     * have the same hash, and different positions will (almost certainly)
+     * have different hashes.
+     *
+     * @return
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Gets the total middlegame score of every piece on the board.
+     *
+     * @return Score from White's point of view.
+     * @see PieceSquareTables
+     */
+    public int getMidgameScore() {
+        return midgameScore;
+    }
+
+    /**
+     * Gets the total endgame score of every piece on the board.
+     *
+     * @return Score from White's point of view.
+     * @see PieceSquareTables
+     */
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
     /**
-     * 2D array representing the board.
+     * Gets the phase of the game, from {@link PieceSquareTables#MAX_PHASE}
+     * at the start down to 0 when only Kings and Pawns remain.
      *
-     * We keep track of this in addition to a list of pieces, so that we can
-     * quickly look up a piece at a particular position, rather than having to
-     * search through all the pieces.
+     * <p>This can exceed MAX_PHASE after a promotion.
      *
-     * It is imperative that this is kept in-sync with the list of pieces! That
-     * is, if a piece's position is changed, it must also be moved in this
-     * array. The methods in this class should be used for all movement to
-     * ensure that this happens.
+     * @return
      */
-    private GamePiece[][] squares =
-            new GamePiece[SQUARES_PER_SIDE][SQUARES_PER_SIDE];
+    public int getPhase() {
+        return phase;
+    }
 
     /**
-     * List of pieces currently in play.
+     * Determines how many times the current position has occurred, including
+     * this time.
+     *
+     * @return
      */
-    private List<GamePiece> pieces = new ArrayList<>();
-
-    private List<Action> history = new ArrayList<>();
-
-    private GamePiece selectedPiece;
-
-    private Collection<Action> validActions = new ArrayList<>();
-
-    private Player currentPlayer = Player.WHITE;
-
-    private boolean gameOver;
+    public int getRepetitionCount() {
+        return repetitions.getCount(hash) + 1;
+    }
 
-    private Promotion promotionInProgress;
+    private static int getBitboardIndex(Player player, Type type) {
+        return player.ordinal() * NUM_TYPES + type.ordinal();
+    }
 
-    public Game() {
+    public GamePiece getPieceAt(int x, int y) {
+        return getPieceAt(Bitboards.square(x, y));
+    }
 
-        // Initialise pieces
-        addPiece(new Rook(0, 0, Player.BLACK));
-        addPiece(new Knight(1, 0, Player.BLACK));
-        addPiece(new Bishop(2, 0, Player.BLACK));
-        addPiece(new Queen(3, 0, Player.BLACK));
-        addPiece(new King(4, 0, Player.BLACK));
-        addPiece(new Bishop(5, 0, Player.BLACK));
-        addPiece(new Knight(6, 0, Player.BLACK));
-        addPiece(new Rook(7, 0, Player.BLACK));
-        addPiece(new Rook(0, 7, Player.WHITE));
-        addPiece(new Knight(1, 7, Player.WHITE));
-        addPiece(new Bishop(2, 7, Player.WHITE));
-        addPiece(new Queen(3, 7, Player.WHITE));
-        addPiece(new King(4, 7, Player.WHITE));
-        addPiece(new Bishop(5, 7, Player.WHITE));
-        addPiece(new Knight(6, 7, Player.WHITE));
-        addPiece(new Rook(7, 7, Player.WHITE));
-        for (int x = 0; x < SQUARES_PER_SIDE; x++){
-            addPiece(new Pawn(x, 1, Player.BLACK));
-            addPiece(new Pawn(x, 6, Player.WHITE));
+    public GamePiece getPieceAt(int square) {
+        if ((occupied & Bitboards.bit(square)) == 0){
+            return null;
         }
+        return board[square];
     }
 
-    public void addPiece(GamePiece piece) {
-        pieces.add(piece);
-        squares[piece.x][piece.y] = piece;
+    /**
+     * Gets a bitboard of the squares occupied by the given player's pieces of
+     * the given type.
+     *
+     * @param player
+     * @param type
+     * @return
+     */
+    public long getBitboard(Player player, Type type) {
+        return bitboards[getBitboardIndex(player, type)];
     }
 
-    public void removePiece(GamePiece piece) {
-        pieces.remove(piece);
-        squares[piece.x][piece.y] = null;
+    public long getOccupancy(Player player) {
+        return occupancy[player.ordinal()];
     }
 
-    public void movePiece(GamePiece piece, int x, int y){
-        int oldX = piece.x;
-        int oldY = piece.y;
-        squares[oldX][oldY] = null;
-        piece.x = x;
-        piece.y = y;
-        squares[x][y] = piece;
-        piece.setMoved(true);
+    public long getOccupied() {
+        return occupied;
     }
 
-    public GamePiece getPieceAt(int x, int y) {
-        return squares[x][y];
+    /**
+     * Gets the square of the given player's King.
+     *
+     * @param player
+     * @return The square, or NO_SQUARE if the player has no King.
+     */
+    public int getKingSquare(Player player) {
+        return kingSquares[player.ordinal()];
     }
 
     public Player getCurrentPlayer() {
@@ -110,59 +831,319 @@ public class Game {
     public void flipTurn(){
         currentPlayer = (currentPlayer == Player.BLACK) ?
                 Player.WHITE : Player.BLACK;
+        hash ^= Zobrist.blackToMove();
+        legalMovesValid = false;
     }
 
-    public void setSelectedPiece(GamePiece selectedPiece) {
-        this.selectedPiece = selectedPiece;
-        if (selectedPiece == null){
-            // Deselect
-            validActions.clear();
-            return;
+    /**
+     * Creates the Action that records the given move in the history.
+     *
+     * @param move
+     * @return
+     */
+    public Action createAction(int move) {
+        int to = Moves.getTo(move);
+        GamePiece piece = board[Moves.getFrom(move)];
+        GamePiece target = board[Moves.getCapturedSquare(move)];
+        if (Moves.isCastle(move)){
+            Rook rook = (Rook) board[Bitboards.square(
+                    Castle.getRookInitialX(Bitboards.getX(to)),
+                    Bitboards.getY(to))];
+            return new Castle(piece, rook, move);
         }
+        if (Moves.isPromotion(move)){
+            return Moves.isCapture(move)
+                    ? new AttackingPromotion(piece, target, move)
+                    : new Promotion(piece, move);
+        }
+        if (Moves.isCapture(move)){
+            return new Attack(piece, target, move);
+        }
+        return new Move(piece, move);
+    }
 
-        validActions = generateValidActions(selectedPiece);
+    /**
+     * Plays the given move as if it had been chosen by the current player.
+     *
+     * <p>This goes through the same steps as a move made via the UI, so the
+     * move is recorded in the history and can be undone. The move must be
+     * valid.
+     *
+     * @param move
+     * @return The Action that was played.
+     */
+    public Action play(int move) {
+        Action action = createAction(move);
+        executeAction(action);
+        addHistory(action);
+        flipTurn();
+        determineGameOver();
+        return action;
     }
 
-    private Collection<Action> generateValidActions(GamePiece piece) {
-        Collection<Action> actions = piece.getValidActions(this, false);
+    /**
+     * Gets all valid moves for the current player.
+     *
+     * <p>The moves are only generated the first time this is called for each
+     * position. The returned MoveList must not be modified.
+     *
+     * @return
+     */
+    public MoveList getLegalMoves() {
+        if (legalMovesValid){
+            return legalMoves;
+        }
 
-        // Remove any actions that result in the owner being in check
-        Collection<Action> removeList = new ArrayList<>();
-        for (Action action : actions){
-            action.execute(this);
-            if (isPlayerInCheck(piece.getOwner())){
-                removeList.add(action);
+        generateValidMoves(legalMoves, ALL_SQUARES);
+        Arrays.fill(numLegalMovesFrom, 0);
+        Arrays.fill(legalDestinations, 0);
+        Arrays.fill(legalSources, 0);
+        for (int i = 0; i < legalMoves.size(); i++){
+            int move = legalMoves.get(i);
+            int from = Moves.getFrom(move);
+            int to = Moves.getTo(move);
+            if (numLegalMovesFrom[from] == 0){
+                firstLegalMoveFrom[from] = i;
             }
-            action.undo(this);
+            numLegalMovesFrom[from]++;
+            legalDestinations[from] |= Bitboards.bit(to);
+            legalSources[to] |= Bitboards.bit(from);
+        }
+        legalMovesValid = true;
+        return legalMoves;
+    }
+
+    /**
+     * Gets a bitboard of the squares that the piece on the given square can
+     * legally move to.
+     *
+     * @param from
+     * @return
+     */
+    public long getLegalDestinations(int from) {
+        getLegalMoves();
+        return legalDestinations[from];
+    }
+
+    /**
+     * Gets a bitboard of the squares from which the current player can
+     * legally move a piece to the given square.
+     *
+     * @param to
+     * @return
+     */
+    public long getLegalSources(int to) {
+        getLegalMoves();
+        return legalSources[to];
+    }
+
+    /**
+     * Finds the legal move between the given squares.
+     *
+     * @param from
+     * @param to
+     * @param promotion
+     *      Type of piece to promote to; ignored unless the move is a
+     *      promotion.
+     * @return The move, or NONE if there is no such legal move.
+     */
+    public int findLegalMove(int from, int to, Type promotion) {
+        if ((getLegalDestinations(from) & Bitboards.bit(to)) == 0){
+            return Moves.NONE;
+        }
+        int start = firstLegalMoveFrom[from];
+        int end = start + numLegalMovesFrom[from];
+        for (int i = start; i < end; i++){
+            int move = legalMoves.get(i);
+            if (Moves.getTo(move) == to && (!Moves.isPromotion(move)
+                    || Moves.getPromotion(move) == promotion)){
+                return move;
+            }
+        }
+        return Moves.NONE;
+    }
+
+    /**
+     * Adds all valid moves for the current player to the given MoveList.
+     *
+     * <p>The MoveList is cleared first.
+     *
+     * @param moves
+     */
+    public void getValidMoves(MoveList moves) {
+        generateValidMoves(moves, ALL_SQUARES);
+    }
+
+    /**
+     * Adds all valid moves for the current player's pieces on the given
+     * squares to the given MoveList.
+     *
+     * <p>Rather than trying each move and then seeing if it leaves the King in
+     * check, we work out up-front which squares each piece is allowed to move
+     * to:
+     *
+     * <ul>
+     *  <li>If the King is in check, other pieces must capture the checking
+     *  piece or move in between it and the King.</li>
+     *  <li>If the King is in check from two pieces at once, only the King can
+     *  move.</li>
+     *  <li>A "pinned" piece, which is the only thing standing between the King
+     *  and an attacker, must stay on the line between them.</li>
+     * </ul>
+     *
+     * <p>The King itself only moves to squares that are not under attack.
+     *
+     * @param moves
+     * @param candidates
+     *      Bitboard of the squares of the pieces to consider.
+     */
+    private void generateValidMoves(MoveList moves, long candidates) {
+        if (!RulesProfiler.isEnabled()){
+            addValidMoves(moves, candidates);
+            return;
+        }
+        int numPseudoLegalMoves = countPseudoLegalMoves(candidates);
+        RulesEvent event = RulesProfiler.begin(Operation.GENERATE_MOVES);
+        addValidMoves(moves, candidates);
+        RulesProfiler.end(event, moves.size(),
+                numPseudoLegalMoves + countCastles(moves));
+    }
+
+    private void addValidMoves(MoveList moves, long candidates) {
+        moves.clear();
+
+        candidates &= getOccupancy(currentPlayer);
+        long kings = getBitboard(currentPlayer, Type.KING);
+        int kingSquare = getKingSquare(currentPlayer);
+        long checkMask = ALL_SQUARES;
+        long pinned = 0;
+
+        if (kingSquare != NO_SQUARE){
+            long checkers = getAttackers(kingSquare,
+                    currentPlayer.getOpponent(), occupied);
+            if (checkers != 0){
+                if (Bitboards.popLowestSquare(checkers) != 0){
+                    // Double check
+                    candidates &= kings;
+                } else {
+                    checkMask = checkers | Attacks.between(kingSquare,
+                            Bitboards.lowestSquare(checkers));
+                }
+            }
+            pinned = getPinnedPieces(currentPlayer, kingSquare);
+        }
+
+        while (candidates != 0){
+            int square = Bitboards.lowestSquare(candidates);
+            candidates = Bitboards.popLowestSquare(candidates);
+            long bit = Bitboards.bit(square);
+
+            long allowed = ALL_SQUARES;
+            if ((kings & bit) == 0){
+                allowed = checkMask;
+                if ((pinned & bit) != 0){
+                    allowed &= Attacks.line(kingSquare, square);
+                }
+            }
+            board[square].getValidMoves(this, moves, allowed);
+        }
+    }
+
+    /**
+     * Counts the moves that the current player's pieces on the given squares
+     * could make if check, pins and the safety of the King were ignored,
+     * not including castling.
+     *
+     * <p>This is only used while profiling, since it generates most of the
+     * moves a second time.
+     *
+     * @param candidates
+     * @return
+     */
+    private int countPseudoLegalMoves(long candidates) {
+        if (pseudoLegalMoves == null){
+            pseudoLegalMoves = new MoveList();
         }
-        actions.removeAll(removeList);
+        pseudoLegalMoves.clear();
+        long own = getOccupancy(currentPlayer);
+        candidates &= own;
+        int numKingMoves = 0;
+        while (candidates != 0){
+            int square = Bitboards.lowestSquare(candidates);
+            candidates = Bitboards.popLowestSquare(candidates);
+            if (board[square].getType() == Type.KING){
+                // The King checks its own moves for safety
+                numKingMoves += Long.bitCount(Attacks.king(square) & ~own);
+            } else {
+                board[square].getValidMoves(this, pseudoLegalMoves,
+                        ALL_SQUARES);
+            }
+        }
+        return pseudoLegalMoves.size() + numKingMoves;
+    }
 
-        return actions;
+    private static int countCastles(MoveList moves) {
+        int numCastles = 0;
+        for (int i = 0; i < moves.size(); i++){
+            if (Moves.isCastle(moves.get(i))){
+                numCastles++;
+            }
+        }
+        return numCastles;
     }
 
     /**
-     * Determines if the given player is check.
+     * Gets a bitboard of the given player's pieces that are pinned to the
+     * King on the given square.
+     *
+     * <p>A piece is pinned if it is the only piece between the King and an
+     * opposing Rook, Bishop or Queen that would otherwise be attacking the
+     * King.
      *
      * @param player
+     * @param kingSquare
      * @return
      */
-    private boolean isPlayerInCheck(Player player) {
-        // See comment in doesValidActionExist().
-        for (int i = 0; i < pieces.size(); i++){
-            GamePiece piece = pieces.get(i);
-            if (piece.getOwner() == player && piece instanceof King){
-                return isSquareAttackedByPlayer(piece.x, piece.y,
-                        piece.getOpponent());
+    long getPinnedPieces(Player player, int kingSquare) {
+        Player opponent = player.getOpponent();
+        long queens = getBitboard(opponent, Type.QUEEN);
+        long rooks = getBitboard(opponent, Type.ROOK) | queens;
+        long bishops = getBitboard(opponent, Type.BISHOP) | queens;
+
+        // Find every opposing piece that would be attacking the King on an
+        // empty board
+        long pinners = (Attacks.rook(kingSquare, 0) & rooks)
+                | (Attacks.bishop(kingSquare, 0) & bishops);
+
+        long pinned = 0;
+        while (pinners != 0){
+            int square = Bitboards.lowestSquare(pinners);
+            pinners = Bitboards.popLowestSquare(pinners);
+            long blockers = Attacks.between(kingSquare, square) & occupied;
+            if (blockers != 0 && Bitboards.popLowestSquare(blockers) == 0){
+                // Exactly one piece in the way
+                pinned |= blockers & getOccupancy(player);
             }
         }
-        return false;
+        return pinned;
     }
 
     /**
-     * Determines if the given square is under threat from the given Player.
+     * Determines if the given player is in check.
      *
-     * <p>This works by generating actions for all of the player's pieces, and
-     * seeing if any of them are attacks against the given square.
+     * @param player
+     * @return
+     */
+    public boolean isPlayerInCheck(Player player) {
+        int kingSquare = getKingSquare(player);
+        if (kingSquare == NO_SQUARE){
+            return false;
+        }
+        return isSquareAttackedByPlayer(kingSquare, player.getOpponent());
+    }
+
+    /**
+     * Determines if the given square is under threat from the given Player.
      *
      * @param x
      * @param y
@@ -170,51 +1151,267 @@ public class Game {
      * @return
      */
     public boolean isSquareAttackedByPlayer(int x, int y, Player player) {
-        // See comment in doesValidActionExist().
-        for (int i = 0; i < pieces.size(); i++){
+        return isSquareAttackedByPlayer(Bitboards.square(x, y), player);
+    }
 
-            GamePiece piece = pieces.get(i);
-            if (piece.getOwner() != player){
-                // We are only interested in the given player's pieces
-                continue;
-            }
+    /**
+     * Determines if the given square is under threat from the given Player.
+     *
+     * @param square
+     * @param player
+     * @return
+     */
+    public boolean isSquareAttackedByPlayer(int square, Player player) {
+        return isSquareAttackedByPlayer(square, player, occupied);
+    }
 
-            Collection<Action> actions = piece.getValidActions(this, true);
-            for (Action action : actions){
-                if (action.x == x && action.y == y){
-                    return true;
-                }
-            }
+    /**
+     * Determines if the given square would be under threat from the given
+     * Player if the given squares were occupied.
+     *
+     * <p>This works in reverse: we look up the squares from which each type of
+     * piece could attack the given square, and see if the player has a piece
+     * of that type on any of them.
+     *
+     * @param square
+     * @param player
+     * @param occupied
+     * @return
+     */
+    public boolean isSquareAttackedByPlayer(int square, Player player,
+            long occupied) {
+        if (!RulesProfiler.isEnabled()){
+            return isSquareAttacked(square, player, occupied);
         }
-        return false;
+        RulesEvent event = RulesProfiler.begin(Operation.SQUARE_ATTACKED);
+        boolean attacked = isSquareAttacked(square, player, occupied);
+        RulesProfiler.end(event);
+        return attacked;
+    }
+
+    private boolean isSquareAttacked(int square, Player player,
+            long occupied) {
+        int index = getBitboardIndex(player, Type.PAWN);
+        long pawns = bitboards[index];
+        long knights = bitboards[index + Type.KNIGHT.ordinal()];
+        long bishops = bitboards[index + Type.BISHOP.ordinal()];
+        long rooks = bitboards[index + Type.ROOK.ordinal()];
+        long queens = bitboards[index + Type.QUEEN.ordinal()];
+        long kings = bitboards[index + Type.KING.ordinal()];
+
+        return (Attacks.pawn(player.getOpponent(), square) & pawns) != 0
+                || (Attacks.knight(square) & knights) != 0
+                || (Attacks.king(square) & kings) != 0
+                || (Attacks.bishop(square, occupied) & (bishops | queens)) != 0
+                || (Attacks.rook(square, occupied) & (rooks | queens)) != 0;
     }
 
     /**
-     * Determines if a valid action exists for the current player.
+     * Gets a bitboard of all of the given player's pieces that would be
+     * attacking the given square if the given squares were occupied.
      *
+     * @param square
+     * @param player
+     * @param occupied
      * @return
      */
-    private boolean doesValidActionExist() {
-        /*
-         * We use a regular for-loop instead of a for-each loop because
-         * executing an action inside such a loop could cause a
-         * ConcurrentModificationException.
-         */
-        for (int i = 0; i < pieces.size(); i++){
-            GamePiece piece = pieces.get(i);
-            if (piece.getOwner() != currentPlayer){
-                // We are only interested in the current player's pieces
-                continue;
+    public long getAttackers(int square, Player player, long occupied) {
+        int index = getBitboardIndex(player, Type.PAWN);
+        long pawns = bitboards[index];
+        long knights = bitboards[index + Type.KNIGHT.ordinal()];
+        long bishops = bitboards[index + Type.BISHOP.ordinal()];
+        long rooks = bitboards[index + Type.ROOK.ordinal()];
+        long queens = bitboards[index + Type.QUEEN.ordinal()];
+        long kings = bitboards[index + Type.KING.ordinal()];
+
+        return (Attacks.pawn(player.getOpponent(), square) & pawns)
+                | (Attacks.knight(square) & knights)
+                | (Attacks.king(square) & kings)
+                | (Attacks.bishop(square, occupied) & (bishops | queens))
+                | (Attacks.rook(square, occupied) & (rooks | queens));
+    }
+
+    /**
+     * Works out how much material the given capture wins ("static exchange
+     * evaluation").
+     *
+     * <p>After the capture, both players take turns recapturing on the same
+     * square, always with their least valuable piece, and each player may
+     * stop whenever recapturing would lose material. Nothing is moved on the
+     * board; the exchange is worked out from the attack tables, including
+     * any pieces that are uncovered as others join in. Pins are ignored.
+     *
+     * <p>The move need not be a capture, in which case this tells us if the
+     * piece will be lost on its destination square.
+     *
+     * @param move
+     * @return The material gained by the player making the move, in
+     *      centipawns (negative if material is lost).
+     */
+    public int getExchangeValue(int move) {
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        GamePiece piece = board[from];
+        Type type = piece.getType();
+        long occupied = this.occupied ^ Bitboards.bit(from);
+
+        int gain = 0;
+        if (Moves.isCapture(move)){
+            int capturedSquare = Moves.getCapturedSquare(move);
+            gain = PieceSquareTables.getPieceValue(
+                    board[capturedSquare].getType());
+            occupied &= ~Bitboards.bit(capturedSquare);
+        }
+        if (Moves.isPromotion(move)){
+            type = Moves.getPromotion(move);
+            gain += PieceSquareTables.getPieceValue(type)
+                    - PieceSquareTables.getPieceValue(Type.PAWN);
+        }
+        return resolveExchange(to, piece.getOwner(), type, gain, occupied);
+    }
+
+    /**
+     * Determines if the piece on the given square can be won by the
+     * opponent, by capturing it and then trading on that square as described
+     * in {@link #getExchangeValue}.
+     *
+     * @param square
+     * @return
+     */
+    public boolean isHanging(int square) {
+        GamePiece piece = board[square];
+        if (piece == null){
+            return false;
+        }
+        Player opponent = piece.getOwner().getOpponent();
+        int from = findLeastValuableAttacker(
+                getAttackers(square, opponent, occupied), opponent);
+        if (from == NO_SQUARE){
+            return false;
+        }
+        long occupied = this.occupied ^ Bitboards.bit(from);
+        Type type = board[from].getType();
+        if (type == Type.KING && getAttackers(
+                square, piece.getOwner(), occupied) != 0){
+            // The King cannot capture a defended piece
+            return false;
+        }
+
+        int gain = PieceSquareTables.getPieceValue(piece.getType());
+        if (type == Type.PAWN && isBackRank(square)){
+            type = Type.QUEEN;
+            gain += PieceSquareTables.getPieceValue(type)
+                    - PieceSquareTables.getPieceValue(Type.PAWN);
+        }
+        return resolveExchange(square, opponent, type, gain, occupied) > 0;
+    }
+
+    /**
+     * Plays out the recaptures that follow a capture, without making any
+     * moves.
+     *
+     * @param square
+     *      The square on which the exchange takes place.
+     * @param player
+     *      The player who made the first capture.
+     * @param type
+     *      The type of the piece that made the first capture (after any
+     *      promotion).
+     * @param gain
+     *      The material gained by the first capture.
+     * @param occupied
+     *      The occupied squares after the first capture.
+     * @return The material gained by the given player, if both players
+     *      stop capturing at the best moment.
+     */
+    private int resolveExchange(int square, Player player, Type type,
+            int gain, long occupied) {
+        int[] gains = exchangeGains;
+        gains[0] = gain;
+        int depth = 0;
+        Player side = player.getOpponent();
+        Type target = type;
+
+        while (true){
+            long attackers = getAttackers(square, side, occupied) & occupied;
+            int from = findLeastValuableAttacker(attackers, side);
+            if (from == NO_SQUARE){
+                break;
+            }
+            Type attacker = board[from].getType();
+            occupied ^= Bitboards.bit(from);
+            if (attacker == Type.KING && (getAttackers(square,
+                    side.getOpponent(), occupied) & occupied) != 0){
+                break;
+            }
+
+            // From this side's point of view, the balance if the exchange
+            // stops after this capture
+            depth++;
+            gains[depth] = PieceSquareTables.getPieceValue(target)
+                    - gains[depth - 1];
+            target = attacker;
+            if (attacker == Type.PAWN && isBackRank(square)){
+                target = Type.QUEEN;
+                gains[depth] += PieceSquareTables.getPieceValue(target)
+                        - PieceSquareTables.getPieceValue(Type.PAWN);
             }
-            if (!generateValidActions(piece).isEmpty()){
-                return true;
+            if (gains[depth] <= -gains[depth - 1]){
+                // Even if the exchange stopped here, this side would do no
+                // better than by not capturing at all
+                depth--;
+                break;
+            }
+            side = side.getOpponent();
+        }
+
+        // Each side only captures if it is better than stopping
+        for (; depth > 0; depth--){
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+        }
+        return gains[0];
+    }
+
+    /**
+     * Finds the least valuable of the given player's pieces among the given
+     * squares.
+     *
+     * @param squares
+     * @param player
+     * @return The square of the piece, or NO_SQUARE if there is none.
+     */
+    private int findLeastValuableAttacker(long squares, Player player) {
+        if (squares == 0){
+            return NO_SQUARE;
+        }
+        // Types are ordered by value
+        int index = getBitboardIndex(player, Type.PAWN);
+        for (int i = 0; i < NUM_TYPES; i++){
+            long pieces = squares & bitboards[index + i];
+            if (pieces != 0){
+                return Bitboards.lowestSquare(pieces);
             }
         }
-        return false;
+        return NO_SQUARE;
+    }
+
+    private static boolean isBackRank(int square) {
+        int y = Bitboards.getY(square);
+        return y == 0 || y == SQUARES_PER_SIDE - 1;
     }
 
-    public GamePiece getSelectedPiece() {
-        return selectedPiece;
+    /**
+     * Determines if a valid action exists for the current player.
+     *
+     * @return
+     */
+    private boolean doesValidActionExist() {
+        if (legalMovesValid){
+            return !legalMoves.isEmpty();
+        }
+        // Stop at the first valid move
+        moveGenerator.reset(this, false);
+        return moveGenerator.next() != Moves.NONE;
     }
 
     public static boolean isValidPosition(int x, int y) {
@@ -222,56 +1419,131 @@ public class Game {
                 y >= 0 && y < SQUARES_PER_SIDE;
     }
 
-    public Collection<Action> getValidActions() {
-        return validActions;
-    }
-
-    public Action getActionAt(int x, int y) {
-        for (Action action : validActions){
-            if (action.getX() == x && action.getY() == y){
-                return action;
-            }
+    /**
+     * Records an Action that has just been played.
+     *
+     * <p>Any Actions that were undone can no longer be redone.
+     *
+     * @param action
+     */
+    public void addHistory(Action action) {
+        if (historySize == history.length){
+            history = Arrays.copyOf(history, history.length * 2);
         }
-        return null;
+        // Release the Actions that can no longer be redone
+        Arrays.fill(history, historySize, redoLimit, null);
+        history[historySize++] = action;
+        redoLimit = historySize;
     }
 
-    public void addHistory(Action action) {
-        history.add(0, action);
+    public boolean canUndo() {
+        return historySize > 0;
     }
 
     public void undo(){
-        if (history.isEmpty()){
+        if (historySize == 0){
             return;
         }
-        Action action = history.get(0);
-        action.undo(this);
-        history.remove(0);
+        Action action = history[--historySize];
+        undoAction(action);
         flipTurn();
         gameOver = false;
     }
 
+    /**
+     * Plays the last Action that was undone again.
+     */
+    public void redo(){
+        if (historySize == redoLimit){
+            return;
+        }
+        Action action = history[historySize++];
+        redoAction(action);
+        flipTurn();
+        determineGameOver();
+    }
+
+    /**
+     * Determines if the game is over, either because the current player has no
+     * valid move (checkmate or stalemate), or because it is a draw under the
+     * threefold repetition or 50-move rules.
+     */
     public void determineGameOver() {
-        gameOver = !doesValidActionExist();
+        if (!RulesProfiler.isEnabled()){
+            gameOver = isGameOverNow();
+            return;
+        }
+        RulesEvent event = RulesProfiler.begin(Operation.DETERMINE_GAME_OVER);
+        gameOver = isGameOverNow();
+        RulesProfiler.end(event);
     }
 
-    public boolean isGameOver() {
-        return gameOver;
+    private boolean isGameOverNow() {
+        return !doesValidActionExist()
+                || isThreefoldRepetition()
+                || isFiftyMoveRuleDraw();
     }
 
-    public Collection<GamePiece> getPieces() {
-        return pieces;
+    private void executeAction(Action action) {
+        if (!RulesProfiler.isEnabled()){
+            action.execute(this);
+            return;
+        }
+        RulesEvent event = RulesProfiler.begin(Operation.EXECUTE_ACTION);
+        action.execute(this);
+        RulesProfiler.end(event);
+    }
+
+    private void redoAction(Action action) {
+        if (!RulesProfiler.isEnabled()){
+            action.redo(this);
+            return;
+        }
+        RulesEvent event = RulesProfiler.begin(Operation.EXECUTE_ACTION);
+        action.redo(this);
+        RulesProfiler.end(event);
+    }
+
+    private void undoAction(Action action) {
+        if (!RulesProfiler.isEnabled()){
+            action.undo(this);
+            return;
+        }
+        RulesEvent event = RulesProfiler.begin(Operation.UNDO_ACTION);
+        action.undo(this);
+        RulesProfiler.end(event);
     }
 
-    public void setPromotionInProgress(Promotion promotionInProgress){
-        this.promotionInProgress = promotionInProgress;
+    /**
+     * Determines if the game is drawn because the current position has
+     * occurred 3 times.
+     *
+     * @return
+     */
+    public boolean isThreefoldRepetition() {
+        return getRepetitionCount() >= MAX_REPETITIONS;
     }
 
-    public boolean isPromotionInProgress() {
-        return promotionInProgress != null;
+    public boolean isGameOver() {
+        return gameOver;
     }
 
-    public Promotion getPromotionInProgress() {
-        return promotionInProgress;
+    /**
+     * Gets all of the pieces currently in play.
+     *
+     * <p>This builds a new Collection each time, so it should be avoided in
+     * performance-critical code; use the bitboards instead.
+     *
+     * @return
+     */
+    public Collection<GamePiece> getPieces() {
+        Collection<GamePiece> pieces = new ArrayList<>();
+        long remaining = occupied;
+        while (remaining != 0){
+            pieces.add(board[Bitboards.lowestSquare(remaining)]);
+            remaining = Bitboards.popLowestSquare(remaining);
+        }
+        return pieces;
     }
 
 }
@@ -0,0 +1,226 @@
+package chess;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.SwingUtilities;
+
+import chess.GamePiece.Player;
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+
+/**
+ * Runs a Game on a background thread, so that the UI never waits for it.
+ *
+ * <p>Requests to change the game (playing a move, undo and redo) return
+ * straight away, and are carried out in order on the controller's own
+ * thread. After each change, that thread works out whether the game is
+ * over and generates the next player's legal moves, and then publishes a
+ * new {@link GameSnapshot}. The listener is told about it on the Swing
+ * event dispatch thread.
+ *
+ * <p>The UI only ever reads snapshots, so it can check clicks against the
+ * legal moves and render the board however busy the controller is.
+ *
+ * <p>An {@link Engine} can play for one side. It moves on the controller's
+ * thread as soon as it is its turn, and ponders while the other player is
+ * thinking.
+ *
+ * <p>Once a Game has been given to a GameController, it must not be used
+ * by anything else.
+ *
+ * @author Dan Bryce
+ */
+public class GameController {
+
+    private final Game game;
+
+    /**
+     * Runs every task that touches the Game, one at a time.
+     */
+    private final ExecutorService executor;
+
+    private volatile GameSnapshot snapshot;
+
+    /**
+     * Called on the event dispatch thread whenever a new snapshot is
+     * published.
+     */
+    private volatile Runnable listener;
+
+    /**
+     * The computer player, or null if both sides are played by people.
+     */
+    private Engine engine;
+
+    private Player enginePlayer;
+
+    private SearchLimits engineLimits;
+
+    public GameController(Game game) {
+        this.game = game;
+        game.determineGameOver();
+        snapshot = new GameSnapshot(game);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Game controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Plays the given move, as soon as any earlier requests are done.
+     *
+     * <p>The move is ignored if it is no longer legal by then, for example,
+     * if it was chosen from an out-of-date snapshot.
+     *
+     * @param move
+     */
+    public void play(int move) {
+        executor.execute(() -> {
+            if (move == Moves.NONE || game.isGameOver()
+                    || game.findLegalMove(Moves.getFrom(move),
+                            Moves.getTo(move),
+                            Moves.getPromotion(move)) != move){
+                return;
+            }
+            game.play(move);
+            publish();
+            runEngine();
+        });
+    }
+
+    /**
+     * Undoes the last move, as soon as any earlier requests are done.
+     *
+     * <p>If an Engine is playing, its moves are undone as well, back to the
+     * last position with the other player to move.
+     */
+    public void undo() {
+        executor.execute(() -> {
+            if (!game.canUndo()){
+                return;
+            }
+            game.undo();
+            while (isEngineTurn() && game.canUndo()){
+                game.undo();
+            }
+            publish();
+            runEngine();
+        });
+    }
+
+    /**
+     * Redoes the last move that was undone, as soon as any earlier requests
+     * are done.
+     *
+     * <p>If an Engine is playing, its reply is redone as well.
+     */
+    public void redo() {
+        executor.execute(() -> {
+            game.redo();
+            if (isEngineTurn()){
+                game.redo();
+            }
+            publish();
+            runEngine();
+        });
+    }
+
+    /**
+     * Lets an Engine play for the given player, as soon as any earlier
+     * requests are done.
+     *
+     * <p>From then on, the Engine is only used by the controller's thread,
+     * until another Engine is set.
+     *
+     * @param engine
+     *      The Engine, or null to let people play both sides.
+     * @param player
+     * @param limits
+     *      Limits on the Engine's search for each move.
+     */
+    public void setEngine(Engine engine, Player player, SearchLimits limits) {
+        executor.execute(() -> {
+            if (this.engine != null){
+                this.engine.stopPondering();
+            }
+            this.engine = engine;
+            enginePlayer = player;
+            engineLimits = limits;
+            runEngine();
+        });
+    }
+
+    private boolean isEngineTurn() {
+        return engine != null && game.getCurrentPlayer() == enginePlayer;
+    }
+
+    /**
+     * Lets the Engine move, if it is its turn, and then ponder while the
+     * other player thinks.
+     */
+    private void runEngine() {
+        if (engine == null){
+            return;
+        }
+        if (game.isGameOver()){
+            engine.stopPondering();
+            return;
+        }
+        if (isEngineTurn()){
+            // If the Engine was pondering this position, it carries on
+            engine.play(game, engineLimits);
+            publish();
+            if (game.isGameOver()){
+                return;
+            }
+        }
+        engine.ponder(game);
+    }
+
+    /**
+     * Takes a snapshot of the Game, and tells the listener about it.
+     *
+     * <p>Taking the snapshot generates the legal moves for the player to
+     * move, so they are ready before the player needs them.
+     */
+    private void publish() {
+        snapshot = new GameSnapshot(game);
+        Runnable listener = this.listener;
+        if (listener != null){
+            SwingUtilities.invokeLater(listener);
+        }
+    }
+
+    /**
+     * Gets the most recent snapshot of the Game.
+     *
+     * <p>This can be called from any thread.
+     *
+     * @return
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Sets the listener to call, on the event dispatch thread, whenever a
+     * new snapshot is published.
+     *
+     * @param listener
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Stops the controller's thread.
+     *
+     * <p>The GameController cannot be used after this is called.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+}
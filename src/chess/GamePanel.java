@@ -3,165 +3,414 @@ package chess;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.util.Collection;
 
 import javax.swing.JPanel;
 
 import chess.GamePiece.Player;
-import chess.actions.Promotion;
-import chess.pieces.Bishop;
-import chess.pieces.King;
-import chess.pieces.Knight;
-import chess.pieces.Pawn;
-import chess.pieces.Queen;
-import chess.pieces.Rook;
+import chess.GamePiece.Type;
 
 /**
  * JPanel responsible for rendering the game.
  *
+ * <p>The board fills as much of the panel as it can, so the window can be
+ * any size. Everything that does not change from one frame to the next is
+ * drawn once and cached: the empty board, and an image of each piece at the
+ * current size. These caches are only rebuilt when the size of the board
+ * (in device pixels, so high-DPI screens get full-resolution images)
+ * changes.
+ *
+ * <p>The panel never touches the Game itself; it draws the latest
+ * {@link GameSnapshot} from its {@link GameController}, along with what is
+ * only part of the UI: the selected piece, and the pieces offered when a
+ * Pawn is about to be promoted. After either changes, {@link #refresh()}
+ * repaints only the squares that look different.
+ *
  * @author Dan Bryce
  */
 public class GamePanel extends JPanel {
 
     private static final long serialVersionUID = 1L;
 
-    public static final int PIXELS_PER_SQUARE = 96;
+    /**
+     * The default size of each square, in pixels.
+     */
+    public static final int DEFAULT_SQUARE_SIZE = 96;
 
-    private static final int DISPLAY_WIDTH =
-            Game.SQUARES_PER_SIDE * PIXELS_PER_SQUARE;
-    private static final int DISPLAY_HEIGHT = DISPLAY_WIDTH;
+    /**
+     * The pieces offered when a Pawn is promoted, in the order in which they
+     * are shown along the top of the board.
+     */
+    public static final Type[] PROMOTION_CHOICES = {
+        Type.ROOK, Type.KNIGHT, Type.BISHOP, Type.QUEEN
+    };
 
     private static final int NUM_IMAGES_X = 6;
     private static final int NUM_IMAGES_Y = 2;
 
+    /**
+     * The column of the sprite holding each type of piece, indexed by Type.
+     */
+    private static final int[] SPRITE_COLUMNS = {
+        5,      // Pawn
+        3,      // Knight
+        2,      // Bishop
+        4,      // Rook
+        1,      // Queen
+        0       // King
+    };
+
+    private static final int NUM_TYPES = Type.values().length;
+
     private static final Color GAME_OVER_COLOUR = new Color(0, 0, 0, 0.5f);
     private static final Color HIGHLIGHT_COLOUR = new Color(1, 0, 0, 0.5f);
 
-    private Game game;
+    /**
+     * What is drawn on a square with nothing on it.
+     */
+    private static final int EMPTY = 0;
+
+    /**
+     * Added to what is drawn on a square when it is highlighted.
+     */
+    private static final int HIGHLIGHTED = 1 << 8;
+
+    private GameController controller;
     private BufferedImage sprite;
     private int pieceImageWidth, pieceImageHeight;
 
-    public GamePanel(Game game, BufferedImage sprite) {
-        this.game = game;
+    /**
+     * The empty board, at the current size.
+     */
+    private BufferedImage boardImage;
+
+    /**
+     * An image of each piece at the current size, indexed by player, then
+     * type.
+     */
+    private final BufferedImage[] pieceImages =
+            new BufferedImage[Player.values().length * NUM_TYPES];
+
+    /**
+     * The size of each square in device pixels, for which the images were
+     * created.
+     */
+    private int imageSquareSize;
+
+    /**
+     * What each square looked like when it was last repainted (see
+     * {@link #getAppearance}).
+     */
+    private final int[] appearances = new int[Bitboards.NUM_SQUARES];
+
+    private boolean gameOverShown;
+
+    private boolean promotionShown;
+
+    /**
+     * The square of the selected piece, or NO_SQUARE.
+     */
+    private int selectedSquare = Game.NO_SQUARE;
+
+    /**
+     * The squares of the promotion waiting for a piece to be chosen, or
+     * NO_SQUARE.
+     */
+    private int promotionFrom = Game.NO_SQUARE;
+    private int promotionTo = Game.NO_SQUARE;
+
+    public GamePanel(GameController controller, BufferedImage sprite) {
+        this(controller, sprite, DEFAULT_SQUARE_SIZE);
+    }
+
+    /**
+     * Creates a GamePanel that would like each square to be the given size.
+     *
+     * @param controller
+     * @param sprite
+     * @param squareSize
+     *      Preferred size of each square, in pixels.
+     */
+    public GamePanel(GameController controller, BufferedImage sprite,
+            int squareSize) {
+        this.controller = controller;
         this.sprite = sprite;
 
         pieceImageWidth = sprite.getWidth() / NUM_IMAGES_X;
         pieceImageHeight = sprite.getHeight() / NUM_IMAGES_Y;
 
-        setPreferredSize(new Dimension(DISPLAY_WIDTH, DISPLAY_HEIGHT));
-        addMouseListener(new MouseHandler(game, this));
+        int boardSize = Game.SQUARES_PER_SIDE * squareSize;
+        setPreferredSize(new Dimension(boardSize, boardSize));
+        addMouseListener(new MouseHandler(controller, this));
+        controller.setListener(this::refresh);
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    /**
+     * Repaints any squares that have changed since they were last painted.
+     *
+     * <p>This is called whenever the controller publishes a new snapshot,
+     * and should be called whenever the selection or promotion changes.
+     */
+    public void refresh() {
+        GameSnapshot snapshot = controller.getSnapshot();
+        if (selectedSquare != Game.NO_SQUARE && snapshot.getOwner(
+                selectedSquare) != snapshot.getCurrentPlayer()){
+            // The game has moved on since the piece was selected
+            selectedSquare = Game.NO_SQUARE;
+        }
 
-        boolean black = false;
-        int drawX = 0;
-        int drawY = 0;
+        boolean gameOver = snapshot.isGameOver();
+        boolean promotion = isPromotionInProgress();
+        if (gameOver != gameOverShown || promotion != promotionShown){
+            // The whole board looks different
+            gameOverShown = gameOver;
+            promotionShown = promotion;
+            for (int square = 0; square < appearances.length; square++){
+                appearances[square] = getAppearance(snapshot, square);
+            }
+            repaint();
+            return;
+        }
 
-        // Draw board
-        for (int y = 0; y < Game.SQUARES_PER_SIDE; y++){
-            for (int x = 0; x < Game.SQUARES_PER_SIDE; x++){
-                Color col = black ? Color.BLACK : Color.WHITE;
-                drawSquare(g, drawX, drawY, col);
-                drawX += PIXELS_PER_SQUARE;
-                black = !black;
+        int squareSize = getSquareSize();
+        for (int square = 0; square < appearances.length; square++){
+            int appearance = getAppearance(snapshot, square);
+            if (appearance != appearances[square]){
+                appearances[square] = appearance;
+                repaint(Bitboards.getX(square) * squareSize,
+                        Bitboards.getY(square) * squareSize,
+                        squareSize, squareSize);
             }
-            drawX = 0;
-            drawY += PIXELS_PER_SQUARE;
-            black = !black;
         }
+    }
+
+    /**
+     * Gets a number that describes what is drawn on the given square.
+     *
+     * @param snapshot
+     * @param square
+     * @return
+     */
+    private int getAppearance(GameSnapshot snapshot, int square) {
+        Type type = snapshot.getType(square);
+        int appearance = type == null
+                ? EMPTY
+                : getImageIndex(snapshot.getOwner(square), type) + 1;
+        if (isHighlighted(snapshot, square)){
+            appearance += HIGHLIGHTED;
+        }
+        return appearance;
+    }
 
-        // Highlight selected piece
-        GamePiece selectedPiece = game.getSelectedPiece();
-        if (selectedPiece != null){
-            drawSquare(g,
-                    selectedPiece.x * PIXELS_PER_SQUARE,
-                    selectedPiece.y * PIXELS_PER_SQUARE,
-                    HIGHLIGHT_COLOUR);
+    private boolean isHighlighted(GameSnapshot snapshot, int square) {
+        if (selectedSquare == Game.NO_SQUARE){
+            return false;
         }
+        return selectedSquare == square
+                || (snapshot.getLegalDestinations(selectedSquare)
+                        & Bitboards.bit(square)) != 0;
+    }
+
+    /**
+     * Gets the square of the selected piece.
+     *
+     * @return The square, or NO_SQUARE if no piece is selected.
+     */
+    public int getSelectedSquare() {
+        return selectedSquare;
+    }
+
+    /**
+     * Selects the piece on the given square.
+     *
+     * <p>{@link #refresh()} must be called afterwards.
+     *
+     * @param square
+     *      The square, or NO_SQUARE to deselect.
+     */
+    public void setSelectedSquare(int square) {
+        selectedSquare = square;
+    }
+
+    /**
+     * Shows the pieces to choose from for a Pawn that is about to be
+     * promoted.
+     *
+     * <p>{@link #refresh()} must be called afterwards.
+     *
+     * @param from
+     * @param to
+     */
+    public void startPromotion(int from, int to) {
+        promotionFrom = from;
+        promotionTo = to;
+    }
+
+    /**
+     * Hides the pieces to choose from for a promotion.
+     *
+     * <p>{@link #refresh()} must be called afterwards.
+     */
+    public void cancelPromotion() {
+        promotionFrom = Game.NO_SQUARE;
+        promotionTo = Game.NO_SQUARE;
+    }
+
+    public boolean isPromotionInProgress() {
+        return promotionFrom != Game.NO_SQUARE;
+    }
+
+    public int getPromotionFrom() {
+        return promotionFrom;
+    }
+
+    public int getPromotionTo() {
+        return promotionTo;
+    }
+
+    /**
+     * Gets the size of each square, in pixels, at the panel's current size.
+     *
+     * @return
+     */
+    public int getSquareSize() {
+        return Math.max(1,
+                Math.min(getWidth(), getHeight()) / Game.SQUARES_PER_SIDE);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+
+        GameSnapshot snapshot = controller.getSnapshot();
+        int squareSize = getSquareSize();
+        int boardSize = squareSize * Game.SQUARES_PER_SIDE;
+        double scale = ((Graphics2D) g).getTransform().getScaleX();
+        updateImages((int) Math.ceil(squareSize * scale));
+
+        // Draw board
+        g.drawImage(boardImage, 0, 0, boardSize, boardSize, null);
 
-        // Draw available moves
-        Collection<Action> validMoves = game.getValidActions();
-        for (Action move : validMoves){
-            drawSquare(g,
-                    move.getX() * PIXELS_PER_SQUARE,
-                    move.getY() * PIXELS_PER_SQUARE,
-                    HIGHLIGHT_COLOUR);
+        // Only the squares that need repainting are drawn
+        Rectangle clip = g.getClipBounds();
+        int minX = 0;
+        int minY = 0;
+        int maxX = Game.SQUARES_PER_SIDE - 1;
+        int maxY = Game.SQUARES_PER_SIDE - 1;
+        if (clip != null){
+            minX = Math.max(minX, clip.x / squareSize);
+            minY = Math.max(minY, clip.y / squareSize);
+            maxX = Math.min(maxX, (clip.x + clip.width - 1) / squareSize);
+            maxY = Math.min(maxY, (clip.y + clip.height - 1) / squareSize);
         }
 
         // If a promotion is ready, we draw all possible pieces to choose from
-        Promotion promotion = game.getPromotionInProgress();
-        if (promotion != null){
-            Player player = promotion.getPiece().getOwner();
-            drawGamePiece(g, new Rook(0, 0, player));
-            drawGamePiece(g, new Knight(1, 0, player));
-            drawGamePiece(g, new Bishop(2, 0, player));
-            drawGamePiece(g, new Queen(3, 0, player));
+        if (isPromotionInProgress()){
+            Player player = snapshot.getCurrentPlayer();
+            for (int x = 0; x < PROMOTION_CHOICES.length; x++){
+                drawPieceImage(g, player, PROMOTION_CHOICES[x], x, 0,
+                        squareSize);
+            }
             return;
         }
 
-        // Draw pieces
-        for (GamePiece piece : game.getPieces()){
-            drawGamePiece(g, piece);
+        for (int y = minY; y <= maxY; y++){
+            for (int x = minX; x <= maxX; x++){
+                int square = Bitboards.square(x, y);
+
+                // Highlight the selected piece and its available moves
+                if (isHighlighted(snapshot, square)){
+                    g.setColor(HIGHLIGHT_COLOUR);
+                    g.fillRect(x * squareSize, y * squareSize,
+                            squareSize, squareSize);
+                }
+
+                Type type = snapshot.getType(square);
+                if (type != null){
+                    drawPieceImage(g, snapshot.getOwner(square), type,
+                            x, y, squareSize);
+                }
+            }
         }
 
         // Grey-out the game if it's over
-        if (game.isGameOver()){
+        if (snapshot.isGameOver()){
             g.setColor(GAME_OVER_COLOUR);
-            g.fillRect(0, 0, DISPLAY_WIDTH, DISPLAY_HEIGHT);
+            g.fillRect(0, 0, boardSize, boardSize);
         }
     }
 
-    private void drawSquare(Graphics g, int drawX, int drawY, Color col) {
-        g.setColor(col);
-        g.fillRect(drawX, drawY, PIXELS_PER_SQUARE, PIXELS_PER_SQUARE);
+    private void drawPieceImage(Graphics g, Player player, Type type, int x,
+            int y, int squareSize) {
+        g.drawImage(pieceImages[getImageIndex(player, type)],
+                x * squareSize, y * squareSize, squareSize, squareSize,
+                null);
     }
 
-    private void drawGamePiece(Graphics g, GamePiece piece) {
-
-        if (piece == null){
+    /**
+     * Rebuilds the cached images, if they are not already the given size.
+     *
+     * @param squareSize
+     *      The size of each square, in device pixels.
+     */
+    private void updateImages(int squareSize) {
+        if (squareSize == imageSquareSize){
             return;
         }
+        imageSquareSize = squareSize;
 
-        int x = piece.getX();
-        int y = piece.getY();
+        int boardSize = squareSize * Game.SQUARES_PER_SIDE;
+        boardImage = new BufferedImage(boardSize, boardSize,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics g = boardImage.getGraphics();
+        for (int y = 0; y < Game.SQUARES_PER_SIDE; y++){
+            for (int x = 0; x < Game.SQUARES_PER_SIDE; x++){
+                boolean black = (x + y) % 2 == 1;
+                g.setColor(black ? Color.BLACK : Color.WHITE);
+                g.fillRect(x * squareSize, y * squareSize,
+                        squareSize, squareSize);
+            }
+        }
+        g.dispose();
 
-        int dx1 = x * PIXELS_PER_SQUARE;
-        int dy1 = y * PIXELS_PER_SQUARE;
-        int dx2 = dx1 + PIXELS_PER_SQUARE;
-        int dy2 = dy1 + PIXELS_PER_SQUARE;
+        for (Player player : Player.values()){
+            for (Type type : Type.values()){
+                pieceImages[getImageIndex(player, type)] =
+                        createPieceImage(player, type, squareSize);
+            }
+        }
+    }
 
-        int sx1 = getImageIndex(piece) * pieceImageWidth;
-        int sy1 = piece.isBlack() ? 0 : pieceImageHeight;
-        int sx2 = sx1 + pieceImageWidth;
-        int sy2 = sy1 + pieceImageWidth;
+    /**
+     * Cuts the given piece out of the sprite, and scales it smoothly to the
+     * given size.
+     *
+     * @param player
+     * @param type
+     * @param size
+     * @return
+     */
+    private BufferedImage createPieceImage(Player player, Type type,
+            int size) {
+        int sx = SPRITE_COLUMNS[type.ordinal()] * pieceImageWidth;
+        int sy = player == Player.BLACK ? 0 : pieceImageHeight;
+        Image scaled = sprite
+                .getSubimage(sx, sy, pieceImageWidth, pieceImageHeight)
+                .getScaledInstance(size, size, Image.SCALE_SMOOTH);
 
-        g.drawImage(sprite, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+        BufferedImage image = new BufferedImage(size, size,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics g = image.getGraphics();
+        g.drawImage(scaled, 0, 0, null);
+        g.dispose();
+        return image;
     }
 
-    private static int getImageIndex(GamePiece piece) {
-        if (piece instanceof King){
-            return 0;
-        }
-        if (piece instanceof Queen){
-            return 1;
-        }
-        if (piece instanceof Bishop){
-            return 2;
-        }
-        if (piece instanceof Knight){
-            return 3;
-        }
-        if (piece instanceof Rook){
-            return 4;
-        }
-        if (piece instanceof Pawn){
-            return 5;
-        }
-        throw new IllegalArgumentException("Invalid piece: " + piece);
+    private static int getImageIndex(Player player, Type type) {
+        return player.ordinal() * NUM_TYPES + type.ordinal();
     }
 
 }
@@ -1,10 +1,11 @@
 package chess;
 
-import java.util.ArrayList;
-import java.util.Collection;
-
-import chess.actions.Attack;
-import chess.actions.Move;
+import chess.pieces.Bishop;
+import chess.pieces.King;
+import chess.pieces.Knight;
+import chess.pieces.Pawn;
+import chess.pieces.Queen;
+import chess.pieces.Rook;
 
 /**
  * Class representing a piece present on the game board.
@@ -13,14 +14,22 @@ import chess.actions.Move;
  */
 public abstract class GamePiece {
 
-    /**
-     * The maximum number of squares a piece can ever move.
-     */
-    protected static final int MAX_MOVES = Game.SQUARES_PER_SIDE - 1;
-
     public static enum Player {
         WHITE,
-        BLACK
+        BLACK;
+
+        public Player getOpponent() {
+            return this == BLACK ? WHITE : BLACK;
+        }
+    }
+
+    public static enum Type {
+        PAWN,
+        KNIGHT,
+        BISHOP,
+        ROOK,
+        QUEEN,
+        KING
     }
 
     protected int x, y;
@@ -33,6 +42,34 @@ public abstract class GamePiece {
         this.owner = owner;
     }
 
+    /**
+     * Creates a new GamePiece of the given type.
+     *
+     * @param type
+     * @param x
+     * @param y
+     * @param owner
+     * @return
+     */
+    public static GamePiece create(Type type, int x, int y, Player owner) {
+        switch (type){
+        case PAWN:
+            return new Pawn(x, y, owner);
+        case KNIGHT:
+            return new Knight(x, y, owner);
+        case BISHOP:
+            return new Bishop(x, y, owner);
+        case ROOK:
+            return new Rook(x, y, owner);
+        case QUEEN:
+            return new Queen(x, y, owner);
+        case KING:
+            return new King(x, y, owner);
+        default:
+            throw new IllegalArgumentException("Invalid type: " + type);
+        }
+    }
+
     public int getX() {
         return x;
     }
@@ -53,98 +90,67 @@ public abstract class GamePiece {
         return owner;
     }
 
+    public int getSquare() {
+        return Bitboards.square(x, y);
+    }
+
     public String getName() {
         return getClass().getSimpleName();
     }
 
+    public abstract Type getType();
+
     /**
-     * Produces a Collection containing all of the valid moves for this piece.
+     * Gets a bitboard of all the squares attacked by this piece.
      *
-     * <p>Note that this doesn't consider whether or not these moves might put
-     * the owner's king in check; this is handled by Game.generateValidMoves().
+     * <p>This includes squares occupied by the owner's own pieces (since they
+     * are defended), but does not include any non-attacking moves.
      *
      * @param game
-     * @param onlyAttacks
-     *      Whether non-attacking Actions should be omitted.
-     *
-     *      <p>This not only allows us to be more efficient at finding out if a
-     *      square is under attack (we don't need to consider any non-attacking
-     *      moves), but it is also important in preventing some cyclic logic
-     *      where the King's getValidActions() method calls
-     *      game.isSquareAttackedByPlayer(), which in turn will call the
-     *      opposing King's getValidActions() method again.
      * @return
      */
-    public final Collection<Action> getValidActions(Game game,
-            boolean onlyAttacks){
-        Collection<Action> moves = new ArrayList<>();
-        getValidMoves(game, moves, onlyAttacks);
-        return moves;
-    }
-
-    protected abstract void getValidMoves(Game game,
-            Collection<Action> moves, boolean onlyAttacks);
+    public abstract long getAttackedSquares(Game game);
 
     /**
-     * Attempts to create a valid move to the given destination.
+     * Adds all of the valid moves for this piece to the given MoveList.
+     *
+     * <p>Note that, except for the King, this doesn't consider whether or not
+     * these moves might put the owner's king in check; the caller is expected
+     * to restrict the allowed squares accordingly. This is handled by
+     * Game.getValidMoves().
      *
      * @param game
-     * @param x
-     * @param y
-     * @param onlyAttacks
-     * @return
+     * @param moves
+     * @param allowed
+     *      Bitboard of the squares this piece is allowed to move to.
+     *
+     *      <p>This is used to restrict the moves to those that block or
+     *      capture a checking piece, or that keep a pinned piece between the
+     *      King and its attacker. It can also be used to generate only
+     *      attacking moves.
      */
-    protected Action getPossibleMove(Game game, int x, int y,
-            boolean onlyAttacks) {
-
-        if (!Game.isValidPosition(x, y)){
-            return null;
-        }
-
-        GamePiece piece = game.getPieceAt(x, y);
-        if (piece == null){
-            // Destination is empty
-            return onlyAttacks ? null : new Move(this, x, y);
-        }
-
-        if (piece.getOwner() == owner){
-            // Can't take own piece!
-            return null;
-        }
-
-        return new Attack(this, piece);
-    }
+    protected abstract void getValidMoves(Game game, MoveList moves,
+            long allowed);
 
     /**
-     * Scans a line of the board and adds all available Move / Attack actions.
-     *
-     * <p>This line could be orthogonal or diagonal.
+     * Adds a move for every square in the given bitboard.
      *
      * @param game
      * @param moves
-     * @param onlyAttacks
-     * @param xDir
-     * @param yDir
+     * @param targets
+     *      Bitboard of destination squares. This should not include any
+     *      squares occupied by the owner's own pieces.
      */
-    protected void addActionsInDirection(Game game, Collection<Action> moves,
-            boolean onlyAttacks, int xDir, int yDir) {
-        for (int i = 1; i < MAX_MOVES; i++){
-            Action move = getPossibleMove(game,
-                    x + (xDir * i),
-                    y - (yDir * i),
-                    false);
-            if (move == null){
-                // No more valid moves in this direction
-                break;
-            }
-            if (move instanceof Attack){
-                moves.add(move);
-                // A piece is blocking the way, so stop with this direction
-                break;
-            }
-            if (!onlyAttacks){
-                moves.add(move);
-            }
+    protected void addMoves(Game game, MoveList moves, long targets) {
+        long enemies = game.getOccupancy(getOpponent());
+        int from = getSquare();
+        while (targets != 0){
+            int to = Bitboards.lowestSquare(targets);
+            targets = Bitboards.popLowestSquare(targets);
+            int flags = (enemies & Bitboards.bit(to)) != 0
+                    ? Moves.FLAG_CAPTURE
+                    : 0;
+            moves.add(Moves.create(from, to, flags));
         }
     }
 
@@ -167,7 +173,7 @@ public abstract class GamePiece {
     }
 
     protected Player getOpponent(){
-        return owner == Player.BLACK ? Player.WHITE : Player.BLACK;
+        return owner.getOpponent();
     }
 
     public void setMoved(boolean moved) {
@@ -0,0 +1,173 @@
+package chess;
+
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+import chess.actions.Castle;
+
+/**
+ * An unchanging copy of everything the UI needs to know about a Game at one
+ * moment: the pieces on the board, the legal moves, and whether the game is
+ * over.
+ *
+ * <p>Moves are found by the square that the player clicks to make them.
+ * This is the destination, except when castling, where the player clicks
+ * the Rook (see {@link #getTargetSquare}).
+ *
+ * <p>Since a GameSnapshot never changes, it can be read from any thread
+ * while the Game itself moves on (see {@link GameController}).
+ *
+ * @author Dan Bryce
+ */
+public class GameSnapshot {
+
+    private final Type[] types = new Type[Bitboards.NUM_SQUARES];
+
+    private final Player[] owners = new Player[Bitboards.NUM_SQUARES];
+
+    /**
+     * Bitboard of the target squares of the legal moves of the piece on each
+     * square.
+     */
+    private final long[] legalDestinations = new long[Bitboards.NUM_SQUARES];
+
+    private final int[] legalMoves;
+
+    private final Player currentPlayer;
+
+    private final boolean gameOver;
+
+    /**
+     * Creates a snapshot of the current position of the given Game.
+     *
+     * <p>This generates the legal moves, if they have not been generated
+     * already.
+     *
+     * @param game
+     */
+    GameSnapshot(Game game) {
+        long remaining = game.getOccupied();
+        while (remaining != 0){
+            int square = Bitboards.lowestSquare(remaining);
+            remaining = Bitboards.popLowestSquare(remaining);
+            GamePiece piece = game.getPieceAt(square);
+            types[square] = piece.getType();
+            owners[square] = piece.getOwner();
+        }
+
+        currentPlayer = game.getCurrentPlayer();
+        gameOver = game.isGameOver();
+        if (gameOver){
+            legalMoves = new int[0];
+            return;
+        }
+
+        MoveList moves = game.getLegalMoves();
+        legalMoves = new int[moves.size()];
+        for (int i = 0; i < legalMoves.length; i++){
+            int move = moves.get(i);
+            legalMoves[i] = move;
+            legalDestinations[Moves.getFrom(move)] |=
+                    Bitboards.bit(getTargetSquare(move));
+        }
+    }
+
+    /**
+     * Gets the square that the player clicks to make the given move.
+     *
+     * <p>This is the move's destination, except when castling, where it is
+     * the square of the Rook.
+     *
+     * @param move
+     * @return
+     */
+    public static int getTargetSquare(int move) {
+        int to = Moves.getTo(move);
+        if (!Moves.isCastle(move)){
+            return to;
+        }
+        return Bitboards.square(
+                Castle.getRookInitialX(Bitboards.getX(to)),
+                Bitboards.getY(to));
+    }
+
+    /**
+     * Gets the type of the piece on the given square.
+     *
+     * @param square
+     * @return The type, or null if the square is empty.
+     */
+    public Type getType(int square) {
+        return types[square];
+    }
+
+    /**
+     * Gets the owner of the piece on the given square.
+     *
+     * @param square
+     * @return The owner, or null if the square is empty.
+     */
+    public Player getOwner(int square) {
+        return owners[square];
+    }
+
+    /**
+     * Gets a bitboard of the target squares (see {@link #getTargetSquare})
+     * of the legal moves of the piece on the given square.
+     *
+     * @param from
+     * @return
+     */
+    public long getLegalDestinations(int from) {
+        return legalDestinations[from];
+    }
+
+    /**
+     * Finds the legal move of the piece on the given square that is made by
+     * clicking the given target square.
+     *
+     * @param from
+     * @param target
+     * @param promotion
+     *      Type of piece to promote to; ignored unless the move is a
+     *      promotion.
+     * @return The move, or NONE if there is no such legal move.
+     */
+    public int findLegalMove(int from, int target, Type promotion) {
+        for (int move : legalMoves){
+            if (Moves.getFrom(move) == from
+                    && getTargetSquare(move) == target
+                    && (!Moves.isPromotion(move)
+                            || Moves.getPromotion(move) == promotion)){
+                return move;
+            }
+        }
+        return Moves.NONE;
+    }
+
+    /**
+     * Determines if the move made by clicking the given target square is a
+     * promotion, in which case a type of piece must be chosen.
+     *
+     * @param from
+     * @param target
+     * @return
+     */
+    public boolean isPromotion(int from, int target) {
+        for (int move : legalMoves){
+            if (Moves.getFrom(move) == from
+                    && getTargetSquare(move) == target){
+                return Moves.isPromotion(move);
+            }
+        }
+        return false;
+    }
+
+    public Player getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+}
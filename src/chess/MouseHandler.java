@@ -3,109 +3,124 @@ package chess;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 
-import chess.GamePiece.Player;
-import chess.actions.Promotion;
-import chess.pieces.Bishop;
-import chess.pieces.Knight;
-import chess.pieces.Queen;
-import chess.pieces.Rook;
-
 /**
  * Class responsible for handling mouse input within the GamePanel.
  *
+ * <p>Clicks are checked against the latest {@link GameSnapshot}, so they
+ * never wait for the Game; moves are handed to the {@link GameController}
+ * to be played in the background.
+ *
  * @author Dan Bryce
  */
 public class MouseHandler extends MouseAdapter {
 
-    private Game game;
+    private GameController controller;
     private GamePanel gamePanel;
 
-    public MouseHandler(Game game, GamePanel gamePanel) {
-        this.game = game;
+    public MouseHandler(GameController controller, GamePanel gamePanel) {
+        this.controller = controller;
         this.gamePanel = gamePanel;
     }
 
     @Override
     public void mousePressed(MouseEvent e) {
 
-        if (game.isGameOver()){
+        GameSnapshot snapshot = controller.getSnapshot();
+        if (snapshot.isGameOver()){
             return;
         }
 
         // Right-click (undo / deselect)
         if (e.getButton() == MouseEvent.BUTTON3){
-            GamePiece existingSelection = game.getSelectedPiece();
-            if (existingSelection == null){
+            if (gamePanel.isPromotionInProgress()){
+                // Cancel the promotion
+                gamePanel.cancelPromotion();
+            } else if (gamePanel.getSelectedSquare() == Game.NO_SQUARE){
                 // Undo can only be performed if no piece is selected
-                game.undo();
-                gamePanel.repaint();
+                controller.undo();
             } else {
                 // Deselect
-                game.setSelectedPiece(null);
-                gamePanel.repaint();
+                gamePanel.setSelectedSquare(Game.NO_SQUARE);
+            }
+            gamePanel.refresh();
+            return;
+        }
+
+        // Middle-click (redo)
+        if (e.getButton() == MouseEvent.BUTTON2){
+            if (gamePanel.getSelectedSquare() == Game.NO_SQUARE &&
+                    !gamePanel.isPromotionInProgress()){
+                controller.redo();
             }
             return;
         }
 
-        int x = e.getX() / GamePanel.PIXELS_PER_SQUARE;
-        int y = e.getY() / GamePanel.PIXELS_PER_SQUARE;
+        int squareSize = gamePanel.getSquareSize();
+        int x = e.getX() / squareSize;
+        int y = e.getY() / squareSize;
+        if (!Game.isValidPosition(x, y)){
+            // Outside the board
+            return;
+        }
 
-        Promotion promotion = game.getPromotionInProgress();
-        if (promotion != null){
+        if (gamePanel.isPromotionInProgress()){
             // Player is due to select a new piece as a promotion
-            if (y > 0 || x > 3){
+            if (y > 0 || x >= GamePanel.PROMOTION_CHOICES.length){
                 // No piece chosen
                 return;
             }
-            int pieceX = promotion.getX();
-            int pieceY = promotion.getY();
-            Player owner = promotion.getPiece().getOwner();
-            // The order of the pieces here has to match what's rendered in the
-            // GamePanel.
-            if (x == 0){
-                promotion.pieceChosen(game, new Rook(pieceX, pieceY, owner));
-            } else if (x == 1){
-                promotion.pieceChosen(game, new Knight(pieceX, pieceY, owner));
-            } else if (x == 2){
-                promotion.pieceChosen(game, new Bishop(pieceX, pieceY, owner));
-            } else if (x == 3){
-                promotion.pieceChosen(game, new Queen(pieceX, pieceY, owner));
-            }
-            gamePanel.repaint();
+            play(snapshot.findLegalMove(gamePanel.getPromotionFrom(),
+                    gamePanel.getPromotionTo(),
+                    GamePanel.PROMOTION_CHOICES[x]));
             return;
         }
 
-        GamePiece existingSelection = game.getSelectedPiece();
-        GamePiece newSelection = game.getPieceAt(x, y);
-        if (existingSelection == null){
+        int selectedSquare = gamePanel.getSelectedSquare();
+        int square = Bitboards.square(x, y);
+        if (selectedSquare == Game.NO_SQUARE){
             // Try to select a piece
-            if (newSelection == null ||
-                    newSelection.getOwner() != game.getCurrentPlayer()){
+            if (snapshot.getOwner(square) != snapshot.getCurrentPlayer()){
                 return;
             }
-            game.setSelectedPiece(newSelection);
-            gamePanel.repaint();
+            gamePanel.setSelectedSquare(square);
+            gamePanel.refresh();
             return;
         }
 
-        if (newSelection != null && newSelection.equals(existingSelection)){
+        if (square == selectedSquare){
             // Currently-selected piece was clicked again (deselect)
-            game.setSelectedPiece(null);
-            gamePanel.repaint();
+            gamePanel.setSelectedSquare(Game.NO_SQUARE);
+            gamePanel.refresh();
             return;
         }
 
-        Action move = game.getActionAt(x, y);
-        if (move == null){
+        if ((snapshot.getLegalDestinations(selectedSquare)
+                & Bitboards.bit(square)) == 0){
             // No such move
             return;
         }
-        move.execute(game);
-        game.addHistory(move);
-        game.setSelectedPiece(null);
-        game.flipTurn();
-        game.determineGameOver();
-        gamePanel.repaint();
+
+        if (snapshot.isPromotion(selectedSquare, square)){
+            // The player must choose a piece before the move can be played
+            gamePanel.startPromotion(selectedSquare, square);
+            gamePanel.refresh();
+            return;
+        }
+
+        play(snapshot.findLegalMove(selectedSquare, square, null));
+    }
+
+    /**
+     * Clears the selection and promotion, and asks the controller to play
+     * the given move.
+     *
+     * @param move
+     */
+    private void play(int move) {
+        gamePanel.setSelectedSquare(Game.NO_SQUARE);
+        gamePanel.cancelPromotion();
+        gamePanel.refresh();
+        controller.play(move);
     }
 
 }
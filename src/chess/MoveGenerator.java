@@ -0,0 +1,200 @@
+package chess;
+
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+
+/**
+ * Generates the valid moves in a position lazily, one piece at a time.
+ *
+ * <p>Moves are produced in stages:
+ *
+ * <ol>
+ *  <li>Captures and promotions by every piece except the King.</li>
+ *  <li>All other moves by every piece except the King.</li>
+ *  <li>Moves by the King.</li>
+ * </ol>
+ *
+ * <p>The moves of each piece are only generated once all of the previous
+ * piece's moves have been returned, so a caller that only needs the first
+ * move (for example, to see if the game is over) does very little work. The
+ * King comes last because its moves are the most expensive to check.
+ *
+ * <p>Every move returned is legal, using the same check and pin masks as
+ * {@link Game#getValidMoves}.
+ *
+ * <p>A MoveGenerator can be reused for any number of positions, but it must
+ * be reset whenever the position changes.
+ *
+ * @author Dan Bryce
+ */
+public class MoveGenerator {
+
+    private static final int STAGE_TACTICAL = 0;
+    private static final int STAGE_QUIET = 1;
+    private static final int STAGE_KING = 2;
+    private static final int STAGE_DONE = 3;
+
+    private static final long ALL_SQUARES = -1L;
+
+    /**
+     * Moves of the current piece that have not been returned yet.
+     */
+    private final MoveList moves = new MoveList();
+
+    private int nextIndex;
+
+    private Game game;
+
+    private int stage;
+
+    /**
+     * Whether to skip the quiet moves.
+     */
+    private boolean tacticalOnly;
+
+    /**
+     * Bitboard of the pieces whose moves have not yet been generated in the
+     * current stage.
+     */
+    private long remainingPieces;
+
+    private int kingSquare;
+
+    /**
+     * Bitboard of the squares to which pieces other than the King can move,
+     * given any check.
+     */
+    private long checkMask;
+
+    private long pinned;
+
+    /**
+     * Bitboard of the squares occupied by the opponent, plus the en passant
+     * square, if any.
+     */
+    private long pawnCaptureTargets;
+
+    private long enemies;
+
+    /**
+     * The squares on which Pawns are promoted.
+     */
+    private long promotionRank;
+
+    /**
+     * Prepares to generate the moves for the current position of the given
+     * Game.
+     *
+     * @param game
+     * @param tacticalOnly
+     *      True to generate only captures and promotions.
+     */
+    public void reset(Game game, boolean tacticalOnly) {
+        this.game = game;
+        this.tacticalOnly = tacticalOnly;
+        moves.clear();
+        nextIndex = 0;
+
+        Player player = game.getCurrentPlayer();
+        Player opponent = player.getOpponent();
+        enemies = game.getOccupancy(opponent);
+        pawnCaptureTargets = enemies;
+        if (game.getEnPassantSquare() != Game.NO_SQUARE){
+            pawnCaptureTargets |= Bitboards.bit(game.getEnPassantSquare());
+        }
+        promotionRank = player == Player.WHITE
+                ? Bitboards.RANK_TOP
+                : Bitboards.RANK_BOTTOM;
+
+        long kings = game.getBitboard(player, Type.KING);
+        stage = STAGE_TACTICAL;
+        remainingPieces = game.getOccupancy(player) & ~kings;
+        checkMask = ALL_SQUARES;
+        pinned = 0;
+
+        kingSquare = game.getKingSquare(player);
+        if (kingSquare == Game.NO_SQUARE){
+            return;
+        }
+        long checkers = game.getAttackers(kingSquare, opponent,
+                game.getOccupied());
+        if (checkers != 0){
+            if (Bitboards.popLowestSquare(checkers) != 0){
+                // Double check; only the King can move
+                stage = STAGE_KING;
+                remainingPieces = kings;
+                return;
+            }
+            checkMask = checkers | Attacks.between(kingSquare,
+                    Bitboards.lowestSquare(checkers));
+        }
+        pinned = game.getPinnedPieces(player, kingSquare);
+    }
+
+    /**
+     * Gets the next valid move.
+     *
+     * @return The move, or NONE if there are no more moves.
+     */
+    public int next() {
+        while (nextIndex == moves.size()){
+            if (stage == STAGE_DONE){
+                return Moves.NONE;
+            }
+            if (remainingPieces == 0){
+                nextStage();
+                continue;
+            }
+            moves.clear();
+            nextIndex = 0;
+            int square = Bitboards.lowestSquare(remainingPieces);
+            remainingPieces = Bitboards.popLowestSquare(remainingPieces);
+            GamePiece piece = game.getPieceAt(square);
+            piece.getValidMoves(game, moves, getAllowedSquares(piece));
+        }
+        return moves.get(nextIndex++);
+    }
+
+    private void nextStage() {
+        Player player = game.getCurrentPlayer();
+        long kings = game.getBitboard(player, Type.KING);
+        if (stage == STAGE_TACTICAL && !tacticalOnly){
+            stage = STAGE_QUIET;
+            remainingPieces = game.getOccupancy(player) & ~kings;
+        } else if (stage != STAGE_KING){
+            stage = STAGE_KING;
+            remainingPieces = kings;
+        } else {
+            stage = STAGE_DONE;
+        }
+    }
+
+    /**
+     * Gets a bitboard of the squares the given piece may move to in the
+     * current stage.
+     *
+     * @param piece
+     * @return
+     */
+    private long getAllowedSquares(GamePiece piece) {
+        if (stage == STAGE_KING){
+            return tacticalOnly ? enemies : ALL_SQUARES;
+        }
+
+        int square = piece.getSquare();
+        long allowed = checkMask;
+        if ((pinned & Bitboards.bit(square)) != 0){
+            allowed &= Attacks.line(kingSquare, square);
+        }
+
+        // A Pawn can't move to the en passant square without capturing, and
+        // all of its moves to the far rank are promotions
+        long tactical = piece.getType() == Type.PAWN
+                ? pawnCaptureTargets | promotionRank
+                : enemies;
+        return stage == STAGE_TACTICAL
+                ? allowed & tactical
+                : allowed & ~tactical;
+    }
+
+}
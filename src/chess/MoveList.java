@@ -0,0 +1,59 @@
+package chess;
+
+/**
+ * A reusable list of moves, in the packed format described in {@link Moves}.
+ *
+ * <p>The backing array is allocated once, up-front, and is large enough to
+ * hold all of the moves available in any position. Callers exploring many
+ * positions should keep one MoveList per ply and clear it before reuse,
+ * rather than creating new ones.
+ *
+ * @author Dan Bryce
+ */
+public class MoveList {
+
+    /**
+     * The maximum number of moves a MoveList can hold.
+     *
+     * <p>No legal position has more than 218 moves available.
+     */
+    public static final int MAX_MOVES = 256;
+
+    private final int[] moves = new int[MAX_MOVES];
+
+    private int size;
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Discards all moves beyond the given size.
+     *
+     * @param size
+     */
+    public void truncate(int size) {
+        this.size = size;
+    }
+
+}
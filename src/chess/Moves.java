@@ -0,0 +1,211 @@
+package chess;
+
+import chess.GamePiece.Type;
+
+/**
+ * Helper methods for working with moves packed into an int.
+ *
+ * <p>Creating an {@link Action} object for every possible move is far too
+ * slow when exploring many positions, so internally a move is just an int
+ * with the following layout:
+ *
+ * <pre>
+ *  bits  0-5   square the piece moves from
+ *  bits  6-11  square the piece moves to
+ *  bits 12-15  flags (see below)
+ *  bits 16-18  type of piece to promote to, if any
+ * </pre>
+ *
+ * <p>For castling, the "to" square is the King's destination; the Rook's
+ * movement is implied. Similarly, for an en passant capture, the "to" square
+ * is the one the Pawn moves to, not the square of the captured Pawn.
+ *
+ * <p>A value of {@link #NONE} never represents a real move.
+ *
+ * @author Dan Bryce
+ */
+public abstract class Moves {
+
+    public static final int NONE = 0;
+
+    public static final int FLAG_CAPTURE = 1;
+    public static final int FLAG_PROMOTION = 1 << 1;
+    public static final int FLAG_CASTLE = 1 << 2;
+    public static final int FLAG_EN_PASSANT = 1 << 3;
+
+    private static final int SQUARE_MASK = 0x3f;
+    private static final int TO_SHIFT = 6;
+    private static final int FLAGS_SHIFT = 12;
+    private static final int FLAGS_MASK = 0xf;
+    private static final int PROMOTION_SHIFT = 16;
+    private static final int PROMOTION_MASK = 0x7;
+
+    /**
+     * Cached copy of Type.values(), which otherwise creates a new array every
+     * time.
+     */
+    private static final Type[] TYPES = Type.values();
+
+    /**
+     * Letter used for each type of piece when naming a promotion, indexed by
+     * Type.
+     */
+    private static final String PROMOTION_NAMES = "pnbrqk";
+
+    public static int create(int from, int to, int flags) {
+        return from | (to << TO_SHIFT) | (flags << FLAGS_SHIFT);
+    }
+
+    public static int createPromotion(int from, int to, int flags,
+            Type promotion) {
+        return create(from, to, flags | FLAG_PROMOTION)
+                | (promotion.ordinal() << PROMOTION_SHIFT);
+    }
+
+    /**
+     * Creates a copy of the given promotion move that promotes to a different
+     * type of piece.
+     *
+     * @param move
+     * @param promotion
+     * @return
+     */
+    public static int withPromotion(int move, Type promotion) {
+        return (move & ~(PROMOTION_MASK << PROMOTION_SHIFT))
+                | (promotion.ordinal() << PROMOTION_SHIFT);
+    }
+
+    public static int getFrom(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int getTo(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    public static int getFlags(int move) {
+        return (move >>> FLAGS_SHIFT) & FLAGS_MASK;
+    }
+
+    public static boolean isCapture(int move) {
+        return (getFlags(move) & FLAG_CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (getFlags(move) & FLAG_PROMOTION) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        return (getFlags(move) & FLAG_CASTLE) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (getFlags(move) & FLAG_EN_PASSANT) != 0;
+    }
+
+    /**
+     * Gets the square of the piece captured by the given move.
+     *
+     * <p>This is the "to" square, except for en passant captures, where the
+     * captured Pawn is level with the capturing Pawn's starting square.
+     *
+     * @param move
+     * @return
+     */
+    public static int getCapturedSquare(int move) {
+        int to = getTo(move);
+        if (!isEnPassant(move)){
+            return to;
+        }
+        return Bitboards.square(Bitboards.getX(to),
+                Bitboards.getY(getFrom(move)));
+    }
+
+    public static Type getPromotion(int move) {
+        return TYPES[(move >>> PROMOTION_SHIFT) & PROMOTION_MASK];
+    }
+
+    /**
+     * Gets the name of the given move in coordinate notation, for example,
+     * "e2e4", or "e7e8q" for a promotion.
+     *
+     * @param move
+     * @return
+     */
+    public static String toString(int move) {
+        StringBuilder sb = new StringBuilder(5);
+        appendSquareName(sb, getFrom(move));
+        appendSquareName(sb, getTo(move));
+        if (isPromotion(move)){
+            sb.append(PROMOTION_NAMES.charAt(getPromotion(move).ordinal()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Finds the legal move in the given Game with the given name in
+     * coordinate notation (see {@link #toString(int)}).
+     *
+     * @param game
+     * @param name
+     * @return The move, or NONE if the name is not valid or does not
+     *      describe a legal move.
+     */
+    public static int parse(Game game, CharSequence name) {
+        if (name.length() < 4 || name.length() > 5){
+            return NONE;
+        }
+        int from = parseSquare(name, 0);
+        int to = parseSquare(name, 2);
+        if (from == Game.NO_SQUARE || to == Game.NO_SQUARE){
+            return NONE;
+        }
+        Type promotion = null;
+        if (name.length() == 5){
+            int index = PROMOTION_NAMES.indexOf(name.charAt(4));
+            if (index < 0){
+                return NONE;
+            }
+            promotion = TYPES[index];
+        }
+        int move = game.findLegalMove(from, to, promotion);
+        if (isPromotion(move) != (promotion != null)){
+            // Promotions must (and other moves must not) name a piece
+            return NONE;
+        }
+        return move;
+    }
+
+    /**
+     * Parses the name of a square (for example, "e4").
+     *
+     * @param name
+     * @param index Index of the square's name within the given text.
+     * @return The square, or NO_SQUARE if the name is not valid.
+     */
+    public static int parseSquare(CharSequence name, int index) {
+        int x = name.charAt(index) - 'a';
+        int y = Game.SQUARES_PER_SIDE - (name.charAt(index + 1) - '0');
+        if (!Game.isValidPosition(x, y)){
+            return Game.NO_SQUARE;
+        }
+        return Bitboards.square(x, y);
+    }
+
+    /**
+     * Appends the name of the given square (for example, "e4") to the given
+     * StringBuilder.
+     *
+     * <p>Files are lettered from left to right, and ranks are numbered from
+     * White's side of the board.
+     *
+     * @param sb
+     * @param square
+     */
+    public static void appendSquareName(StringBuilder sb, int square) {
+        sb.append((char) ('a' + Bitboards.getX(square)));
+        sb.append((char) ('0' + Game.SQUARES_PER_SIDE
+                - Bitboards.getY(square)));
+    }
+
+}
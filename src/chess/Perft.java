@@ -0,0 +1,228 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Headless tool for verifying and measuring the move generator.
+ *
+ * <p>"Perft" (performance test) walks the tree of all legal moves to a given
+ * depth and counts the leaf nodes. Since the correct counts for well-known
+ * positions have been established independently, any difference points to a
+ * bug in move generation, and the time taken measures its speed.
+ *
+ * <p>Usage:
+ *
+ * <ul>
+ *  <li>No arguments: run every reference position and report any mismatches.
+ *  </li>
+ *  <li>A depth, optionally followed by a position in FEN: print the node
+ *  count for each move from that position, or from the starting position
+ *  ("divide"), which helps to narrow down a mismatch.</li>
+ * </ul>
+ *
+ * @author Dan Bryce
+ */
+public class Perft {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * A position with known perft results.
+     */
+    private static class ReferencePosition {
+
+        final String name;
+
+        final String fen;
+
+        /**
+         * The expected node count at each depth, starting from depth 1.
+         */
+        final long[] expected;
+
+        ReferencePosition(String name, String fen, long... expected) {
+            this.name = name;
+            this.fen = fen;
+            this.expected = expected;
+        }
+
+        Game createGame() {
+            return new Game(fen);
+        }
+
+    }
+
+    private static final ReferencePosition[] REFERENCE_POSITIONS = {
+        new ReferencePosition("Starting position", Fen.START_POSITION,
+                20L, 400L, 8902L, 197281L, 4865609L),
+        new ReferencePosition("Kiwipete",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R"
+                        + " w KQkq - 0 1",
+                48L, 2039L, 97862L, 4085603L),
+        new ReferencePosition("Rook and pawns endgame",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                14L, 191L, 2812L, 43238L, 674624L),
+        new ReferencePosition("Promotions and checks",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1"
+                        + " w kq - 0 1",
+                6L, 264L, 9467L, 422333L),
+        new ReferencePosition("Discovered checks",
+                "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R"
+                        + " w KQ - 1 8",
+                44L, 1486L, 62379L, 2103487L)
+    };
+
+    /**
+     * One MoveList for each ply, so that we never need to allocate during the
+     * search.
+     */
+    private final MoveList[] moveLists;
+
+    private Perft(int depth) {
+        moveLists = new MoveList[depth + 1];
+        for (int i = 0; i < moveLists.length; i++){
+            moveLists[i] = new MoveList();
+        }
+    }
+
+    /**
+     * The entry point of the application.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length == 0){
+            boolean passed = runReferencePositions();
+            System.exit(passed ? 0 : 1);
+        }
+        Game game = args.length > 1
+                ? new Game(String.join(" ",
+                        Arrays.copyOfRange(args, 1, args.length)))
+                : new Game();
+        divide(game, Integer.parseInt(args[0]));
+    }
+
+    /**
+     * Counts the leaf nodes of the tree of legal moves from the given position.
+     *
+     * @param game
+     * @param depth
+     * @return
+     */
+    public static long perft(Game game, int depth) {
+        if (depth <= 0){
+            return 1;
+        }
+        return new Perft(depth).countNodes(game, depth);
+    }
+
+    private long countNodes(Game game, int depth) {
+        MoveList moves = moveLists[depth];
+        game.getValidMoves(moves);
+        if (depth == 1){
+            // No need to make the moves just to count them
+            return moves.size();
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++){
+            int move = moves.get(i);
+            game.makeMove(move);
+            game.flipTurn();
+            nodes += countNodes(game, depth - 1);
+            game.flipTurn();
+            game.unmakeMove(move);
+        }
+        return nodes;
+    }
+
+    /**
+     * Prints the node count for each legal move from the given position,
+     * followed by the total.
+     *
+     * @param game
+     * @param depth
+     */
+    public static void divide(Game game, int depth) {
+        if (depth < 1){
+            throw new IllegalArgumentException("Invalid depth: " + depth);
+        }
+
+        long startTime = System.nanoTime();
+        MoveList moves = new MoveList();
+        game.getValidMoves(moves);
+        Perft perft = new Perft(depth);
+
+        long total = 0;
+        for (int i = 0; i < moves.size(); i++){
+            int move = moves.get(i);
+            game.makeMove(move);
+            game.flipTurn();
+            long nodes = depth == 1 ? 1 : perft.countNodes(game, depth - 1);
+            game.flipTurn();
+            game.unmakeMove(move);
+            System.out.println(Moves.toString(move) + ": " + nodes);
+            total += nodes;
+        }
+
+        long elapsed = System.nanoTime() - startTime;
+        System.out.println();
+        System.out.println("Nodes: " + total);
+        System.out.println("Time: " + formatSeconds(elapsed) + "s");
+        System.out.println("Nodes per second: " +
+                getNodesPerSecond(total, elapsed));
+    }
+
+    /**
+     * Runs perft on every reference position, and compares the results to
+     * the expected counts.
+     *
+     * @return True if every count matched.
+     */
+    public static boolean runReferencePositions() {
+        boolean passed = true;
+        long totalNodes = 0;
+        long totalTime = 0;
+
+        for (ReferencePosition position : REFERENCE_POSITIONS){
+            System.out.println(position.name);
+            for (int depth = 1; depth <= position.expected.length; depth++){
+                Game game = position.createGame();
+                long startTime = System.nanoTime();
+                long nodes = perft(game, depth);
+                long elapsed = System.nanoTime() - startTime;
+                totalNodes += nodes;
+                totalTime += elapsed;
+
+                long expected = position.expected[depth - 1];
+                boolean matched = nodes == expected;
+                passed &= matched;
+                String result = matched
+                        ? "OK"
+                        : "FAILED (expected " + expected + ")";
+                System.out.println("  Depth " + depth + ": " + nodes + " " +
+                        result + " in " + formatSeconds(elapsed) + "s");
+            }
+        }
+
+        System.out.println();
+        System.out.println(passed
+                ? "All counts matched"
+                : "Some counts did NOT match");
+        System.out.println("Nodes per second: " +
+                getNodesPerSecond(totalNodes, totalTime));
+        return passed;
+    }
+
+    private static long getNodesPerSecond(long nodes, long nanos) {
+        if (nanos == 0){
+            return 0;
+        }
+        return (long) (nodes * (double) NANOS_PER_SECOND / nanos);
+    }
+
+    private static String formatSeconds(long nanos) {
+        return String.format("%.3f", nanos / (double) NANOS_PER_SECOND);
+    }
+
+}
@@ -0,0 +1,257 @@
+package chess;
+
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+
+/**
+ * Scores for each piece on each square, used to evaluate a position.
+ *
+ * <p>A piece is worth its material value, plus a bonus or penalty depending
+ * on its square (a "piece-square table"). The tables encourage sensible
+ * development: Pawns advance in the centre, Knights and Bishops head for the
+ * middle of the board, and the King stays tucked away behind its Pawns.
+ *
+ * <p>Each piece has 2 scores, one for the middlegame and one for the
+ * endgame, and each piece other than the Pawns and King also counts towards
+ * the "phase" of the game. As pieces are traded the phase falls, and an
+ * evaluation should move from the middlegame score to the endgame score.
+ *
+ * <p>Like {@link Zobrist} keys, the scores of all the pieces are simply
+ * added together, so the Game keeps running totals as pieces are added,
+ * removed and moved, rather than adding them up for every evaluation.
+ *
+ * <p>Scores are in centipawns. White's pieces score positively and Black's
+ * negatively.
+ *
+ * @author Dan Bryce
+ */
+public abstract class PieceSquareTables {
+
+    /**
+     * The phase of the game at the start, when no pieces have been traded.
+     */
+    public static final int MAX_PHASE = 24;
+
+    private static final int NUM_TYPES = Type.values().length;
+
+    /**
+     * Value of each type of piece, indexed by Type.
+     */
+    private static final int[] PIECE_VALUES = {
+        100,    // Pawn
+        320,    // Knight
+        330,    // Bishop
+        500,    // Rook
+        900,    // Queen
+        0       // King (can never be captured)
+    };
+
+    /**
+     * How much each type of piece counts towards the phase, indexed by Type.
+     */
+    private static final int[] PHASES = {
+        0,      // Pawn
+        1,      // Knight
+        1,      // Bishop
+        2,      // Rook
+        4,      // Queen
+        0       // King
+    };
+
+    /*
+     * Piece-square tables for the middlegame, indexed by square, from White's
+     * point of view (so the first row is Black's side of the board). Black's
+     * scores are found by flipping the square vertically.
+     */
+
+    private static final int[] PAWN_TABLE = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         10,  10,  20,  30,  30,  20,  10,  10,
+          5,   5,  10,  25,  25,  10,   5,   5,
+          0,   0,   0,  20,  20,   0,   0,   0,
+          5,  -5, -10,   0,   0, -10,  -5,   5,
+          5,  10,  10, -20, -20,  10,  10,   5,
+          0,   0,   0,   0,   0,   0,   0,   0
+    };
+
+    private static final int[] KNIGHT_TABLE = {
+        -50, -40, -30, -30, -30, -30, -40, -50,
+        -40, -20,   0,   0,   0,   0, -20, -40,
+        -30,   0,  10,  15,  15,  10,   0, -30,
+        -30,   5,  15,  20,  20,  15,   5, -30,
+        -30,   0,  15,  20,  20,  15,   0, -30,
+        -30,   5,  10,  15,  15,  10,   5, -30,
+        -40, -20,   0,   5,   5,   0, -20, -40,
+        -50, -40, -30, -30, -30, -30, -40, -50
+    };
+
+    private static final int[] BISHOP_TABLE = {
+        -20, -10, -10, -10, -10, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,  10,  10,   5,   0, -10,
+        -10,   5,   5,  10,  10,   5,   5, -10,
+        -10,   0,  10,  10,  10,  10,   0, -10,
+        -10,  10,  10,  10,  10,  10,  10, -10,
+        -10,   5,   0,   0,   0,   0,   5, -10,
+        -20, -10, -10, -10, -10, -10, -10, -20
+    };
+
+    private static final int[] ROOK_TABLE = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+          5,  10,  10,  10,  10,  10,  10,   5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+         -5,   0,   0,   0,   0,   0,   0,  -5,
+          0,   0,   0,   5,   5,   0,   0,   0
+    };
+
+    private static final int[] QUEEN_TABLE = {
+        -20, -10, -10,  -5,  -5, -10, -10, -20,
+        -10,   0,   0,   0,   0,   0,   0, -10,
+        -10,   0,   5,   5,   5,   5,   0, -10,
+         -5,   0,   5,   5,   5,   5,   0,  -5,
+          0,   0,   5,   5,   5,   5,   0,  -5,
+        -10,   5,   5,   5,   5,   5,   0, -10,
+        -10,   0,   5,   0,   0,   0,   0, -10,
+        -20, -10, -10,  -5,  -5, -10, -10, -20
+    };
+
+    private static final int[] KING_TABLE = {
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -30, -40, -40, -50, -50, -40, -40, -30,
+        -20, -30, -30, -40, -40, -30, -30, -20,
+        -10, -20, -20, -20, -20, -20, -20, -10,
+         20,  20,   0,   0,   0,   0,  20,  20,
+         20,  30,  10,   0,   0,  10,  30,  20
+    };
+
+    /*
+     * Piece-square tables for the endgame, where they differ. Pawns are worth
+     * more the closer they are to promoting, and the King becomes a fighting
+     * piece that belongs in the centre.
+     */
+
+    private static final int[] PAWN_ENDGAME_TABLE = {
+          0,   0,   0,   0,   0,   0,   0,   0,
+         80,  80,  80,  80,  80,  80,  80,  80,
+         50,  50,  50,  50,  50,  50,  50,  50,
+         30,  30,  30,  30,  30,  30,  30,  30,
+         20,  20,  20,  20,  20,  20,  20,  20,
+         10,  10,  10,  10,  10,  10,  10,  10,
+          0,   0,   0,   0,   0,   0,   0,   0,
+          0,   0,   0,   0,   0,   0,   0,   0
+    };
+
+    private static final int[] KING_ENDGAME_TABLE = {
+        -50, -40, -30, -20, -20, -30, -40, -50,
+        -30, -20, -10,   0,   0, -10, -20, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  30,  40,  40,  30, -10, -30,
+        -30, -10,  20,  30,  30,  20, -10, -30,
+        -30, -30,   0,   0,   0,   0, -30, -30,
+        -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    /**
+     * Middlegame piece-square tables, indexed by Type.
+     */
+    private static final int[][] MIDGAME_TABLES = {
+        PAWN_TABLE,
+        KNIGHT_TABLE,
+        BISHOP_TABLE,
+        ROOK_TABLE,
+        QUEEN_TABLE,
+        KING_TABLE
+    };
+
+    /**
+     * Endgame piece-square tables, indexed by Type.
+     */
+    private static final int[][] ENDGAME_TABLES = {
+        PAWN_ENDGAME_TABLE,
+        KNIGHT_TABLE,
+        BISHOP_TABLE,
+        ROOK_TABLE,
+        QUEEN_TABLE,
+        KING_ENDGAME_TABLE
+    };
+
+    /**
+     * XORing a square with this flips it vertically.
+     */
+    private static final int FLIP_VERTICAL = 56;
+
+    /**
+     * Middlegame score of each piece on each square, including its material
+     * value, indexed by player, then type, then square.
+     */
+    private static final int[] MIDGAME_SCORES =
+            createScores(MIDGAME_TABLES);
+
+    /**
+     * Endgame score of each piece on each square, including its material
+     * value, indexed by player, then type, then square.
+     */
+    private static final int[] ENDGAME_SCORES =
+            createScores(ENDGAME_TABLES);
+
+    private static int[] createScores(int[][] tables) {
+        int[] scores = new int[Player.values().length * NUM_TYPES
+                * Bitboards.NUM_SQUARES];
+        for (Player player : Player.values()){
+            int flip = player == Player.WHITE ? 0 : FLIP_VERTICAL;
+            int sign = player == Player.WHITE ? 1 : -1;
+            for (Type type : Type.values()){
+                int[] table = tables[type.ordinal()];
+                for (int square = 0; square < Bitboards.NUM_SQUARES;
+                        square++){
+                    scores[getIndex(player, type, square)] = sign
+                            * (PIECE_VALUES[type.ordinal()]
+                                    + table[square ^ flip]);
+                }
+            }
+        }
+        return scores;
+    }
+
+    private static int getIndex(Player player, Type type, int square) {
+        return (player.ordinal() * NUM_TYPES + type.ordinal())
+                * Bitboards.NUM_SQUARES + square;
+    }
+
+    public static int midgame(Player player, Type type, int square) {
+        return MIDGAME_SCORES[getIndex(player, type, square)];
+    }
+
+    public static int endgame(Player player, Type type, int square) {
+        return ENDGAME_SCORES[getIndex(player, type, square)];
+    }
+
+    /**
+     * Gets how much the given type of piece counts towards the phase of the
+     * game.
+     *
+     * @param type
+     * @return
+     */
+    public static int phase(Type type) {
+        return PHASES[type.ordinal()];
+    }
+
+    /**
+     * Gets the material value of the given type of piece.
+     *
+     * @param type
+     * @return
+     */
+    public static int getPieceValue(Type type) {
+        return PIECE_VALUES[type.ordinal()];
+    }
+
+}
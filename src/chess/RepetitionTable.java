@@ -0,0 +1,149 @@
+package chess;
+
+/**
+ * Counts how many times each position (identified by its hash) has occurred.
+ *
+ * <p>This is a hash table using open addressing, so that looking up,
+ * incrementing and decrementing a count are all O(1) and do not allocate,
+ * except when the table needs to grow.
+ *
+ * @author Dan Bryce
+ */
+class RepetitionTable {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] keys;
+
+    /**
+     * The count for each key. A count of zero means the slot is empty.
+     */
+    private int[] counts;
+
+    private int size;
+
+    public RepetitionTable() {
+        keys = new long[INITIAL_CAPACITY];
+        counts = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Creates a copy of the given RepetitionTable.
+     *
+     * @param other
+     */
+    public RepetitionTable(RepetitionTable other) {
+        keys = other.keys.clone();
+        counts = other.counts.clone();
+        size = other.size;
+    }
+
+    public int getCount(long key) {
+        int mask = keys.length - 1;
+        for (int i = getHome(key, mask); counts[i] != 0; i = (i + 1) & mask){
+            if (keys[i] == key){
+                return counts[i];
+            }
+        }
+        return 0;
+    }
+
+    public void increment(long key) {
+        if ((size + 1) * 2 > keys.length){
+            grow();
+        }
+        int mask = keys.length - 1;
+        int i = getHome(key, mask);
+        while (counts[i] != 0){
+            if (keys[i] == key){
+                counts[i]++;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        counts[i] = 1;
+        size++;
+    }
+
+    public void decrement(long key) {
+        int mask = keys.length - 1;
+        int i = getHome(key, mask);
+        while (counts[i] != 0){
+            if (keys[i] == key){
+                counts[i]--;
+                if (counts[i] == 0){
+                    remove(i, mask);
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public void clear() {
+        if (size == 0){
+            return;
+        }
+        for (int i = 0; i < counts.length; i++){
+            counts[i] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * Empties the given slot.
+     *
+     * <p>Any later entries in the same run of occupied slots are shifted back
+     * if necessary, so that they can still be found from their home slots.
+     *
+     * @param i
+     * @param mask
+     */
+    private void remove(int i, int mask) {
+        int j = i;
+        while (true){
+            j = (j + 1) & mask;
+            if (counts[j] == 0){
+                break;
+            }
+            int home = getHome(keys[j], mask);
+            // Entry j can fill the gap at i only if its home slot is not
+            // (cyclically) between i and j
+            boolean canMove = (i <= j)
+                    ? (home <= i || home > j)
+                    : (home <= i && home > j);
+            if (canMove){
+                keys[i] = keys[j];
+                counts[i] = counts[j];
+                i = j;
+            }
+        }
+        counts[i] = 0;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++){
+            if (oldCounts[j] == 0){
+                continue;
+            }
+            int i = getHome(oldKeys[j], mask);
+            while (counts[i] != 0){
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            counts[i] = oldCounts[j];
+        }
+    }
+
+    private static int getHome(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+}
@@ -0,0 +1,93 @@
+package chess;
+
+import java.util.Random;
+
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+
+/**
+ * Random keys used to compute a hash of a position.
+ *
+ * <p>A position's hash is the XOR of the keys for every piece on every square,
+ * the castling rights, any en passant capture, and the side to move. Since
+ * XOR is its own inverse, the hash can be updated incrementally as pieces are
+ * added, removed and moved, rather than being recomputed from scratch.
+ *
+ * @author Dan Bryce
+ */
+public abstract class Zobrist {
+
+    private static final int NUM_PLAYERS = Player.values().length;
+
+    private static final int NUM_TYPES = Type.values().length;
+
+    /**
+     * Fixed seed, so that hashes are the same from one run to the next.
+     */
+    private static final long SEED = 0x3C6EF372FE94F82BL;
+
+    /**
+     * Keys for each piece on each square, indexed by player, then type, then
+     * square.
+     */
+    private static final long[] PIECE_KEYS =
+            new long[NUM_PLAYERS * NUM_TYPES * Bitboards.NUM_SQUARES];
+
+    /**
+     * Keys for each possible combination of castling rights.
+     */
+    private static final long[] CASTLING_KEYS = new long[16];
+
+    /**
+     * Keys for each file on which an en passant capture is possible.
+     */
+    private static final long[] EN_PASSANT_KEYS =
+            new long[Game.SQUARES_PER_SIDE];
+
+    /**
+     * Key that is included when it is Black's turn.
+     */
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        Random random = new Random(SEED);
+        for (int i = 0; i < PIECE_KEYS.length; i++){
+            PIECE_KEYS[i] = random.nextLong();
+        }
+        for (int i = 0; i < CASTLING_KEYS.length; i++){
+            CASTLING_KEYS[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = random.nextLong();
+        for (int i = 0; i < EN_PASSANT_KEYS.length; i++){
+            EN_PASSANT_KEYS[i] = random.nextLong();
+        }
+    }
+
+    public static long piece(Player player, Type type, int square) {
+        int index = (player.ordinal() * NUM_TYPES + type.ordinal())
+                * Bitboards.NUM_SQUARES + square;
+        return PIECE_KEYS[index];
+    }
+
+    public static long castling(int castlingRights) {
+        return CASTLING_KEYS[castlingRights];
+    }
+
+    /**
+     * Gets the key for an en passant capture onto the given square.
+     *
+     * <p>Only the file matters, since the rank is implied by the player to
+     * move.
+     *
+     * @param square
+     * @return
+     */
+    public static long enPassant(int square) {
+        return EN_PASSANT_KEYS[Bitboards.getX(square)];
+    }
+
+    public static long blackToMove() {
+        return BLACK_TO_MOVE_KEY;
+    }
+
+}
@@ -1,6 +1,5 @@
 package chess.actions;
 
-import chess.Game;
 import chess.GamePiece;
 
 /**
@@ -12,23 +11,11 @@ public class Attack extends Move {
 
     private GamePiece target;
 
-    public Attack(GamePiece attacker, GamePiece target) {
-        super(attacker, target.getX(), target.getY());
+    public Attack(GamePiece attacker, GamePiece target, int move) {
+        super(attacker, move);
         this.target = target;
     }
 
-    @Override
-    public void execute(Game game) {
-        game.removePiece(target);
-        super.execute(game);
-    }
-
-    @Override
-    public void undo(Game game) {
-        super.undo(game);
-        game.addPiece(target);
-    }
-
     public GamePiece getTarget() {
         return target;
     }
@@ -1,6 +1,5 @@
 package chess.actions;
 
-import chess.Game;
 import chess.GamePiece;
 
 /**
@@ -13,21 +12,13 @@ public class AttackingPromotion extends Promotion {
 
     private GamePiece target;
 
-    public AttackingPromotion(GamePiece piece, GamePiece target) {
-        super(piece, target.getX(), target.getY());
+    public AttackingPromotion(GamePiece piece, GamePiece target, int move) {
+        super(piece, move);
         this.target = target;
     }
 
-    @Override
-    public void execute(Game game) {
-        super.execute(game);
-        game.removePiece(target);
-    }
-
-    @Override
-    public void undo(Game game) {
-        super.undo(game);
-        game.addPiece(target);
+    public GamePiece getTarget() {
+        return target;
     }
 
 }
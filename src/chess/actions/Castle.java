@@ -13,7 +13,7 @@ import chess.pieces.Rook;
  */
 public class Castle extends Action {
 
-    private static final int KING_INITIAL_X = 4;
+    public static final int KING_INITIAL_X = 4;
     private static final int KING_DEST_X_EAST = KING_INITIAL_X - 2;
     private static final int KING_DEST_X_WEST = KING_INITIAL_X + 2;
 
@@ -24,38 +24,62 @@ public class Castle extends Action {
 
     private GamePiece rook;
 
-    public Castle(GamePiece piece, Rook rook) {
-        super(piece, rook.getX(), rook.getY());
+    public Castle(GamePiece piece, Rook rook, int move) {
+        super(piece, move);
         this.rook = rook;
     }
 
     @Override
     public void execute(Game game) {
-        if (rook.getX() == 0){
-            // Castling to the east
-            game.movePiece(piece, KING_DEST_X_EAST, piece.getY());
-            game.movePiece(rook, ROOK_DEST_X_EAST, piece.getY());
-        } else {
-            // Castling to the west
-            game.movePiece(piece, KING_DEST_X_WEST, piece.getY());
-            game.movePiece(rook, ROOK_DEST_X_WEST, piece.getY());
-        }
-        piece.setMoved(true);
-        rook.setMoved(true);
+        game.makeMove(move);
     }
 
     @Override
     public void undo(Game game) {
-        game.movePiece(piece, KING_INITIAL_X, piece.getY());
-        if (rook.getX() == ROOK_DEST_X_EAST){
-            // Castled to the east
-            game.movePiece(rook, ROOK_INITIAL_X_EAST, piece.getY());
-        } else {
-            // Castled to the west
-            game.movePiece(rook, ROOK_INITIAL_X_WEST, piece.getY());
-        }
-        piece.setMoved(false);
-        rook.setMoved(false);
+        game.unmakeMove(move);
+    }
+
+    public GamePiece getRook() {
+        return rook;
+    }
+
+    /**
+     * Gets the x-position the King moves to when castling with the Rook at the
+     * given x-position.
+     *
+     * @param rookX
+     * @return
+     */
+    public static int getKingDestX(int rookX) {
+        return rookX == ROOK_INITIAL_X_EAST
+                ? KING_DEST_X_EAST
+                : KING_DEST_X_WEST;
+    }
+
+    /**
+     * Gets the x-position of the Rook involved in castling, given the King's
+     * destination.
+     *
+     * @param kingDestX
+     * @return
+     */
+    public static int getRookInitialX(int kingDestX) {
+        return kingDestX == KING_DEST_X_EAST
+                ? ROOK_INITIAL_X_EAST
+                : ROOK_INITIAL_X_WEST;
+    }
+
+    /**
+     * Gets the x-position the Rook moves to when castling, given the King's
+     * destination.
+     *
+     * @param kingDestX
+     * @return
+     */
+    public static int getRookDestX(int kingDestX) {
+        return kingDestX == KING_DEST_X_EAST
+                ? ROOK_DEST_X_EAST
+                : ROOK_DEST_X_WEST;
     }
 
 }
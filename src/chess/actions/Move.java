@@ -11,37 +11,18 @@ import chess.GamePiece;
  */
 public class Move extends Action {
 
-    private boolean firstMove;
-    private int startX, startY;
-
-    public Move(GamePiece piece, int x, int y) {
-        super(piece, x, y);
+    public Move(GamePiece piece, int move) {
+        super(piece, move);
     }
 
     @Override
     public void execute(Game game) {
-        startX = piece.getX();
-        startY = piece.getY();
-        firstMove = !piece.hasMoved();
-        game.movePiece(piece, x, y);
+        game.makeMove(move);
     }
 
     @Override
     public void undo(Game game) {
-        game.movePiece(piece, startX, startY);
-        if (firstMove){
-            piece.setMoved(false);
-        }
-    }
-
-    @Override
-    public int getX() {
-        return x;
-    }
-
-    @Override
-    public int getY() {
-        return y;
+        game.unmakeMove(move);
     }
 
 }
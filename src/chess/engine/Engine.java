@@ -0,0 +1,426 @@
+package chess.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import chess.Action;
+import chess.Game;
+import chess.Moves;
+import chess.tablebase.Tablebases;
+
+/**
+ * Computer player, which chooses moves by searching the game tree.
+ *
+ * <p>An Engine keeps its transposition table between searches, so the same
+ * Engine should be used for every move of a game. It can only run one search
+ * at a time.
+ *
+ * <p>The search can use several threads ("Lazy SMP"). Each helper thread
+ * searches its own copy of the position, and all of the threads share the
+ * transposition table. The threads do not otherwise co-ordinate at all, but
+ * since each one can use the results stored by the others, together they
+ * search deeper than a single thread in the same time.
+ *
+ * <p>While the opponent is thinking, the Engine can "ponder": search, in
+ * the background, the position it expects after the opponent's move (see
+ * {@link #ponder}). If the opponent plays that move, the next search simply
+ * carries on from where the pondering got to. Otherwise, the pondering is
+ * abandoned, although what it stored in the transposition table may still
+ * help.
+ *
+ * @author Dan Bryce
+ */
+public class Engine {
+
+    /**
+     * Limits that stop a search as soon as it has a move to play.
+     */
+    private static final SearchLimits STOP_LIMITS = SearchLimits.nodes(1);
+
+    private final TranspositionTable table;
+
+    /**
+     * The Searcher that runs on the calling thread.
+     */
+    private final Searcher mainSearcher;
+
+    /**
+     * Searchers that run on helper threads.
+     */
+    private final Searcher[] helpers;
+
+    private final ExecutorService executor;
+
+    /**
+     * Runs the search while pondering.
+     */
+    private final ExecutorService ponderExecutor;
+
+    /**
+     * The search started by {@link #ponder}, or null if we are not
+     * pondering.
+     */
+    private Future<SearchResult> ponderResult;
+
+    /**
+     * Hash of the position being pondered.
+     */
+    private long ponderHash;
+
+    /**
+     * Reference through which the limits of the real search are given to
+     * the ponder search.
+     */
+    private AtomicReference<SearchLimits> ponderLimits;
+
+    /**
+     * Flag that stops the current (or most recent) search, or null if there
+     * has not been a search yet.
+     *
+     * <p>Each search gets a new flag, so that {@link #stop} can never affect
+     * a later search.
+     */
+    private volatile AtomicBoolean stopRequested;
+
+    /**
+     * Book consulted before searching, if any.
+     */
+    private OpeningBook book;
+
+    /**
+     * Tablebases probed before and during the search, if any.
+     */
+    private Tablebases tablebases;
+
+    public Engine() {
+        this(new TranspositionTable());
+    }
+
+    public Engine(TranspositionTable table) {
+        this(table, 1);
+    }
+
+    /**
+     * Creates an Engine that searches using the given number of threads.
+     *
+     * @param table
+     * @param numThreads
+     */
+    public Engine(TranspositionTable table, int numThreads) {
+        if (numThreads < 1){
+            throw new IllegalArgumentException(
+                    "Invalid number of threads: " + numThreads);
+        }
+        this.table = table;
+        mainSearcher = new Searcher(table, 0);
+
+        // Half of the helpers search 1 ply deeper than the main thread
+        helpers = new Searcher[numThreads - 1];
+        for (int i = 0; i < helpers.length; i++){
+            helpers[i] = new Searcher(table, (i + 1) % 2);
+        }
+
+        executor = helpers.length == 0
+                ? null
+                : Executors.newFixedThreadPool(helpers.length, r -> {
+                    Thread thread = new Thread(r, "Search helper");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ponderExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Ponder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Searches for the best move for the current player.
+     *
+     * <p>The Game is used for the search, and is restored to its current
+     * position before this returns. It must not be modified in the meantime.
+     *
+     * <p>If the position is in the opening book, the book move is returned
+     * straight away, without searching, with a depth of 0. The same goes for
+     * a position in the tablebases, where the move is scored by its exact
+     * distance to mate.
+     *
+     * <p>If the Engine is pondering this position, the ponder search is
+     * given the limits, and its result is returned, including the time and
+     * nodes spent pondering. Any other pondering is stopped first.
+     *
+     * @param game
+     * @param limits
+     * @return
+     */
+    public SearchResult search(Game game, SearchLimits limits) {
+        if (ponderResult != null){
+            boolean hit = game.getHash() == ponderHash;
+            SearchResult result = finishPondering(hit
+                    ? limits
+                    : STOP_LIMITS);
+            if (hit && result != null){
+                return result;
+            }
+        }
+        return search(game, limits, null);
+    }
+
+    /**
+     * Searches for the best move for the current player.
+     *
+     * @param game
+     * @param limits
+     * @param newLimits
+     *      Reference through which new limits may be given to the search
+     *      while it runs, or null.
+     * @return
+     */
+    private SearchResult search(Game game, SearchLimits limits,
+            AtomicReference<SearchLimits> newLimits) {
+        if (book != null){
+            int bookMove = book.chooseMove(game);
+            if (bookMove != Moves.NONE){
+                return new SearchResult(bookMove, 0, 0, 0, 0);
+            }
+        }
+        if (tablebases != null){
+            int move = tablebases.chooseMove(game);
+            if (move != Moves.NONE){
+                int score = Searcher.getTablebaseScore(
+                        tablebases.probe(game), 0);
+                return new SearchResult(move, score, 0, 0, 0);
+            }
+        }
+        table.newSearch();
+        AtomicBoolean stop = new AtomicBoolean();
+        stopRequested = stop;
+
+        // Helpers run until the main search finishes
+        SearchLimits helperLimits = SearchLimits.depth(limits.getMaxDepth());
+        List<Future<SearchResult>> helperResults =
+                new ArrayList<>(helpers.length);
+        for (Searcher helper : helpers){
+            Game copy = new Game(game);
+            helperResults.add(executor.submit(
+                    () -> helper.search(copy, helperLimits, stop)));
+        }
+
+        SearchResult result = mainSearcher.search(game, limits, newLimits,
+                stop);
+        stop.set(true);
+        if (helpers.length == 0){
+            return result;
+        }
+
+        // Use the deepest result, and count the nodes searched by every
+        // thread
+        SearchResult best = result;
+        long nodes = result.getNodes();
+        for (Future<SearchResult> future : helperResults){
+            SearchResult helperResult = getResult(future);
+            if (helperResult == null){
+                continue;
+            }
+            nodes += helperResult.getNodes();
+            if (helperResult.getDepth() > best.getDepth()
+                    && helperResult.getMove() != Moves.NONE){
+                best = helperResult;
+            }
+        }
+        return new SearchResult(best.getMove(), best.getScore(),
+                best.getDepth(), nodes, result.getTimeMillis());
+    }
+
+    /**
+     * Waits for a background search to finish.
+     *
+     * @param future
+     * @return The search's result, or null if we were interrupted.
+     */
+    private static SearchResult getResult(Future<SearchResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed",
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Searches for the best move for the current player, and plays it.
+     *
+     * @param game
+     * @param limits
+     * @return The Action that was played, or null if the current player has
+     *      no valid move.
+     */
+    public Action play(Game game, SearchLimits limits) {
+        int move = search(game, limits).getMove();
+        if (move == Moves.NONE){
+            return null;
+        }
+        return game.play(move);
+    }
+
+    /**
+     * Starts pondering: searching, in the background, the position that we
+     * expect after the current player moves.
+     *
+     * <p>The expected move is taken from the transposition table, so this
+     * is best called straight after the Engine has played a move. The Game
+     * is copied, so it may be changed as soon as this returns.
+     *
+     * <p>The pondering carries on until the next call to {@link #search} or
+     * {@link #stopPondering}, which must come from the same thread as this.
+     *
+     * @param game
+     * @return Whether the Engine is now pondering; it is not if no move is
+     *      expected, or if the expected move ends the game.
+     */
+    public boolean ponder(Game game) {
+        stopPondering();
+        int expectedMove = getExpectedMove(game);
+        if (expectedMove == Moves.NONE){
+            return false;
+        }
+        Game copy = new Game(game);
+        copy.play(expectedMove);
+        if (copy.isGameOver()){
+            return false;
+        }
+
+        AtomicReference<SearchLimits> limits = new AtomicReference<>();
+        ponderHash = copy.getHash();
+        ponderLimits = limits;
+        ponderResult = ponderExecutor.submit(
+                () -> search(copy, SearchLimits.infinite(), limits));
+        return true;
+    }
+
+    /**
+     * Gets the move that the current player is expected to play, according
+     * to the transposition table.
+     *
+     * @param game
+     * @return The move, or NONE if there is no legal move in the table for
+     *      this position.
+     */
+    public int getExpectedMove(Game game) {
+        long data = table.probe(game.getHash());
+        if (data == TranspositionTable.NONE){
+            return Moves.NONE;
+        }
+        int move = TranspositionTable.getMove(data);
+        if (move == Moves.NONE || game.findLegalMove(Moves.getFrom(move),
+                Moves.getTo(move), Moves.getPromotion(move)) != move){
+            return Moves.NONE;
+        }
+        return move;
+    }
+
+    /**
+     * Stops pondering, and waits for the ponder search to finish.
+     */
+    public void stopPondering() {
+        if (ponderResult != null){
+            finishPondering(STOP_LIMITS);
+        }
+    }
+
+    /**
+     * Gives the ponder search new limits, and waits for it to finish.
+     *
+     * @param limits
+     * @return The result of the ponder search, or null if we were
+     *      interrupted.
+     */
+    private SearchResult finishPondering(SearchLimits limits) {
+        Future<SearchResult> future = ponderResult;
+        ponderLimits.set(limits);
+        ponderResult = null;
+        ponderLimits = null;
+        return getResult(future);
+    }
+
+    public boolean isPondering() {
+        return ponderResult != null;
+    }
+
+    /**
+     * Asks the current search to stop as soon as possible.
+     *
+     * <p>This can be called from any thread. The search still returns the
+     * best move found so far.
+     */
+    public void stop() {
+        AtomicBoolean stop = stopRequested;
+        if (stop != null){
+            stop.set(true);
+        }
+    }
+
+    /**
+     * Stops the helper threads.
+     *
+     * <p>The Engine cannot be used after this is called.
+     */
+    public void shutdown() {
+        if (executor != null){
+            executor.shutdownNow();
+        }
+        ponderExecutor.shutdownNow();
+    }
+
+    public int getNumThreads() {
+        return helpers.length + 1;
+    }
+
+    /**
+     * Sets the opening book to consult before searching.
+     *
+     * @param book
+     *      The book, or null to always search.
+     */
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    public OpeningBook getOpeningBook() {
+        return book;
+    }
+
+    /**
+     * Sets the tablebases to consult before and during the search.
+     *
+     * <p>This must not be called during a search.
+     *
+     * @param tablebases
+     *      The tablebases, or null to always search.
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+        mainSearcher.setTablebases(tablebases);
+        for (Searcher helper : helpers){
+            helper.setTablebases(tablebases);
+        }
+    }
+
+    public Tablebases getTablebases() {
+        return tablebases;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+}
@@ -0,0 +1,53 @@
+package chess.engine;
+
+import chess.Game;
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+import chess.PieceSquareTables;
+
+/**
+ * Static evaluation of a position.
+ *
+ * <p>A position is scored by the material each player has, plus a bonus or
+ * penalty for each piece depending on its square (see
+ * {@link PieceSquareTables}). Each piece has a middlegame and an endgame
+ * score, and the two totals are blended ("tapered") according to how much
+ * material is left, so that, for example, the King comes out to fight once
+ * the Queens are traded.
+ *
+ * <p>The Game keeps the totals up to date as moves are made and unmade, so
+ * an evaluation never has to look at the pieces themselves.
+ *
+ * <p>Scores are in centipawns, from the point of view of the current player.
+ *
+ * @author Dan Bryce
+ */
+public abstract class Evaluator {
+
+    /**
+     * Evaluates the current position.
+     *
+     * @param game
+     * @return Score from the point of view of the current player.
+     */
+    public static int evaluate(Game game) {
+        // After a promotion there can be more material than at the start
+        int phase = Math.min(game.getPhase(), PieceSquareTables.MAX_PHASE);
+        int score = (game.getMidgameScore() * phase
+                + game.getEndgameScore()
+                        * (PieceSquareTables.MAX_PHASE - phase))
+                / PieceSquareTables.MAX_PHASE;
+        return game.getCurrentPlayer() == Player.WHITE ? score : -score;
+    }
+
+    /**
+     * Gets the material value of the given type of piece.
+     *
+     * @param type
+     * @return
+     */
+    public static int getPieceValue(Type type) {
+        return PieceSquareTables.getPieceValue(type);
+    }
+
+}
@@ -0,0 +1,340 @@
+package chess.engine;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+import chess.Bitboards;
+import chess.Game;
+import chess.GamePiece;
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+import chess.Moves;
+import chess.actions.Castle;
+
+/**
+ * Opening book in the Polyglot format.
+ *
+ * <p>A Polyglot book is a file of 16-byte entries, sorted by key:
+ *
+ * <pre>
+ *  bytes   0-7  key (the Polyglot hash of the position)
+ *  bytes   8-9  move
+ *  bytes 10-11  weight
+ *  bytes 12-15  learning data (unused)
+ * </pre>
+ *
+ * <p>All values are big-endian. The file is memory-mapped, and never copied
+ * into the heap; a lookup is a binary search over the mapped entries.
+ *
+ * <p>Polyglot keys are not the same as our own Zobrist hashes, since they
+ * use a standard table of 781 random numbers (Polyglot's "Random64"). This
+ * table is read from the class path resource {@value #KEYS_RESOURCE}, or
+ * from a file given to {@link #open(Path, Path)}, which must contain the 781
+ * numbers as big-endian longs, in Polyglot's order. Either way, the table is
+ * checked against the known key of the starting position.
+ *
+ * <p>An OpeningBook is immutable, so it can be shared between threads.
+ *
+ * @author Dan Bryce
+ */
+public class OpeningBook {
+
+    private static final String KEYS_RESOURCE = "polyglot-random64.bin";
+
+    private static final int NUM_KEYS = 781;
+
+    private static final int CASTLING_KEYS_OFFSET = 768;
+    private static final int EN_PASSANT_KEYS_OFFSET = 772;
+    private static final int WHITE_TO_MOVE_KEY = 780;
+
+    /**
+     * Our castling rights, in the order of Polyglot's castling keys.
+     */
+    private static final int[] CASTLING_ORDER = {
+        Game.CASTLE_WHITE_WEST, Game.CASTLE_WHITE_EAST,
+        Game.CASTLE_BLACK_WEST, Game.CASTLE_BLACK_EAST
+    };
+
+    /**
+     * The Polyglot key of the starting position, used to check that the key
+     * table is correct.
+     */
+    private static final long START_POSITION_KEY = 0x463B96181691FC9CL;
+
+    private static final int ENTRY_SIZE = 16;
+
+    private static final int MOVE_OFFSET = 8;
+    private static final int WEIGHT_OFFSET = 10;
+
+    /*
+     * Layout of a Polyglot move:
+     *
+     *  bits   0-2  destination file
+     *  bits   3-5  destination row (0 is White's side)
+     *  bits   6-8  source file
+     *  bits  9-11  source row
+     *  bits 12-14  promotion piece (0 none, 1 Knight ... 4 Queen)
+     */
+    private static final int SQUARE_BITS = 6;
+    private static final int SQUARE_MASK = 0x3f;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int PROMOTION_MASK = 0x7;
+
+    private static final Type[] TYPES = Type.values();
+
+    private final ByteBuffer entries;
+
+    private final int numEntries;
+
+    private final long[] keys;
+
+    /**
+     * Creates an OpeningBook using the given entries and key table.
+     *
+     * @param entries
+     * @param keys
+     */
+    OpeningBook(ByteBuffer entries, long[] keys) {
+        this.entries = entries;
+        this.keys = keys;
+        numEntries = entries.capacity() / ENTRY_SIZE;
+    }
+
+    /**
+     * Opens the Polyglot book at the given path.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        InputStream in = OpeningBook.class.getResourceAsStream(KEYS_RESOURCE);
+        if (in == null){
+            throw new IOException("Polyglot key table not found: "
+                    + KEYS_RESOURCE);
+        }
+        return open(path, loadKeys(in, KEYS_RESOURCE));
+    }
+
+    /**
+     * Opens the Polyglot book at the given path, using the key table in the
+     * given file.
+     *
+     * @param path
+     * @param keysPath
+     * @return
+     * @throws IOException
+     */
+    public static OpeningBook open(Path path, Path keysPath)
+            throws IOException {
+        return open(path, loadKeys(Files.newInputStream(keysPath),
+                keysPath.toString()));
+    }
+
+    private static OpeningBook open(Path path, long[] keys)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)){
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE){
+                throw new IOException("Opening book too large: " + path);
+            }
+            // The mapping remains valid after the channel is closed
+            ByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, size);
+            return new OpeningBook(entries, keys);
+        }
+    }
+
+    /**
+     * Reads and checks a Polyglot key table.
+     *
+     * @param in
+     *      Stream of the table, which is closed afterwards.
+     * @param source
+     *      Name of the table, for error messages.
+     * @return
+     * @throws IOException
+     */
+    private static long[] loadKeys(InputStream in, String source)
+            throws IOException {
+        long[] keys = new long[NUM_KEYS];
+        try (DataInputStream data = new DataInputStream(in)){
+            for (int i = 0; i < keys.length; i++){
+                keys[i] = data.readLong();
+            }
+        }
+        if (getKey(new Game(), keys) != START_POSITION_KEY){
+            throw new IOException("Polyglot key table is not valid: "
+                    + source);
+        }
+        return keys;
+    }
+
+    /**
+     * Chooses a move for the current player from the book.
+     *
+     * <p>If the book has several moves for the position, one is chosen at
+     * random, in proportion to their weights.
+     *
+     * @param game
+     * @return A legal move, or NONE if the position is not in the book.
+     */
+    public int chooseMove(Game game) {
+        long key = getKey(game, keys);
+        int first = findFirstEntry(key);
+
+        // Entries for moves that are not legal (which would mean a corrupt
+        // book, or a hash collision) are skipped
+        int totalWeight = 0;
+        for (int i = first; i < numEntries && getEntryKey(i) == key; i++){
+            if (getMove(game, i) != Moves.NONE){
+                totalWeight += getWeight(i);
+            }
+        }
+        if (totalWeight == 0){
+            return Moves.NONE;
+        }
+
+        int target = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (int i = first; i < numEntries && getEntryKey(i) == key; i++){
+            int move = getMove(game, i);
+            if (move == Moves.NONE){
+                continue;
+            }
+            target -= getWeight(i);
+            if (target < 0){
+                return move;
+            }
+        }
+        return Moves.NONE;
+    }
+
+    /**
+     * Finds the first entry with the given key, or where it would be.
+     *
+     * @param key
+     * @return
+     */
+    private int findFirstEntry(long key) {
+        int low = 0;
+        int high = numEntries;
+        while (low < high){
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(getEntryKey(mid), key) < 0){
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long getEntryKey(int index) {
+        return entries.getLong(index * ENTRY_SIZE);
+    }
+
+    private int getMove(Game game, int index) {
+        return toMove(game,
+                entries.getShort(index * ENTRY_SIZE + MOVE_OFFSET));
+    }
+
+    private int getWeight(int index) {
+        return Short.toUnsignedInt(
+                entries.getShort(index * ENTRY_SIZE + WEIGHT_OFFSET));
+    }
+
+    /**
+     * Converts a Polyglot move to the legal move it describes.
+     *
+     * @param game
+     * @param polyglotMove
+     * @return The move, or NONE if it is not legal.
+     */
+    private static int toMove(Game game, short polyglotMove) {
+        int to = toSquare(polyglotMove & SQUARE_MASK);
+        int from = toSquare((polyglotMove >>> SQUARE_BITS) & SQUARE_MASK);
+        int promotion = (polyglotMove >>> PROMOTION_SHIFT) & PROMOTION_MASK;
+
+        // Castling is written as the King capturing its own Rook
+        GamePiece piece = game.getPieceAt(from);
+        GamePiece target = game.getPieceAt(to);
+        if (piece != null && piece.getType() == Type.KING
+                && target != null && target.getType() == Type.ROOK
+                && target.getOwner() == piece.getOwner()){
+            to = Bitboards.square(
+                    Castle.getKingDestX(Bitboards.getX(to)),
+                    Bitboards.getY(to));
+        }
+
+        return game.findLegalMove(from, to,
+                promotion == 0 ? null : TYPES[promotion]);
+    }
+
+    /**
+     * Converts a Polyglot square, where row 0 is White's side, to one of
+     * ours.
+     *
+     * @param square
+     * @return
+     */
+    private static int toSquare(int square) {
+        int file = square & (Game.SQUARES_PER_SIDE - 1);
+        int row = square / Game.SQUARES_PER_SIDE;
+        return Bitboards.square(file, Game.SQUARES_PER_SIDE - 1 - row);
+    }
+
+    /**
+     * Computes the Polyglot key of the current position of the given Game.
+     *
+     * @param game
+     * @param keys
+     * @return
+     */
+    static long getKey(Game game, long[] keys) {
+        long key = 0;
+
+        long remaining = game.getOccupied();
+        while (remaining != 0){
+            int square = Bitboards.lowestSquare(remaining);
+            remaining = Bitboards.popLowestSquare(remaining);
+            GamePiece piece = game.getPieceAt(square);
+            int kind = piece.getType().ordinal() * 2
+                    + (piece.isWhite() ? 1 : 0);
+            int row = Game.SQUARES_PER_SIDE - 1 - Bitboards.getY(square);
+            key ^= keys[kind * Bitboards.NUM_SQUARES
+                    + row * Game.SQUARES_PER_SIDE + Bitboards.getX(square)];
+        }
+
+        int castlingRights = game.getCastlingRights();
+        for (int i = 0; i < CASTLING_ORDER.length; i++){
+            if ((castlingRights & CASTLING_ORDER[i]) != 0){
+                key ^= keys[CASTLING_KEYS_OFFSET + i];
+            }
+        }
+
+        // Like ours, Polyglot keys only include the en passant square if a
+        // Pawn can capture onto it
+        if (game.getEnPassantSquare() != Game.NO_SQUARE){
+            key ^= keys[EN_PASSANT_KEYS_OFFSET
+                    + Bitboards.getX(game.getEnPassantSquare())];
+        }
+
+        if (game.getCurrentPlayer() == Player.WHITE){
+            key ^= keys[WHITE_TO_MOVE_KEY];
+        }
+        return key;
+    }
+
+    public int getNumEntries() {
+        return numEntries;
+    }
+
+}
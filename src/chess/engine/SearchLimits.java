@@ -0,0 +1,69 @@
+package chess.engine;
+
+/**
+ * Limits on how long a search may run.
+ *
+ * <p>The search stops as soon as any limit is reached. A limit of
+ * {@link #NONE} means that there is no limit of that kind; if there are no
+ * limits at all, the search runs until it is stopped.
+ *
+ * <p>Regardless of the limits, a search always completes at least 1 ply, so
+ * that there is a move to play.
+ *
+ * @author Dan Bryce
+ */
+public class SearchLimits {
+
+    public static final int NONE = 0;
+
+    private final int maxDepth;
+
+    private final long timeMillis;
+
+    private final long maxNodes;
+
+    /**
+     * Creates some SearchLimits.
+     *
+     * @param maxDepth Maximum depth to search, in ply.
+     * @param timeMillis Maximum time to search for, in milliseconds.
+     * @param maxNodes Maximum number of positions to visit.
+     */
+    public SearchLimits(int maxDepth, long timeMillis, long maxNodes) {
+        if (maxDepth < 0 || timeMillis < 0 || maxNodes < 0){
+            throw new IllegalArgumentException("Limits cannot be negative");
+        }
+        this.maxDepth = maxDepth;
+        this.timeMillis = timeMillis;
+        this.maxNodes = maxNodes;
+    }
+
+    public static SearchLimits depth(int maxDepth) {
+        return new SearchLimits(maxDepth, NONE, NONE);
+    }
+
+    public static SearchLimits time(long timeMillis) {
+        return new SearchLimits(NONE, timeMillis, NONE);
+    }
+
+    public static SearchLimits nodes(long maxNodes) {
+        return new SearchLimits(NONE, NONE, maxNodes);
+    }
+
+    public static SearchLimits infinite() {
+        return new SearchLimits(NONE, NONE, NONE);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+}
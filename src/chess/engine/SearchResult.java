@@ -0,0 +1,84 @@
+package chess.engine;
+
+import chess.Moves;
+
+/**
+ * The outcome of a search.
+ *
+ * @author Dan Bryce
+ */
+public class SearchResult {
+
+    private final int move;
+
+    private final int score;
+
+    private final int depth;
+
+    private final long nodes;
+
+    private final long timeMillis;
+
+    public SearchResult(int move, int score, int depth, long nodes,
+            long timeMillis) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * Gets the best move found.
+     *
+     * @return The move (see {@link Moves}), or NONE if the current player
+     *      has no valid move.
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * Gets the score of the best move.
+     *
+     * @return Score in centipawns, from the point of view of the player to
+     *      move.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Determines if the score represents a forced mate, either for or against
+     * the player to move.
+     *
+     * @return
+     */
+    public boolean isMate() {
+        return Searcher.isMateScore(score);
+    }
+
+    /**
+     * Gets the depth of the deepest completed iteration.
+     *
+     * @return
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return Moves.toString(move) + " (score " + score + ", depth " +
+                depth + ", " + nodes + " nodes in " + timeMillis + "ms)";
+    }
+
+}
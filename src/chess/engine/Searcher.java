@@ -0,0 +1,750 @@
+package chess.engine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import chess.Bitboards;
+import chess.Game;
+import chess.GamePiece.Type;
+import chess.MoveGenerator;
+import chess.MoveList;
+import chess.Moves;
+import chess.tablebase.Tablebases;
+
+/**
+ * Searches for the best move in a position.
+ *
+ * <p>This uses principal variation search (PVS), a refinement of alpha-beta
+ * search. Once the first move at a node has been searched, we assume that it
+ * is the best, and search the remaining moves with a "null" window that can
+ * only prove whether or not they are better. Only if a move turns out to be
+ * better do we search it again with the full window. Since the moves are
+ * ordered so that the best move is usually first, this saves a lot of work.
+ *
+ * <p>The search is repeated at increasing depths ("iterative deepening"),
+ * until one of the limits is reached. Each iteration is fast compared to the
+ * next, and it fills the transposition table with the best moves found so
+ * far, which makes the next iteration's move ordering much better.
+ *
+ * <p>At the end of the main search, captures are searched until the position
+ * is quiet ("quiescence search"), so that we never evaluate a position in the
+ * middle of an exchange.
+ *
+ * <p>A Searcher can be reused for many searches, but only by one thread at a
+ * time. Several Searchers can search the same position at once, each with
+ * its own copy of the Game, sharing a transposition table (see
+ * {@link Engine}).
+ *
+ * @author Dan Bryce
+ */
+class Searcher {
+
+    /**
+     * The maximum number of ply that can be searched.
+     */
+    static final int MAX_PLY = 128;
+
+    /**
+     * A score greater than any that can be reached.
+     */
+    static final int INFINITY = 32000;
+
+    /**
+     * The score for delivering checkmate immediately.
+     *
+     * <p>Mates further away score less, so that the quickest mate is
+     * preferred.
+     */
+    static final int MATE = 31000;
+
+    /**
+     * Any score at least this high (or low) represents a forced mate.
+     *
+     * <p>This leaves room for a tablebase mate found at the deepest ply.
+     */
+    static final int MATE_BOUND =
+            MATE - MAX_PLY - Tablebases.MAX_PLIES_TO_MATE;
+
+    static final int DRAW = 0;
+
+    /**
+     * How often (in nodes) to check the clock and whether we have been asked
+     * to stop.
+     */
+    private static final int CHECK_INTERVAL_MASK = 0x3ff;
+
+    /*
+     * Move ordering priorities.
+     */
+    private static final int TABLE_MOVE_PRIORITY = 1 << 30;
+    private static final int CAPTURE_PRIORITY = 1 << 29;
+    private static final int KILLER_PRIORITY = 1 << 28;
+    private static final int LOSING_CAPTURE_PRIORITY = 1 << 27;
+
+    /**
+     * History scores are halved whenever one exceeds this, so that they stay
+     * below the killer move priority.
+     */
+    private static final int MAX_HISTORY = 1 << 20;
+
+    private static final int KILLERS_PER_PLY = 2;
+
+    private static final int NUM_TYPES = Type.values().length;
+
+    private final TranspositionTable table;
+
+    /**
+     * Number of ply to add to the depth of each iteration.
+     *
+     * <p>When several Searchers share a transposition table, giving some of
+     * them an offset stops them all searching the same tree in lockstep.
+     */
+    private final int depthOffset;
+
+    /**
+     * One MoveList for each ply, so that we never need to allocate during the
+     * search.
+     */
+    private final MoveList[] moveLists = new MoveList[MAX_PLY];
+
+    /**
+     * One MoveGenerator for each ply, used to generate only captures and
+     * promotions in the quiescence search.
+     */
+    private final MoveGenerator[] tacticalGenerators =
+            new MoveGenerator[MAX_PLY];
+
+    /**
+     * The ordering priority of each move in the corresponding MoveList.
+     */
+    private final int[][] movePriorities =
+            new int[MAX_PLY][MoveList.MAX_MOVES];
+
+    /**
+     * Quiet moves that recently caused a cutoff at each ply.
+     */
+    private final int[][] killers = new int[MAX_PLY][KILLERS_PER_PLY];
+
+    /**
+     * How often each quiet move has caused a cutoff, indexed by from-square
+     * and to-square.
+     */
+    private final int[] history =
+            new int[Bitboards.NUM_SQUARES * Bitboards.NUM_SQUARES];
+
+    /**
+     * Tablebases giving the exact result of positions with few pieces, if
+     * any.
+     */
+    private Tablebases tablebases;
+
+    private Game game;
+
+    private long nodes;
+
+    private long maxNodes;
+
+    private int maxDepth;
+
+    /**
+     * Time at which to stop, according to System.nanoTime(), or 0 if there
+     * is no time limit.
+     */
+    private long deadline;
+
+    /**
+     * Whether the search may be stopped early.
+     *
+     * <p>This is false until the first iteration has completed, so that there
+     * is always a move to play.
+     */
+    private boolean canStop;
+
+    /**
+     * Whether the search has been stopped and the results of the current
+     * iteration should be discarded.
+     */
+    private boolean stopped;
+
+    /**
+     * Set by another thread to ask the current search to stop.
+     */
+    private AtomicBoolean stopRequested;
+
+    /**
+     * New limits for the current search, set by another thread, or null if
+     * the search need not check for any.
+     */
+    private AtomicReference<SearchLimits> newLimits;
+
+    /**
+     * The best move found so far at the root of the current iteration.
+     */
+    private int rootBestMove;
+
+    Searcher(TranspositionTable table, int depthOffset) {
+        this.table = table;
+        this.depthOffset = depthOffset;
+        for (int i = 0; i < moveLists.length; i++){
+            moveLists[i] = new MoveList();
+            tacticalGenerators[i] = new MoveGenerator();
+        }
+    }
+
+    /**
+     * Searches the current position of the given Game.
+     *
+     * <p>Moves are made and unmade on the Game during the search, so it must
+     * not be modified by anything else until this returns.
+     *
+     * @param game
+     * @param limits
+     * @param stopRequested
+     *      Flag that another thread can set to stop the search. Each search
+     *      should have its own, so that a late request to stop one search
+     *      can never stop the next.
+     * @return
+     */
+    SearchResult search(Game game, SearchLimits limits,
+            AtomicBoolean stopRequested) {
+        return search(game, limits, null, stopRequested);
+    }
+
+    /**
+     * Searches the current position of the given Game, with limits that may
+     * be replaced while the search is running.
+     *
+     * <p>Whenever another thread sets the given reference, the search takes
+     * the SearchLimits out of it and adopts them, as if it had just started.
+     * Only the limits change; the work already done is kept.
+     *
+     * @param game
+     * @param limits
+     * @param newLimits
+     *      Reference through which new limits are given, or null.
+     * @param stopRequested
+     *      Flag that another thread can set to stop the search.
+     * @return
+     */
+    SearchResult search(Game game, SearchLimits limits,
+            AtomicReference<SearchLimits> newLimits,
+            AtomicBoolean stopRequested) {
+        long startTime = System.nanoTime();
+        this.game = game;
+        this.newLimits = newLimits;
+        this.stopRequested = stopRequested;
+        nodes = 0;
+        setLimits(limits, startTime);
+        canStop = false;
+        stopped = false;
+        clearKillers();
+        ageHistory();
+
+        int bestMove = Moves.NONE;
+        int bestScore = DRAW;
+        int completedDepth = 0;
+
+        for (int i = 1; i <= maxDepth; i++){
+            int depth = Math.min(i + depthOffset, maxDepth);
+            rootBestMove = Moves.NONE;
+            int score = search(depth, 0, -INFINITY, INFINITY);
+            if (stopped){
+                break;
+            }
+            bestMove = rootBestMove;
+            bestScore = score;
+            completedDepth = depth;
+            canStop = true;
+
+            checkNewLimits();
+            if (bestMove == Moves.NONE || depth >= maxDepth){
+                // No valid moves, or no need to search deeper
+                break;
+            }
+            if (isMateScore(score) && MATE - Math.abs(score) <= depth){
+                // Searching deeper will not find a quicker mate
+                break;
+            }
+        }
+
+        this.game = null;
+        this.newLimits = null;
+        this.stopRequested = null;
+        long elapsed = (System.nanoTime() - startTime) / 1000000L;
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes,
+                elapsed);
+    }
+
+    /**
+     * Adopts the given limits, counting from the given time and the nodes
+     * visited so far.
+     *
+     * @param limits
+     * @param now
+     *      The current time, according to System.nanoTime().
+     */
+    private void setLimits(SearchLimits limits, long now) {
+        maxNodes = limits.getMaxNodes() == SearchLimits.NONE
+                ? SearchLimits.NONE
+                : nodes + limits.getMaxNodes();
+        deadline = limits.getTimeMillis() == SearchLimits.NONE
+                ? 0
+                : now + limits.getTimeMillis() * 1000000L;
+        maxDepth = limits.getMaxDepth() == SearchLimits.NONE
+                ? MAX_PLY - 1
+                : Math.min(limits.getMaxDepth(), MAX_PLY - 1);
+    }
+
+    /**
+     * Adopts any new limits given by another thread.
+     */
+    private void checkNewLimits() {
+        if (newLimits == null){
+            return;
+        }
+        SearchLimits limits = newLimits.getAndSet(null);
+        if (limits != null){
+            setLimits(limits, System.nanoTime());
+        }
+    }
+
+    /**
+     * Sets the tablebases to probe during the search.
+     *
+     * @param tablebases
+     *      The tablebases, or null to always search.
+     */
+    void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    private int search(int depth, int ply, int alpha, int beta) {
+        if (ply > 0 && (game.getRepetitionCount() > 1
+                || game.isFiftyMoveRuleDraw())){
+            return DRAW;
+        }
+        if (ply > 0 && tablebases != null
+                && Long.bitCount(game.getOccupied())
+                        <= tablebases.getMaxPieces()){
+            int result = tablebases.probe(game);
+            if (result != Tablebases.NOT_FOUND){
+                return getTablebaseScore(result, ply);
+            }
+        }
+
+        boolean inCheck = game.isPlayerInCheck(game.getCurrentPlayer());
+        if (inCheck){
+            // Make sure we don't stop searching while in check
+            depth++;
+        }
+        if (depth <= 0){
+            return quiesce(ply, alpha, beta);
+        }
+        if (ply >= MAX_PLY - 1){
+            return Evaluator.evaluate(game);
+        }
+
+        countNode();
+        if (stopped){
+            return DRAW;
+        }
+
+        long hash = game.getHash();
+        int tableMove = Moves.NONE;
+        long entry = table.probe(hash);
+        if (entry != TranspositionTable.NONE){
+            tableMove = TranspositionTable.getMove(entry);
+            boolean pvNode = beta - alpha > 1;
+            if (!pvNode && TranspositionTable.getDepth(entry) >= depth){
+                int score = fromTable(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER
+                                && score <= alpha)){
+                    return score;
+                }
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        game.getValidMoves(moves);
+        if (moves.isEmpty()){
+            return inCheck ? -MATE + ply : DRAW;
+        }
+        prioritiseMoves(moves, ply, tableMove);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Moves.NONE;
+
+        for (int i = 0; i < moves.size(); i++){
+            int move = selectMove(moves, ply, i);
+
+            game.makeMove(move);
+            game.flipTurn();
+            int score;
+            if (i == 0){
+                score = -search(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                score = -search(depth - 1, ply + 1, -alpha - 1, -alpha);
+                if (score > alpha && score < beta){
+                    // This move might be better after all
+                    score = -search(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            game.flipTurn();
+            game.unmakeMove(move);
+
+            if (stopped){
+                return DRAW;
+            }
+
+            if (score > bestScore){
+                bestScore = score;
+                bestMove = move;
+                if (ply == 0){
+                    rootBestMove = move;
+                }
+            }
+            if (score > alpha){
+                alpha = score;
+            }
+            if (alpha >= beta){
+                if (isQuiet(move)){
+                    recordCutoff(move, depth, ply);
+                }
+                break;
+            }
+        }
+
+        int bound;
+        if (bestScore >= beta){
+            bound = TranspositionTable.LOWER;
+        } else if (bestScore > originalAlpha){
+            bound = TranspositionTable.EXACT;
+        } else {
+            bound = TranspositionTable.UPPER;
+        }
+        table.store(hash, bestMove, toTable(bestScore, ply), depth, bound);
+
+        return bestScore;
+    }
+
+    /**
+     * Searches only captures and Queen promotions, until the position is
+     * quiet.
+     *
+     * <p>The current player can always choose not to capture anything, so
+     * the static evaluation is used as a lower bound ("standing pat").
+     *
+     * @param ply
+     * @param alpha
+     * @param beta
+     * @return
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        countNode();
+        if (stopped){
+            return DRAW;
+        }
+
+        int bestScore = Evaluator.evaluate(game);
+        if (bestScore >= beta || ply >= MAX_PLY - 1){
+            return bestScore;
+        }
+        if (bestScore > alpha){
+            alpha = bestScore;
+        }
+
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        MoveGenerator generator = tacticalGenerators[ply];
+        generator.reset(game, true);
+        for (int move = generator.next(); move != Moves.NONE;
+                move = generator.next()){
+            // Under-promotions, and captures that lose material, are not
+            // worth searching here
+            if (!isQuiet(move) && !isLosingCapture(move)){
+                moves.add(move);
+            }
+        }
+        prioritiseMoves(moves, ply, Moves.NONE);
+
+        for (int i = 0; i < moves.size(); i++){
+            int move = selectMove(moves, ply, i);
+
+            game.makeMove(move);
+            game.flipTurn();
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            game.flipTurn();
+            game.unmakeMove(move);
+
+            if (stopped){
+                return DRAW;
+            }
+
+            if (score > bestScore){
+                bestScore = score;
+            }
+            if (score > alpha){
+                alpha = score;
+            }
+            if (alpha >= beta){
+                break;
+            }
+        }
+
+        return bestScore;
+    }
+
+    /**
+     * Counts a visited node, and stops the search if a limit has been
+     * reached.
+     */
+    private void countNode() {
+        nodes++;
+        if ((nodes & CHECK_INTERVAL_MASK) == 0){
+            checkNewLimits();
+        }
+        if (!canStop){
+            return;
+        }
+        if (maxNodes != SearchLimits.NONE && nodes >= maxNodes){
+            stopped = true;
+        } else if ((nodes & CHECK_INTERVAL_MASK) == 0){
+            stopped = stopRequested.get()
+                    || (deadline != 0 && System.nanoTime() >= deadline);
+        }
+    }
+
+    /**
+     * Works out the order in which the given moves should be searched.
+     *
+     * <p>We try the move from the transposition table first, then captures
+     * (most valuable victim first, then least valuable attacker first), then
+     * killer moves, then captures that lose material in the exchange that
+     * follows, and finally all other moves by their history score.
+     *
+     * @param moves
+     * @param ply
+     * @param tableMove
+     */
+    private void prioritiseMoves(MoveList moves, int ply, int tableMove) {
+        int[] priorities = movePriorities[ply];
+        int[] plyKillers = killers[ply];
+        for (int i = 0; i < moves.size(); i++){
+            int move = moves.get(i);
+            int priority;
+            if (move == tableMove){
+                priority = TABLE_MOVE_PRIORITY;
+            } else if (!isQuiet(move)){
+                priority = isLosingCapture(move)
+                        ? LOSING_CAPTURE_PRIORITY + getCaptureValue(move)
+                        : CAPTURE_PRIORITY + getCaptureValue(move);
+            } else if (move == plyKillers[0] || move == plyKillers[1]){
+                priority = KILLER_PRIORITY;
+            } else {
+                priority = history[getHistoryIndex(move)];
+            }
+            priorities[i] = priority;
+        }
+    }
+
+    /**
+     * Determines if a capture loses material once the exchange on the
+     * destination square is played out.
+     *
+     * @param move
+     * @return
+     */
+    private boolean isLosingCapture(int move) {
+        if (!Moves.isCapture(move)){
+            return false;
+        }
+        // Capturing a piece worth at least as much as the attacker can never
+        // lose material, so the exchange is only worked out when needed
+        Type victim = game.getPieceAt(Moves.getCapturedSquare(move))
+                .getType();
+        Type attacker = game.getPieceAt(Moves.getFrom(move)).getType();
+        if (Evaluator.getPieceValue(victim)
+                >= Evaluator.getPieceValue(attacker)){
+            return false;
+        }
+        return game.getExchangeValue(move) < 0;
+    }
+
+    /**
+     * Gets the value of a capture or promotion, for ordering purposes.
+     *
+     * @param move
+     * @return
+     */
+    private int getCaptureValue(int move) {
+        int value = 0;
+        if (Moves.isCapture(move)){
+            Type victim = game.getPieceAt(Moves.getCapturedSquare(move))
+                    .getType();
+            Type attacker = game.getPieceAt(Moves.getFrom(move)).getType();
+            value = Evaluator.getPieceValue(victim) * NUM_TYPES
+                    - attacker.ordinal();
+        }
+        if (Moves.isPromotion(move)){
+            value += Evaluator.getPieceValue(Moves.getPromotion(move));
+        }
+        return value;
+    }
+
+    /**
+     * Finds the highest-priority move at or after the given index, and swaps
+     * it into that index.
+     *
+     * <p>This is a step of a selection sort. Since most nodes are cut off
+     * after trying only a few moves, it is faster than sorting the whole list
+     * up-front.
+     *
+     * @param moves
+     * @param ply
+     * @param index
+     * @return The selected move.
+     */
+    private int selectMove(MoveList moves, int ply, int index) {
+        int[] priorities = movePriorities[ply];
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++){
+            if (priorities[i] > priorities[best]){
+                best = i;
+            }
+        }
+        int move = moves.get(best);
+        if (best != index){
+            moves.set(best, moves.get(index));
+            moves.set(index, move);
+            int priority = priorities[best];
+            priorities[best] = priorities[index];
+            priorities[index] = priority;
+        }
+        return move;
+    }
+
+    /**
+     * Records a quiet move that caused a cutoff, so that it will be tried
+     * earlier in future.
+     *
+     * @param move
+     * @param depth
+     * @param ply
+     */
+    private void recordCutoff(int move, int depth, int ply) {
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != move){
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+
+        int index = getHistoryIndex(move);
+        history[index] += depth * depth;
+        if (history[index] > MAX_HISTORY){
+            ageHistory();
+        }
+    }
+
+    private void clearKillers() {
+        for (int[] plyKillers : killers){
+            for (int i = 0; i < plyKillers.length; i++){
+                plyKillers[i] = Moves.NONE;
+            }
+        }
+    }
+
+    /**
+     * Halves all history scores, so that recent cutoffs count for more.
+     */
+    private void ageHistory() {
+        for (int i = 0; i < history.length; i++){
+            history[i] /= 2;
+        }
+    }
+
+    private static int getHistoryIndex(int move) {
+        return Moves.getFrom(move) * Bitboards.NUM_SQUARES
+                + Moves.getTo(move);
+    }
+
+    /**
+     * Determines if the given move is neither a capture nor a Queen
+     * promotion.
+     *
+     * @param move
+     * @return
+     */
+    private static boolean isQuiet(int move) {
+        return !Moves.isCapture(move) && !(Moves.isPromotion(move)
+                && Moves.getPromotion(move) == Type.QUEEN);
+    }
+
+    /**
+     * Determines if the given score represents a forced mate.
+     *
+     * @param score
+     * @return
+     */
+    static boolean isMateScore(int score) {
+        return Math.abs(score) >= MATE_BOUND;
+    }
+
+    /**
+     * Converts the result of a tablebase probe to a score.
+     *
+     * @param result
+     * @param ply
+     * @return
+     */
+    static int getTablebaseScore(int result, int ply) {
+        if (result == Tablebases.DRAW){
+            return DRAW;
+        }
+        int score = MATE - ply - Tablebases.getPliesToMate(result);
+        return Tablebases.isWin(result) ? score : -score;
+    }
+
+    /**
+     * Converts a score to the form stored in the transposition table.
+     *
+     * <p>Mate scores depend on the distance from the root, but the same
+     * position can be reached at different distances, so we store them
+     * relative to the current position instead.
+     *
+     * @param score
+     * @param ply
+     * @return
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= MATE_BOUND){
+            return score + ply;
+        }
+        if (score <= -MATE_BOUND){
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Converts a score from the transposition table back to one relative to
+     * the root.
+     *
+     * @param score
+     * @param ply
+     * @return
+     */
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE_BOUND){
+            return score - ply;
+        }
+        if (score <= -MATE_BOUND){
+            return score + ply;
+        }
+        return score;
+    }
+
+}
@@ -0,0 +1,289 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+import chess.Moves;
+
+/**
+ * Fixed-size table of search results, keyed by position hash.
+ *
+ * <p>The same position is often reached by different sequences of moves
+ * ("transpositions"). Storing the result of searching each position means we
+ * can skip or shorten the search the next time it is reached.
+ *
+ * <p>The table is divided into buckets of 2 entries:
+ *
+ * <ul>
+ *  <li>The first entry prefers deep searches. It is only replaced by a search
+ *  of at least the same depth, unless it is left over from an earlier search.
+ *  </li>
+ *  <li>The second entry is always replaced, so recent results are kept even
+ *  when the first entry holds something more valuable.</li>
+ * </ul>
+ *
+ * <p>Each entry is a pair of longs: the data (see below), and the position's
+ * hash XORed with the data. This means that many threads can share one table
+ * without any locking. If two threads write to the same entry at the same
+ * time, the key and data may come from different writes, but then the key
+ * will no longer verify against the data, so the entry is simply treated as
+ * missing.
+ *
+ * <p>The data is packed as follows:
+ *
+ * <pre>
+ *  bits  0-19  best move (see {@link Moves}), or NONE
+ *  bits 20-35  score, as a signed 16-bit value
+ *  bits 36-43  depth searched
+ *  bits 44-45  bound type (EXACT, LOWER or UPPER)
+ *  bits 46-53  generation
+ * </pre>
+ *
+ * <p>The bound type is never zero, so a value of {@link #NONE} never
+ * represents a real entry.
+ *
+ * <p>A table can be reused for every search in a game; calling
+ * {@link #newSearch} at the start of each search ages existing entries, so
+ * that they are replaced in preference to new ones.
+ *
+ * @author Dan Bryce
+ */
+public class TranspositionTable {
+
+    public static final long NONE = 0;
+
+    /**
+     * The score is exact.
+     */
+    public static final int EXACT = 1;
+
+    /**
+     * The score is a lower bound (the search failed high).
+     */
+    public static final int LOWER = 2;
+
+    /**
+     * The score is an upper bound (the search failed low).
+     */
+    public static final int UPPER = 3;
+
+    public static final int MAX_DEPTH = 0xff;
+
+    public static final int DEFAULT_SIZE_MB = 16;
+
+    private static final int BYTES_PER_MB = 1024 * 1024;
+
+    private static final int ENTRIES_PER_BUCKET = 2;
+
+    private static final int LONGS_PER_ENTRY = 2;
+
+    private static final int LONGS_PER_BUCKET =
+            ENTRIES_PER_BUCKET * LONGS_PER_ENTRY;
+
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+
+    private static final long MOVE_MASK = 0xfffff;
+    private static final int SCORE_SHIFT = 20;
+    private static final long SCORE_MASK = 0xffff;
+    private static final int DEPTH_SHIFT = 36;
+    private static final long DEPTH_MASK = 0xff;
+    private static final int BOUND_SHIFT = 44;
+    private static final long BOUND_MASK = 0x3;
+    private static final int GENERATION_SHIFT = 46;
+    private static final int GENERATION_MASK = 0xff;
+
+    /**
+     * Number of entries sampled by {@link #getPermillFull}.
+     */
+    private static final int USAGE_SAMPLE_SIZE = 1000;
+
+    /**
+     * Pairs of (key XOR data, data) for each entry, grouped into buckets.
+     */
+    private long[] entries;
+
+    /**
+     * Mask applied to a hash to find its bucket.
+     */
+    private int bucketMask;
+
+    private volatile int generation;
+
+    /**
+     * Creates a table of the default size.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_SIZE_MB);
+    }
+
+    /**
+     * Creates a table that uses no more than the given amount of memory.
+     *
+     * @param sizeMb
+     */
+    public TranspositionTable(int sizeMb) {
+        resize(sizeMb);
+    }
+
+    /**
+     * Discards all entries and reallocates the table to use no more than the
+     * given amount of memory.
+     *
+     * <p>This must not be called while a search is using the table.
+     *
+     * @param sizeMb
+     */
+    public void resize(int sizeMb) {
+        if (sizeMb < 1){
+            throw new IllegalArgumentException("Invalid size: " + sizeMb);
+        }
+        long maxBuckets = (long) sizeMb * BYTES_PER_MB / BYTES_PER_BUCKET;
+        int maxBucketsPerArray = Integer.MAX_VALUE / LONGS_PER_BUCKET;
+        int numBuckets = Integer.highestOneBit(
+                (int) Math.min(maxBuckets, maxBucketsPerArray));
+        entries = new long[numBuckets * LONGS_PER_BUCKET];
+        bucketMask = numBuckets - 1;
+    }
+
+    /**
+     * Discards all entries.
+     *
+     * <p>This must not be called while a search is using the table.
+     */
+    public void clear() {
+        Arrays.fill(entries, 0);
+        generation = 0;
+    }
+
+    /**
+     * Marks the start of a new search.
+     *
+     * <p>Entries stored by earlier searches are still returned by
+     * {@link #probe}, but are replaced in preference to newer ones.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Gets the size of the table, in bytes.
+     *
+     * @return
+     */
+    public long getSizeBytes() {
+        return (long) entries.length * Long.BYTES;
+    }
+
+    /**
+     * Looks up the entry for the given position.
+     *
+     * @param hash
+     * @return The entry's data, or NONE if the position is not in the table.
+     */
+    public long probe(long hash) {
+        long[] entries = this.entries;
+        int index = getBucketIndex(hash);
+        for (int i = 0; i < ENTRIES_PER_BUCKET; i++){
+            long data = entries[index + 1];
+            if ((entries[index] ^ data) == hash && data != NONE){
+                return data;
+            }
+            index += LONGS_PER_ENTRY;
+        }
+        return NONE;
+    }
+
+    /**
+     * Stores the result of searching the given position.
+     *
+     * @param hash
+     * @param move Best move found, or NONE.
+     * @param score Must fit in a signed 16-bit value.
+     * @param depth
+     * @param bound EXACT, LOWER or UPPER.
+     */
+    public void store(long hash, int move, int score, int depth, int bound) {
+        long[] entries = this.entries;
+        int generation = this.generation;
+        int deepIndex = getBucketIndex(hash);
+        int recentIndex = deepIndex + LONGS_PER_ENTRY;
+
+        long deepData = entries[deepIndex + 1];
+        boolean deepMatches = (entries[deepIndex] ^ deepData) == hash;
+
+        if (move == Moves.NONE && deepMatches){
+            // Keep the best move from an earlier search of this position
+            move = getMove(deepData);
+        }
+
+        depth = Math.max(0, Math.min(depth, MAX_DEPTH));
+        long data = pack(move, score, depth, bound, generation);
+
+        int index;
+        if (deepData == NONE
+                || deepMatches
+                || getGeneration(deepData) != generation
+                || depth >= getDepth(deepData)){
+            index = deepIndex;
+        } else {
+            index = recentIndex;
+        }
+
+        entries[index] = hash ^ data;
+        entries[index + 1] = data;
+    }
+
+    /**
+     * Estimates how full the table is, counting only entries stored during
+     * the current search.
+     *
+     * @return Fullness, in parts per thousand.
+     */
+    public int getPermillFull() {
+        long[] entries = this.entries;
+        int generation = this.generation;
+        int sampleSize = Math.min(USAGE_SAMPLE_SIZE,
+                entries.length / LONGS_PER_ENTRY);
+        int used = 0;
+        for (int i = 0; i < sampleSize; i++){
+            long data = entries[i * LONGS_PER_ENTRY + 1];
+            if (data != NONE && getGeneration(data) == generation){
+                used++;
+            }
+        }
+        return used * USAGE_SAMPLE_SIZE / sampleSize;
+    }
+
+    private int getBucketIndex(long hash) {
+        return ((int) (hash ^ (hash >>> 32)) & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    private static long pack(int move, int score, int depth, int bound,
+            int generation) {
+        return (move & MOVE_MASK)
+                | ((score & SCORE_MASK) << SCORE_SHIFT)
+                | ((long) depth << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+    }
+
+    public static int getMove(long data) {
+        return (int) (data & MOVE_MASK);
+    }
+
+    public static int getScore(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int getDepth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & DEPTH_MASK);
+    }
+
+    public static int getBound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & BOUND_MASK);
+    }
+
+    private static int getGeneration(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+}
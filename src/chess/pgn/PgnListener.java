@@ -0,0 +1,57 @@
+package chess.pgn;
+
+import chess.Game;
+
+/**
+ * Receives the positions of the games read by a {@link PgnReader}.
+ *
+ * <p>When a file is read in parallel, these methods are called from several
+ * threads at once, so implementations must be thread-safe. Each thread has
+ * its own Game.
+ *
+ * @author Dan Bryce
+ */
+public interface PgnListener {
+
+    /**
+     * The result of a game, as recorded in the PGN.
+     */
+    enum Result {
+        WHITE_WINS,
+        BLACK_WINS,
+        DRAW,
+        UNKNOWN
+    }
+
+    /**
+     * Called after each move is played.
+     *
+     * <p>Moves are only reported for games that are read successfully, once
+     * the whole game has been read, so a game that is skipped (e.g. because
+     * it contains an illegal move) never reaches the listener.
+     *
+     * <p>The Game is in the position after the move, and it is the
+     * opponent's turn. The Game must not be modified, and only holds this
+     * position until this method returns.
+     *
+     * <p>Only the board state is kept up to date; the Game's history and
+     * game-over flag are not used.
+     *
+     * @param game
+     * @param move
+     */
+    void movePlayed(Game game, int move);
+
+    /**
+     * Called at the end of each game that was read successfully.
+     *
+     * <p>The Game is still in the final position of the game.
+     *
+     * @param game
+     * @param result
+     */
+    default void gameFinished(Game game, Result result) {
+        // Nothing to do by default
+    }
+
+}
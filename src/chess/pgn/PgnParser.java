@@ -0,0 +1,460 @@
+package chess.pgn;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import chess.Bitboards;
+import chess.Fen;
+import chess.Game;
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+import chess.Moves;
+import chess.pgn.PgnListener.Result;
+
+/**
+ * Plays through the games in a buffer of PGN text.
+ *
+ * <p>The text is read directly from the buffer, one byte at a time, so no
+ * Strings are created. Each move is resolved against the legal moves of the
+ * current position, and played using {@link Game#makeMove}. Once a game has
+ * been read completely, its moves are played through again to report them
+ * to the listener. At the end of each game the moves are unmade again, so
+ * the same Game is used for every game in the buffer.
+ *
+ * <p>Games that start from a custom position are set up from their "FEN"
+ * tag. Games containing a move that cannot be understood or is not legal
+ * are skipped, as are games with an invalid FEN.
+ *
+ * @author Dan Bryce
+ */
+class PgnParser {
+
+    private final PgnListener listener;
+
+    private final Game game = new Game();
+
+    /**
+     * The moves played so far in the current game.
+     */
+    private int[] moves = new int[256];
+
+    private int numMoves;
+
+    /**
+     * Whether any part of the current game has been read.
+     */
+    private boolean inGame;
+
+    /**
+     * Whether the moves of the current game have been reached.
+     */
+    private boolean inMovetext;
+
+    /**
+     * Whether the current game started from a position other than the
+     * standard starting position.
+     */
+    private boolean customPosition;
+
+    /**
+     * Whether the rest of the current game should be ignored.
+     */
+    private boolean skipGame;
+
+    private ByteBuffer buf;
+
+    private int pos;
+
+    private int limit;
+
+    private long gamesRead;
+
+    PgnParser(PgnListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Plays through all of the games in the given buffer.
+     *
+     * <p>The buffer must start at the beginning of a game (or of the file).
+     *
+     * @param buffer
+     * @return The number of games read successfully.
+     */
+    long parse(ByteBuffer buffer) {
+        buf = buffer;
+        pos = 0;
+        limit = buffer.limit();
+        gamesRead = 0;
+
+        while (pos < limit){
+            byte c = buf.get(pos);
+            switch (c){
+            case '[':
+                readTag();
+                break;
+            case '{':
+                skipComment();
+                break;
+            case ';':
+            case '%':
+                skipLine();
+                break;
+            case '(':
+                skipVariation();
+                break;
+            default:
+                if (isSeparator(c)){
+                    pos++;
+                } else {
+                    readToken();
+                }
+            }
+        }
+
+        // The last game may have no result
+        finishGame(Result.UNKNOWN);
+        return gamesRead;
+    }
+
+    private void readTag() {
+        if (inMovetext){
+            // The previous game had no result
+            finishGame(Result.UNKNOWN);
+        }
+        inGame = true;
+
+        if (matches(pos + 1, "FEN ")){
+            readFen();
+        }
+        skipLine();
+    }
+
+    /**
+     * Sets up the Game in the position given by a FEN tag.
+     */
+    private void readFen() {
+        int start = pos;
+        while (start < limit && buf.get(start) != '"'
+                && buf.get(start) != '\n'){
+            start++;
+        }
+        int end = start + 1;
+        while (end < limit && buf.get(end) != '"' && buf.get(end) != '\n'){
+            end++;
+        }
+        if (end >= limit || buf.get(end) != '"'){
+            skipGame = true;
+            return;
+        }
+
+        customPosition = true;
+        try {
+            Fen.load(game, buf, start + 1, end);
+        } catch (IllegalArgumentException e) {
+            skipGame = true;
+        }
+    }
+
+    private void skipComment() {
+        while (pos < limit && buf.get(pos) != '}'){
+            pos++;
+        }
+        pos++;
+    }
+
+    private void skipLine() {
+        while (pos < limit && buf.get(pos) != '\n'){
+            pos++;
+        }
+        pos++;
+    }
+
+    /**
+     * Skips a variation, including any variations nested inside it.
+     */
+    private void skipVariation() {
+        int depth = 0;
+        while (pos < limit){
+            byte c = buf.get(pos++);
+            if (c == '('){
+                depth++;
+            } else if (c == ')'){
+                depth--;
+                if (depth == 0){
+                    return;
+                }
+            } else if (c == '{'){
+                pos--;
+                skipComment();
+            }
+        }
+    }
+
+    /**
+     * Reads a move number, move, annotation or result.
+     */
+    private void readToken() {
+        int start = pos;
+        while (pos < limit && !isTokenEnd(buf.get(pos))){
+            pos++;
+        }
+        int end = pos;
+        if (end == start){
+            // A stray closing bracket
+            pos++;
+            return;
+        }
+        inGame = true;
+        inMovetext = true;
+
+        byte first = buf.get(start);
+        if (first == '$' || first == '*'){
+            // A numeric annotation, or an unknown result
+            if (first == '*'){
+                finishGame(Result.UNKNOWN);
+            }
+            return;
+        }
+
+        // Skip any move number, which may be followed directly by a move
+        int i = start;
+        while (i < end && isDigit(buf.get(i))){
+            i++;
+        }
+        if (i < end && buf.get(i) == '.'){
+            while (i < end && buf.get(i) == '.'){
+                i++;
+            }
+            start = i;
+        } else if (i > start && !matches(start, "0-0")){
+            readResult(start);
+            return;
+        }
+
+        if (start < end){
+            readMove(start, end);
+        }
+    }
+
+    private void readResult(int start) {
+        if (matches(start, "1-0")){
+            finishGame(Result.WHITE_WINS);
+        } else if (matches(start, "0-1")){
+            finishGame(Result.BLACK_WINS);
+        } else if (matches(start, "1/2-1/2")){
+            finishGame(Result.DRAW);
+        } else {
+            skipGame = true;
+        }
+    }
+
+    /**
+     * Plays the move with the given name, in Standard Algebraic Notation.
+     *
+     * @param start
+     * @param end
+     */
+    private void readMove(int start, int end) {
+        if (skipGame){
+            return;
+        }
+
+        // Ignore check indicators and annotations
+        while (end > start && isSuffix(buf.get(end - 1))){
+            end--;
+        }
+
+        int move = isCastle(buf.get(start))
+                ? resolveCastle(start, end)
+                : resolveMove(start, end);
+        if (move == Moves.NONE){
+            skipGame = true;
+            return;
+        }
+
+        game.makeMove(move);
+        game.flipTurn();
+        if (numMoves == moves.length){
+            moves = Arrays.copyOf(moves, numMoves * 2);
+        }
+        moves[numMoves++] = move;
+    }
+
+    private int resolveCastle(int start, int end) {
+        int kingSquare = game.getKingSquare(game.getCurrentPlayer());
+        if (kingSquare == Game.NO_SQUARE){
+            return Moves.NONE;
+        }
+
+        // "O-O" or "O-O-O"
+        int length = end - start;
+        int kingDestX;
+        if (length == 3){
+            kingDestX = Game.SQUARES_PER_SIDE - 2;
+        } else if (length == 5){
+            kingDestX = 2;
+        } else {
+            return Moves.NONE;
+        }
+        int to = Bitboards.square(kingDestX, Bitboards.getY(kingSquare));
+        int move = game.findLegalMove(kingSquare, to, null);
+        return Moves.isCastle(move) ? move : Moves.NONE;
+    }
+
+    private int resolveMove(int start, int end) {
+        Type type = getPieceType(buf.get(start));
+        if (type == null){
+            type = Type.PAWN;
+        } else {
+            start++;
+        }
+
+        // Promotion, for example, "e8=Q"
+        Type promotion = null;
+        if (end - start > 2){
+            promotion = getPieceType(buf.get(end - 1));
+            if (promotion != null){
+                end--;
+                if (buf.get(end - 1) == '='){
+                    end--;
+                }
+            }
+        }
+
+        if (end - start < 2){
+            return Moves.NONE;
+        }
+        int to = getSquare(buf.get(end - 2), buf.get(end - 1));
+        if (to == Game.NO_SQUARE){
+            return Moves.NONE;
+        }
+
+        // Narrow down the moving piece using any file or rank given
+        Player player = game.getCurrentPlayer();
+        long candidates = game.getLegalSources(to)
+                & game.getBitboard(player, type);
+        for (int i = start; i < end - 2; i++){
+            byte c = buf.get(i);
+            if (c >= 'a' && c <= 'h'){
+                candidates &= Bitboards.FILE_A << (c - 'a');
+            } else if (c >= '1' && c <= '8'){
+                candidates &= Bitboards.RANK_TOP
+                        << (Game.SQUARES_PER_SIDE * ('8' - c));
+            } else if (c != 'x' && c != '-'){
+                return Moves.NONE;
+            }
+        }
+
+        if (Long.bitCount(candidates) != 1){
+            return Moves.NONE;
+        }
+        return game.findLegalMove(Bitboards.lowestSquare(candidates), to,
+                promotion);
+    }
+
+    /**
+     * Ends the current game, and returns the Game to the starting position.
+     *
+     * @param result
+     */
+    private void finishGame(Result result) {
+        if (!inGame){
+            return;
+        }
+        if (!skipGame){
+            replayMoves();
+            listener.gameFinished(game, result);
+            gamesRead++;
+        }
+        if (customPosition){
+            numMoves = 0;
+            Fen.load(game, Fen.START_POSITION);
+            customPosition = false;
+        }
+        while (numMoves > 0){
+            game.flipTurn();
+            game.unmakeMove(moves[--numMoves]);
+        }
+        inGame = false;
+        inMovetext = false;
+        skipGame = false;
+    }
+
+    /**
+     * Takes back the moves of the current game and plays them again,
+     * reporting each one to the listener.
+     *
+     * <p>Moves are only reported once the whole game has been read, so the
+     * listener never sees part of a game that is later skipped.
+     */
+    private void replayMoves() {
+        for (int i = numMoves - 1; i >= 0; i--){
+            game.flipTurn();
+            game.unmakeMove(moves[i]);
+        }
+        for (int i = 0; i < numMoves; i++){
+            game.makeMove(moves[i]);
+            game.flipTurn();
+            listener.movePlayed(game, moves[i]);
+        }
+    }
+
+    private boolean matches(int start, String text) {
+        if (start + text.length() > limit){
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++){
+            if (buf.get(start + i) != text.charAt(i)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getSquare(byte file, byte rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8'){
+            return Game.NO_SQUARE;
+        }
+        return Bitboards.square(file - 'a', '8' - rank);
+    }
+
+    private static Type getPieceType(byte c) {
+        switch (c){
+        case 'N':
+            return Type.KNIGHT;
+        case 'B':
+            return Type.BISHOP;
+        case 'R':
+            return Type.ROOK;
+        case 'Q':
+            return Type.QUEEN;
+        case 'K':
+            return Type.KING;
+        default:
+            return null;
+        }
+    }
+
+    private static boolean isCastle(byte c) {
+        return c == 'O' || c == '0';
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSuffix(byte c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    private static boolean isSeparator(byte c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static boolean isTokenEnd(byte c) {
+        return isSeparator(c) || c == '{' || c == '(' || c == ')'
+                || c == ';' || c == '[';
+    }
+
+}
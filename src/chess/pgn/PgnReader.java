@@ -0,0 +1,225 @@
+package chess.pgn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays through every game in a PGN file.
+ *
+ * <p>The file is memory-mapped rather than read through a stream, so the
+ * text is never copied, and it is split at game boundaries into chunks that
+ * are parsed in parallel. Each chunk is parsed by its own {@link PgnParser},
+ * with its own Game, so the threads share nothing but the listener.
+ *
+ * @author Dan Bryce
+ */
+public abstract class PgnReader {
+
+    /**
+     * The largest chunk to map at once.
+     *
+     * <p>A single mapping cannot exceed 2 GB, and smaller chunks balance the
+     * load between threads better.
+     */
+    private static final long MAX_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Size of the buffer used when searching for a game boundary.
+     */
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Plays through every game in the given file, using one thread per
+     * processor.
+     *
+     * @param path
+     * @param listener
+     * @return The number of games read successfully.
+     * @throws IOException
+     */
+    public static long read(Path path, PgnListener listener)
+            throws IOException {
+        return read(path, listener,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Plays through every game in the given file.
+     *
+     * <p>The listener is called from every thread.
+     *
+     * @param path
+     * @param listener
+     * @param numThreads
+     * @return The number of games read successfully.
+     * @throws IOException
+     */
+    public static long read(Path path, PgnListener listener, int numThreads)
+            throws IOException {
+        if (numThreads < 1){
+            throw new IllegalArgumentException(
+                    "Invalid number of threads: " + numThreads);
+        }
+
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)){
+            long[] boundaries = findChunkBoundaries(channel, numThreads);
+            if (numThreads == 1){
+                long games = 0;
+                for (int i = 0; i + 1 < boundaries.length; i++){
+                    games += readChunk(channel, boundaries[i],
+                            boundaries[i + 1], listener);
+                }
+                return games;
+            }
+            return readInParallel(channel, boundaries, listener, numThreads);
+        }
+    }
+
+    private static long readInParallel(FileChannel channel,
+            long[] boundaries, PgnListener listener, int numThreads)
+            throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+                r -> {
+                    Thread thread = new Thread(r, "PGN reader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i + 1 < boundaries.length; i++){
+                long start = boundaries[i];
+                long end = boundaries[i + 1];
+                results.add(executor.submit(
+                        () -> readChunk(channel, start, end, listener)));
+            }
+
+            long games = 0;
+            for (Future<Long> result : results){
+                games += getResult(result);
+            }
+            return games;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long getResult(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading PGN", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to read PGN",
+                    e.getCause());
+        }
+    }
+
+    private static long readChunk(FileChannel channel, long start, long end,
+            PgnListener listener) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                start, end - start);
+        return new PgnParser(listener).parse(buffer);
+    }
+
+    /**
+     * Divides the file into chunks, each of which starts at the beginning of
+     * a game.
+     *
+     * @param channel
+     * @param numThreads
+     * @return The offset of the start of each chunk, followed by the size of
+     *      the file.
+     * @throws IOException
+     */
+    private static long[] findChunkBoundaries(FileChannel channel,
+            int numThreads) throws IOException {
+        long size = channel.size();
+        long numChunks = Math.max(numThreads,
+                (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        long chunkSize = Math.max(1, size / numChunks);
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        long previous = 0;
+        ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        for (long offset = chunkSize; offset < size; offset += chunkSize){
+            if (offset <= previous){
+                // The previous chunk already extends past this point
+                continue;
+            }
+            long boundary = findGameStart(channel, offset, scanBuffer);
+            if (boundary >= size){
+                break;
+            }
+            boundaries.add(boundary);
+            previous = boundary;
+        }
+        boundaries.add(size);
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++){
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the start of the first game after the given offset.
+     *
+     * <p>A game starts with a tag ("[") at the start of a line, following a
+     * blank line.
+     *
+     * @param channel
+     * @param offset
+     * @param buffer
+     * @return The offset of the game, or the size of the file if there is no
+     *      later game.
+     * @throws IOException
+     */
+    private static long findGameStart(FileChannel channel, long offset,
+            ByteBuffer buffer) throws IOException {
+        // We can't tell if the line containing the offset follows a blank
+        // line, so we start looking from the next one
+        boolean lineStart = false;
+        boolean lineBlank = false;
+        boolean previousLineBlank = false;
+        long position = offset;
+
+        while (true){
+            buffer.clear();
+            int bytesRead = channel.read(buffer, position);
+            if (bytesRead <= 0){
+                return channel.size();
+            }
+            for (int i = 0; i < bytesRead; i++){
+                byte c = buffer.get(i);
+                if (c == '\n'){
+                    previousLineBlank = lineStart && lineBlank;
+                    lineStart = true;
+                    lineBlank = true;
+                } else if (c == '[' && lineBlank && previousLineBlank){
+                    return position + i;
+                } else if (c != '\r' && c != ' ' && c != '\t'){
+                    lineBlank = false;
+                }
+            }
+            position += bytesRead;
+        }
+    }
+
+}
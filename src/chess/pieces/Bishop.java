@@ -1,10 +1,9 @@
 package chess.pieces;
 
-import java.util.Collection;
-
-import chess.Action;
+import chess.Attacks;
 import chess.Game;
 import chess.GamePiece;
+import chess.MoveList;
 
 /**
  * GamePiece that can move any number of squares diagonally.
@@ -18,14 +17,20 @@ public class Bishop extends GamePiece {
     }
 
     @Override
-    protected void getValidMoves(Game game, Collection<Action> moves,
-            boolean onlyAttacks) {
+    public Type getType() {
+        return Type.BISHOP;
+    }
+
+    @Override
+    public long getAttackedSquares(Game game) {
+        return Attacks.bishop(getSquare(), game.getOccupied());
+    }
 
+    @Override
+    protected void getValidMoves(Game game, MoveList moves, long allowed) {
         // Get the possible moves in each diagonal direction
-        addActionsInDirection(game, moves, onlyAttacks, -1, -1);
-        addActionsInDirection(game, moves, onlyAttacks, -1, 1);
-        addActionsInDirection(game, moves, onlyAttacks, 1, -1);
-        addActionsInDirection(game, moves, onlyAttacks, 1, 1);
+        addMoves(game, moves,
+                getAttackedSquares(game) & ~game.getOccupancy(owner) & allowed);
     }
 
 }
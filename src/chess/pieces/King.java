@@ -1,10 +1,11 @@
 package chess.pieces;
 
-import java.util.Collection;
-
-import chess.Action;
+import chess.Attacks;
+import chess.Bitboards;
 import chess.Game;
 import chess.GamePiece;
+import chess.MoveList;
+import chess.Moves;
 import chess.actions.Castle;
 
 /**
@@ -19,67 +20,62 @@ public class King extends GamePiece {
     }
 
     @Override
-    protected void getValidMoves(Game game, Collection<Action> moves,
-            boolean onlyAttacks) {
-
-        Action move = getPossibleMove(game, x - 1, y - 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x, y - 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x + 1, y - 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x - 1, y, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x + 1, y, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x - 1, y + 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x, y + 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
+    public Type getType() {
+        return Type.KING;
+    }
 
-        move = getPossibleMove(game, x + 1, y + 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
+    @Override
+    public long getAttackedSquares(Game game) {
+        return Attacks.king(getSquare());
+    }
 
-        if (onlyAttacks){
-            return;
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Unlike other pieces, the moves produced for the King are always
+     * legal, since the King itself checks that it is not moving into check.
+     */
+    @Override
+    protected void getValidMoves(Game game, MoveList moves, long allowed) {
+
+        long targets = getAttackedSquares(game)
+                & ~game.getOccupancy(owner)
+                & allowed;
+
+        // We have to look "through" the King when checking if a square is
+        // under attack, otherwise the King could move away from a sliding
+        // piece along the line of attack.
+        long occupied = game.getOccupied() & ~Bitboards.bit(getSquare());
+        long safeTargets = 0;
+        while (targets != 0){
+            int square = Bitboards.lowestSquare(targets);
+            targets = Bitboards.popLowestSquare(targets);
+            if (!game.isSquareAttackedByPlayer(square, getOpponent(),
+                    occupied)){
+                safeTargets |= Bitboards.bit(square);
+            }
         }
+        addMoves(game, moves, safeTargets);
 
-        if (!moved && !game.isSquareAttackedByPlayer(x, y, getOpponent())){
+        boolean canCastle = game.hasCastlingRight(owner, 0) ||
+                game.hasCastlingRight(owner, Game.SQUARES_PER_SIDE - 1);
+        if (canCastle &&
+                !game.isSquareAttackedByPlayer(x, y, getOpponent())){
             // We have not moved and we are not in check, so let's see if we can
             // castle...
 
             // ... to the east
-            move = getPossibleCastle(game, 0, getOwnerSideY());
-            if (move != null){
+            int move = getPossibleCastle(game, 0, getOwnerSideY());
+            if (move != Moves.NONE &&
+                    (allowed & Bitboards.bit(Moves.getTo(move))) != 0){
                 moves.add(move);
             }
 
             // ... to the west
             move = getPossibleCastle(game, Game.SQUARES_PER_SIDE - 1,
                     getOwnerSideY());
-            if (move != null){
+            if (move != Moves.NONE &&
+                    (allowed & Bitboards.bit(Moves.getTo(move))) != 0){
                 moves.add(move);
             }
         }
@@ -93,35 +89,45 @@ public class King extends GamePiece {
      * <ul>
      *  <li>Neither the King nor the Rook has previously moved.</li>
      *  <li>There are no pieces in between them.</li>
-     *  <li>The King is not in check, and does not pass through any squares that
-     * are "under attack".</li>
+     *  <li>The King is not in check, and does not pass through or land on any
+     * squares that are "under attack". The Rook may pass through such squares.
+     * </li>
      * </ul>
      *
      * @param game
      * @param rookX
      * @param rookY
-     * @return
+     * @return The castling move, or {@link Moves#NONE}.
      */
-    private Action getPossibleCastle(Game game, int rookX, int rookY) {
+    private int getPossibleCastle(Game game, int rookX, int rookY) {
         GamePiece piece = game.getPieceAt(rookX, rookY);
-        if (piece instanceof Rook && !piece.hasMoved()){
+        if (game.hasCastlingRight(owner, rookX) && piece instanceof Rook){
 
             // Search every space between the King and the Rook
             int searchDirection = (rookX == 0) ? 1 : -1;
             int startX = rookX + searchDirection;
 
             for (int x = startX; x != this.x; x += searchDirection){
-                if (game.getPieceAt(x, rookY) != null ||
-                        game.isSquareAttackedByPlayer(x, rookY, getOpponent())){
-                    // Another piece is in the way, or the square is under
-                    // attack.
-                    return null;
+                if (game.getPieceAt(x, rookY) != null){
+                    // Another piece is in the way
+                    return Moves.NONE;
+                }
+            }
+
+            // Search every space that the King passes through
+            int kingDestX = Castle.getKingDestX(rookX);
+            for (int x = kingDestX; x != this.x; x += searchDirection){
+                if (game.isSquareAttackedByPlayer(x, rookY, getOpponent())){
+                    // The square is under attack
+                    return Moves.NONE;
                 }
             }
 
-            return new Castle(this, (Rook) piece);
+            return Moves.create(getSquare(),
+                    Bitboards.square(kingDestX, rookY),
+                    Moves.FLAG_CASTLE);
         }
-        return null;
+        return Moves.NONE;
     }
 
 }
@@ -1,10 +1,9 @@
 package chess.pieces;
 
-import java.util.Collection;
-
-import chess.Action;
+import chess.Attacks;
 import chess.Game;
 import chess.GamePiece;
+import chess.MoveList;
 
 /**
  * GamePiece that can move 2 squares in any orthogonal direction, then 1 square
@@ -21,48 +20,19 @@ public class Knight extends GamePiece {
     }
 
     @Override
-    protected void getValidMoves(Game game, Collection<Action> moves,
-            boolean onlyAttacks) {
-
-        Action move = getPossibleMove(game, x + 1, y + 2, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x + 1, y - 2, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x - 1, y + 2, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x - 1, y - 2, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x + 2, y - 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
-
-        move = getPossibleMove(game, x + 2, y + 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
+    public Type getType() {
+        return Type.KNIGHT;
+    }
 
-        move = getPossibleMove(game, x - 2, y - 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
+    @Override
+    public long getAttackedSquares(Game game) {
+        return Attacks.knight(getSquare());
+    }
 
-        move = getPossibleMove(game, x - 2, y + 1, onlyAttacks);
-        if (move != null){
-            moves.add(move);
-        }
+    @Override
+    protected void getValidMoves(Game game, MoveList moves, long allowed) {
+        addMoves(game, moves,
+                getAttackedSquares(game) & ~game.getOccupancy(owner) & allowed);
     }
 
 }
@@ -1,22 +1,20 @@
 package chess.pieces;
 
-import java.util.Collection;
-
-import chess.Action;
+import chess.Attacks;
+import chess.Bitboards;
 import chess.Game;
 import chess.GamePiece;
-import chess.actions.Attack;
-import chess.actions.AttackingPromotion;
-import chess.actions.Move;
-import chess.actions.Promotion;
+import chess.MoveList;
+import chess.Moves;
 
 /**
  * GamePiece that can typically just move 1 square forward, but can only attack
  * diagonally.
  *
- * <p>A Pawn can move 2 squares forward if it has not yet moved. A Pawn that
- * reaches the other side of the game board can be promoted to any other
- * GamePiece.
+ * <p>A Pawn can move 2 squares forward if it has not yet moved. If it does so,
+ * it can be captured "en passant" on the next move by an enemy Pawn that
+ * could have captured it had it moved only 1 square. A Pawn that reaches the
+ * other side of the game board can be promoted to any other GamePiece.
  *
  * @author Dan Bryce
  */
@@ -27,57 +25,123 @@ public class Pawn extends GamePiece {
     }
 
     @Override
-    protected void getValidMoves(Game game, Collection<Action> moves,
-            boolean onlyAttacks) {
+    public Type getType() {
+        return Type.PAWN;
+    }
 
-        Action attackEast = getPossibleAttack(game, x - 1, y + getDirection());
-        if (attackEast != null){
-            moves.add(attackEast);
-        }
+    @Override
+    public long getAttackedSquares(Game game) {
+        return Attacks.pawn(owner, getSquare());
+    }
 
-        Action attackWest = getPossibleAttack(game, x + 1, y + getDirection());
-        if (attackWest != null){
-            moves.add(attackWest);
+    @Override
+    protected void getValidMoves(Game game, MoveList moves, long allowed) {
+
+        long targets = getAttackedSquares(game)
+                & game.getOccupancy(getOpponent())
+                & allowed;
+        while (targets != 0){
+            int square = Bitboards.lowestSquare(targets);
+            targets = Bitboards.popLowestSquare(targets);
+            addMove(moves, square, Moves.FLAG_CAPTURE);
         }
 
-        if (onlyAttacks){
-            return;
+        int enPassantSquare = game.getEnPassantSquare();
+        if (enPassantSquare != Game.NO_SQUARE
+                && (getAttackedSquares(game)
+                        & Bitboards.bit(enPassantSquare)) != 0
+                && isEnPassantAllowed(game, enPassantSquare, allowed)){
+            moves.add(Moves.create(getSquare(), enPassantSquare,
+                    Moves.FLAG_CAPTURE | Moves.FLAG_EN_PASSANT));
         }
 
-        Action forwardOne = getPossibleMove(game, x, y + getDirection());
-        if (forwardOne == null){
+        int forwardOneY = y + getDirection();
+        if (!isPossibleMove(game, x, forwardOneY)){
             // Pawn is blocked
             return;
         }
-        moves.add(forwardOne);
+        if ((allowed & Bitboards.bit(x, forwardOneY)) != 0){
+            addMove(moves, Bitboards.square(x, forwardOneY), 0);
+        }
 
         if (!moved){
-            Action forwardTwo =
-                    getPossibleMove(game, x, y + 2 * getDirection());
-            if (forwardTwo == null){
+            int forwardTwoY = y + 2 * getDirection();
+            if (!isPossibleMove(game, x, forwardTwoY)){
                 // Pawn is blocked
                 return;
             }
-            moves.add(forwardTwo);
+            if ((allowed & Bitboards.bit(x, forwardTwoY)) != 0){
+                addMove(moves, Bitboards.square(x, forwardTwoY), 0);
+            }
         }
     }
 
-    protected Action getPossibleMove(Game game, int x, int y) {
-
-        if (!Game.isValidPosition(x, y)){
-            return null;
+    /**
+     * Determines if this Pawn is allowed to capture en passant onto the given
+     * square.
+     *
+     * <p>This needs special treatment because 2 pieces leave the same rank
+     * at once, which can expose the King to an attack along that rank even
+     * though neither Pawn was pinned. Also, the captured Pawn is not on the
+     * target square, so the capture can resolve a check even if the target
+     * square is not one of the allowed squares.
+     *
+     * @param game
+     * @param to
+     * @param allowed
+     * @return
+     */
+    private boolean isEnPassantAllowed(Game game, int to, long allowed) {
+        long capturedBit = Bitboards.bit(Bitboards.getX(to), y);
+        long toBit = Bitboards.bit(to);
+        if ((allowed & (toBit | capturedBit)) == 0){
+            return false;
         }
 
-        if (game.getPieceAt(x, y) != null){
-            // Can't move through another piece
-            return null;
+        int kingSquare = game.getKingSquare(owner);
+        if (kingSquare == Game.NO_SQUARE){
+            return true;
         }
 
-        if (isDuePromotion(y)) {
-            return new Promotion(this, x, y);
+        // See if anything (other than the captured Pawn) would be attacking
+        // the King after the capture
+        long occupied = (game.getOccupied()
+                ^ Bitboards.bit(getSquare())
+                ^ capturedBit)
+                | toBit;
+        long attackers = game.getAttackers(kingSquare, getOpponent(),
+                occupied);
+        return (attackers & ~capturedBit) == 0;
+    }
+
+    protected boolean isPossibleMove(Game game, int x, int y) {
+
+        if (!Game.isValidPosition(x, y)){
+            return false;
         }
 
-        return new Move(this, x, y);
+        // Can't move through another piece
+        return game.getPieceAt(x, y) == null;
+    }
+
+    /**
+     * Adds a move to the given square, or a move for each possible promotion
+     * if the square is on the other side.
+     *
+     * @param moves
+     * @param to
+     * @param flags
+     */
+    private void addMove(MoveList moves, int to, int flags) {
+        int from = getSquare();
+        if (isDuePromotion(Bitboards.getY(to))) {
+            moves.add(Moves.createPromotion(from, to, flags, Type.QUEEN));
+            moves.add(Moves.createPromotion(from, to, flags, Type.ROOK));
+            moves.add(Moves.createPromotion(from, to, flags, Type.BISHOP));
+            moves.add(Moves.createPromotion(from, to, flags, Type.KNIGHT));
+            return;
+        }
+        moves.add(Moves.create(from, to, flags));
     }
 
     /**
@@ -88,24 +152,6 @@ public class Pawn extends GamePiece {
         return y == getOpponentSideY();
     }
 
-    private Action getPossibleAttack(Game game, int x, int y) {
-
-        if (!Game.isValidPosition(x, y)){
-            return null;
-        }
-
-        GamePiece target = game.getPieceAt(x, y);
-        if (target == null || target.getOwner() == owner){
-            return null;
-        }
-
-        if (isDuePromotion(y)) {
-            return new AttackingPromotion(this, target);
-        }
-
-        return new Attack(this, target);
-    }
-
     private int getDirection() {
         return owner == Player.BLACK ? 1 : -1;
     }
@@ -0,0 +1,46 @@
+package chess.profiling;
+
+/**
+ * The parts of the rules engine that are measured by the
+ * {@link RulesProfiler}.
+ *
+ * @author Dan Bryce
+ */
+public enum Operation {
+
+    /**
+     * Generating every legal move in a position.
+     */
+    GENERATE_MOVES,
+
+    /**
+     * Checking if a square is attacked.
+     */
+    SQUARE_ATTACKED,
+
+    /**
+     * Determining if the game is over.
+     */
+    DETERMINE_GAME_OVER,
+
+    /**
+     * Executing (or redoing) an Action.
+     */
+    EXECUTE_ACTION,
+
+    /**
+     * Undoing an Action.
+     */
+    UNDO_ACTION;
+
+    /**
+     * Gets the name of this Operation as it appears in reports, for example,
+     * "generate-moves".
+     *
+     * @return
+     */
+    public String getLabel() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+}
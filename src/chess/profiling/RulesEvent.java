@@ -0,0 +1,48 @@
+package chess.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for a single {@link Operation}.
+ *
+ * <p>These events are only created while the {@link RulesProfiler} is
+ * enabled, and only recorded if the recording asks for them. Since some
+ * operations take well under a microsecond, a recording will usually want
+ * to raise the event's threshold so that only slow calls are kept.
+ *
+ * @author Dan Bryce
+ */
+@Name("chess.RulesOperation")
+@Label("Rules Operation")
+@Category({ "Chess", "Rules" })
+@Description("A call into the rules engine")
+@StackTrace(false)
+public class RulesEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Legal Moves")
+    @Description("Number of legal moves generated, if any")
+    int legalMoves;
+
+    @Label("Pseudo-legal Moves")
+    @Description("Number of moves that would be possible if check, pins "
+            + "and the safety of the King were ignored")
+    int pseudoLegalMoves;
+
+    /**
+     * The Operation being measured; the name alone is recorded.
+     */
+    transient Operation operationType;
+
+    /**
+     * Time at which the Operation started, according to System.nanoTime().
+     */
+    transient long startNanos;
+
+}
@@ -0,0 +1,196 @@
+package chess.profiling;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how often the rules engine's hot paths are called, and how long
+ * they take.
+ *
+ * <p>Each {@link Operation} has counters for the number of calls and the
+ * total time spent, which are cheap to update from many threads at once
+ * and can be read at any time. Each call also creates a {@link RulesEvent},
+ * so a Java Flight Recorder recording can show exactly which calls were
+ * slow.
+ *
+ * <p>Profiling is off by default, and can be switched on and off at any
+ * time. While it is off, each operation pays only for a single check of
+ * {@link #isEnabled()}.
+ *
+ * <p>Instrumented code follows this pattern:
+ *
+ * <pre>
+ *  if (!RulesProfiler.isEnabled()){
+ *      return doSomething();
+ *  }
+ *  RulesEvent event = RulesProfiler.begin(Operation.SOMETHING);
+ *  Result result = doSomething();
+ *  RulesProfiler.end(event);
+ *  return result;
+ * </pre>
+ *
+ * @author Dan Bryce
+ */
+public abstract class RulesProfiler {
+
+    private static final int NUM_OPERATIONS = Operation.values().length;
+
+    private static volatile boolean enabled;
+
+    private static final LongAdder[] calls = createAdders();
+
+    private static final LongAdder[] nanos = createAdders();
+
+    private static final LongAdder legalMoves = new LongAdder();
+
+    private static final LongAdder pseudoLegalMoves = new LongAdder();
+
+    private static LongAdder[] createAdders() {
+        LongAdder[] adders = new LongAdder[NUM_OPERATIONS];
+        for (int i = 0; i < adders.length; i++){
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches profiling on or off.
+     *
+     * <p>Operations that are already running when this is called may or may
+     * not be counted.
+     *
+     * @param enabled
+     */
+    public static void setEnabled(boolean enabled) {
+        RulesProfiler.enabled = enabled;
+    }
+
+    /**
+     * Starts measuring an Operation.
+     *
+     * @param operation
+     * @return The event to pass to {@link #end} when the Operation is done.
+     */
+    public static RulesEvent begin(Operation operation) {
+        RulesEvent event = new RulesEvent();
+        event.operationType = operation;
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    /**
+     * Finishes measuring an Operation.
+     *
+     * @param event
+     */
+    public static void end(RulesEvent event) {
+        long elapsed = System.nanoTime() - event.startNanos;
+        event.end();
+        int index = event.operationType.ordinal();
+        calls[index].increment();
+        nanos[index].add(elapsed);
+        if (event.shouldCommit()){
+            event.operation = event.operationType.getLabel();
+            event.commit();
+        }
+    }
+
+    /**
+     * Finishes measuring the generation of moves.
+     *
+     * @param event
+     * @param numLegalMoves
+     * @param numPseudoLegalMoves
+     *      Number of moves that would have been generated if check, pins
+     *      and the safety of the King were ignored.
+     */
+    public static void end(RulesEvent event, int numLegalMoves,
+            int numPseudoLegalMoves) {
+        legalMoves.add(numLegalMoves);
+        pseudoLegalMoves.add(numPseudoLegalMoves);
+        event.legalMoves = numLegalMoves;
+        event.pseudoLegalMoves = numPseudoLegalMoves;
+        end(event);
+    }
+
+    /**
+     * Gets the number of times the given Operation has been measured.
+     *
+     * @param operation
+     * @return
+     */
+    public static long getCalls(Operation operation) {
+        return calls[operation.ordinal()].sum();
+    }
+
+    /**
+     * Gets the total time spent in the given Operation.
+     *
+     * @param operation
+     * @return The time, in nanoseconds.
+     */
+    public static long getTotalNanos(Operation operation) {
+        return nanos[operation.ordinal()].sum();
+    }
+
+    public static long getLegalMoves() {
+        return legalMoves.sum();
+    }
+
+    public static long getPseudoLegalMoves() {
+        return pseudoLegalMoves.sum();
+    }
+
+    /**
+     * Gets the proportion of pseudo-legal moves that turned out to be legal.
+     *
+     * @return The proportion, or 1 if no moves have been generated.
+     */
+    public static double getLegalMoveRatio() {
+        long pseudoLegal = pseudoLegalMoves.sum();
+        return pseudoLegal == 0
+                ? 1
+                : (double) legalMoves.sum() / pseudoLegal;
+    }
+
+    /**
+     * Sets every counter back to zero.
+     *
+     * <p>Operations that are running when this is called may or may not be
+     * counted afterwards.
+     */
+    public static void reset() {
+        for (int i = 0; i < NUM_OPERATIONS; i++){
+            calls[i].reset();
+            nanos[i].reset();
+        }
+        legalMoves.reset();
+        pseudoLegalMoves.reset();
+    }
+
+    /**
+     * Describes every counter, one Operation per line.
+     *
+     * @return
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (Operation operation : Operation.values()){
+            long numCalls = getCalls(operation);
+            long totalNanos = getTotalNanos(operation);
+            report.append(String.format("%-20s %12d calls %10.3f ms"
+                    + " %8d ns/call%n", operation.getLabel(), numCalls,
+                    totalNanos / 1e6,
+                    numCalls == 0 ? 0 : totalNanos / numCalls));
+        }
+        report.append(String.format("%-20s %12d of %d pseudo-legal (%.1f%%)"
+                + "%n", "legal-moves", getLegalMoves(),
+                getPseudoLegalMoves(), getLegalMoveRatio() * 100));
+        return report.toString();
+    }
+
+}
@@ -0,0 +1,378 @@
+package chess.tablebase;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import chess.Bitboards;
+import chess.Game;
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+
+/**
+ * The set of pieces on the board, for example, "KQvK" (King and Queen
+ * against a lone King).
+ *
+ * <p>Each side's pieces are listed King first, then from the most valuable
+ * to the least, with White's pieces before the "v". A Material also defines
+ * how positions with those pieces are numbered within a tablebase: the
+ * index is built from the player to move, followed by the square of each
+ * piece in the order listed.
+ *
+ * @author Dan Bryce
+ */
+public class Material {
+
+    /**
+     * The most pieces a tablebase can hold, including the Kings.
+     */
+    public static final int MAX_PIECES = 4;
+
+    /**
+     * Piece letters, in the order in which each side's pieces are listed.
+     */
+    private static final String LETTERS = "KQRBNP";
+
+    private static final Type[] ORDER = {
+        Type.KING, Type.QUEEN, Type.ROOK, Type.BISHOP, Type.KNIGHT, Type.PAWN
+    };
+
+    /**
+     * The types a Pawn can be promoted to.
+     */
+    private static final Type[] PROMOTIONS = {
+        Type.QUEEN, Type.ROOK, Type.BISHOP, Type.KNIGHT
+    };
+
+    private static final int NUM_PLAYERS = Player.values().length;
+
+    /**
+     * Bits used to hold the number of pieces of each type in a key.
+     */
+    private static final int KEY_BITS_PER_TYPE = 3;
+
+    private final String name;
+
+    /**
+     * A number that identifies this Material (see {@link #getKey(Game,
+     * boolean)}).
+     */
+    private final long key;
+
+    /**
+     * The type of each piece, in index order.
+     */
+    private final Type[] types;
+
+    /**
+     * The owner of each piece, in index order.
+     */
+    private final Player[] owners;
+
+    private Material(Type[] types, Player[] owners) {
+        this.types = types;
+        this.owners = owners;
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < types.length; i++){
+            if (i > 0 && owners[i] != owners[i - 1]){
+                sb.append('v');
+            }
+            sb.append(LETTERS.charAt(indexOf(types[i])));
+        }
+        name = sb.toString();
+
+        long key = 0;
+        for (int i = 0; i < types.length; i++){
+            key += 1L << getKeyShift(owners[i], types[i]);
+        }
+        this.key = key;
+    }
+
+    /**
+     * Parses a Material from its name, for example, "KRvK".
+     *
+     * @param name
+     * @return
+     * @throws IllegalArgumentException if the name is not valid.
+     */
+    public static Material parse(String name) {
+        int separator = name.indexOf('v');
+        if (separator < 0){
+            throw new IllegalArgumentException("Invalid material: " + name);
+        }
+        int[] white = countPieces(name, 0, separator);
+        int[] black = countPieces(name, separator + 1, name.length());
+        return create(white, black);
+    }
+
+    /**
+     * Gets the Material of the current position of the given Game.
+     *
+     * @param game
+     * @return
+     */
+    public static Material of(Game game) {
+        int[] white = new int[ORDER.length];
+        int[] black = new int[ORDER.length];
+        for (int i = 0; i < ORDER.length; i++){
+            white[i] = Long.bitCount(game.getBitboard(Player.WHITE, ORDER[i]));
+            black[i] = Long.bitCount(game.getBitboard(Player.BLACK, ORDER[i]));
+        }
+        return create(white, black);
+    }
+
+    private static int[] countPieces(String name, int start, int end) {
+        int[] counts = new int[ORDER.length];
+        for (int i = start; i < end; i++){
+            int index = LETTERS.indexOf(name.charAt(i));
+            if (index < 0){
+                throw new IllegalArgumentException(
+                        "Invalid material: " + name);
+            }
+            counts[index]++;
+        }
+        if (counts[0] != 1){
+            throw new IllegalArgumentException(
+                    "Each side needs exactly one King: " + name);
+        }
+        return counts;
+    }
+
+    private static Material create(int[] white, int[] black) {
+        int numPieces = Arrays.stream(white).sum() + Arrays.stream(black).sum();
+        Type[] types = new Type[numPieces];
+        Player[] owners = new Player[numPieces];
+        int i = 0;
+        for (Player player : Player.values()){
+            int[] counts = player == Player.WHITE ? white : black;
+            for (int j = 0; j < ORDER.length; j++){
+                for (int k = 0; k < counts[j]; k++){
+                    types[i] = ORDER[j];
+                    owners[i] = player;
+                    i++;
+                }
+            }
+        }
+        return new Material(types, owners);
+    }
+
+    /**
+     * Gets a number that identifies the Material of the current position of
+     * the given Game, without creating a Material.
+     *
+     * @param game
+     * @param mirrored
+     *      True to get the key of the Material with the colours swapped.
+     * @return
+     */
+    static long getKey(Game game, boolean mirrored) {
+        long key = 0;
+        for (Player player : Player.values()){
+            Player owner = mirrored ? player.getOpponent() : player;
+            for (Type type : ORDER){
+                key += (long) Long.bitCount(game.getBitboard(owner, type))
+                        << getKeyShift(player, type);
+            }
+        }
+        return key;
+    }
+
+    private static int getKeyShift(Player player, Type type) {
+        return (player.ordinal() * ORDER.length + type.ordinal())
+                * KEY_BITS_PER_TYPE;
+    }
+
+    private static int indexOf(Type type) {
+        for (int i = 0; i < ORDER.length; i++){
+            if (ORDER[i] == type){
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Invalid type: " + type);
+    }
+
+    /**
+     * Gets the same Material with the colours swapped.
+     *
+     * @return
+     */
+    public Material mirror() {
+        int separator = name.indexOf('v');
+        return parse(name.substring(separator + 1) + "v"
+                + name.substring(0, separator));
+    }
+
+    /**
+     * Gets every Material that can be reached from this one in a single move,
+     * by a capture, a promotion, or a capture and a promotion at once.
+     *
+     * @return
+     */
+    Set<Material> getSuccessors() {
+        Set<Material> successors = new LinkedHashSet<>();
+        for (int captured = -1; captured < types.length; captured++){
+            if (captured >= 0 && types[captured] == Type.KING){
+                continue;
+            }
+            for (int promoted = -1; promoted < types.length; promoted++){
+                if (promoted < 0){
+                    if (captured >= 0){
+                        successors.add(replace(captured, -1, null));
+                    }
+                    continue;
+                }
+                if (types[promoted] != Type.PAWN || (captured >= 0
+                        && owners[captured] == owners[promoted])){
+                    continue;
+                }
+                for (Type promotion : PROMOTIONS){
+                    successors.add(replace(captured, promoted, promotion));
+                }
+            }
+        }
+        return successors;
+    }
+
+    /**
+     * Gets this Material with up to one piece removed and up to one piece
+     * changed to another type.
+     *
+     * @param removed Piece to remove, or -1.
+     * @param changed Piece to change, or -1.
+     * @param newType New type of the changed piece.
+     * @return
+     */
+    private Material replace(int removed, int changed, Type newType) {
+        int[] white = new int[ORDER.length];
+        int[] black = new int[ORDER.length];
+        for (int i = 0; i < types.length; i++){
+            if (i == removed){
+                continue;
+            }
+            Type type = i == changed ? newType : types[i];
+            int[] counts = owners[i] == Player.WHITE ? white : black;
+            counts[indexOf(type)]++;
+        }
+        return create(white, black);
+    }
+
+    /**
+     * Determines if both sides have Pawns.
+     *
+     * @return
+     */
+    public boolean hasPawnsOnBothSides() {
+        boolean whitePawns = false;
+        boolean blackPawns = false;
+        for (int i = 0; i < types.length; i++){
+            if (types[i] == Type.PAWN){
+                whitePawns |= owners[i] == Player.WHITE;
+                blackPawns |= owners[i] == Player.BLACK;
+            }
+        }
+        return whitePawns && blackPawns;
+    }
+
+    /**
+     * Determines if neither side can possibly deliver checkmate.
+     *
+     * @return
+     */
+    public boolean isInsufficient() {
+        int minorPieces = 0;
+        for (Type type : types){
+            switch (type){
+            case KING:
+                break;
+            case BISHOP:
+            case KNIGHT:
+                minorPieces++;
+                break;
+            default:
+                return false;
+            }
+        }
+        return minorPieces <= 1;
+    }
+
+    /**
+     * Gets the number of possible indexes, including those of impossible
+     * positions.
+     *
+     * @return
+     */
+    public long getNumPositions() {
+        return (long) NUM_PLAYERS << (6 * types.length);
+    }
+
+    /**
+     * Gets the index of the current position of the given Game.
+     *
+     * @param game
+     * @param mirrored
+     *      Whether the Game's colours are swapped relative to this Material
+     *      (in which case the board is flipped vertically, too).
+     * @return
+     */
+    long getIndex(Game game, boolean mirrored) {
+        Player player = game.getCurrentPlayer();
+        if (mirrored){
+            player = player.getOpponent();
+        }
+        long index = player.ordinal();
+
+        int i = 0;
+        while (i < types.length){
+            // Pieces of the same type are listed in square order
+            Player owner = mirrored ? owners[i].getOpponent() : owners[i];
+            long pieces = game.getBitboard(owner, types[i]);
+            if (mirrored){
+                pieces = Long.reverseBytes(pieces);
+            }
+            if (pieces == 0){
+                throw new IllegalArgumentException(
+                        "Position does not match material " + name);
+            }
+            while (pieces != 0){
+                int square = Bitboards.lowestSquare(pieces);
+                pieces = Bitboards.popLowestSquare(pieces);
+                index = (index << 6) | square;
+                i++;
+            }
+        }
+        return index;
+    }
+
+    long getKey() {
+        return key;
+    }
+
+    public int getNumPieces() {
+        return types.length;
+    }
+
+    public Type getType(int piece) {
+        return types[piece];
+    }
+
+    public Player getOwner(int piece) {
+        return owners[piece];
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Material && ((Material) obj).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,139 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Endgame tablebase for a single {@link Material}, read from a file.
+ *
+ * <p>The file holds one entry for every index of the Material, in index
+ * order, each packed into as few bits as the longest distance to mate
+ * needs:
+ *
+ * <pre>
+ *  int     magic number ("CTB1")
+ *  short   length of the Material's name
+ *  byte[]  Material's name, in ASCII
+ *  byte    bits per entry
+ *  long    number of entries
+ *  ...     entries, as a big-endian stream of bits
+ * </pre>
+ *
+ * <p>An entry is 0 for a draw (or an impossible position), or otherwise the
+ * number of plies until mate, plus 1. An odd number of plies means the
+ * player to move wins.
+ *
+ * <p>The file is memory-mapped, and never copied into the heap. A Tablebase
+ * is immutable, so it can be shared between threads.
+ *
+ * @author Dan Bryce
+ */
+public class Tablebase {
+
+    /**
+     * Extension of tablebase files.
+     */
+    public static final String EXTENSION = ".tb";
+
+    static final int MAGIC = 0x43544231;
+
+    /**
+     * Bytes written after the last entry, so that every entry can be read
+     * with a single getLong.
+     */
+    static final int PADDING = Long.BYTES;
+
+    private final Material material;
+
+    private final ByteBuffer data;
+
+    private final int dataStart;
+
+    private final int bitsPerEntry;
+
+    private final int mask;
+
+    private Tablebase(Material material, ByteBuffer data, int dataStart,
+            int bitsPerEntry) {
+        this.material = material;
+        this.data = data;
+        this.dataStart = dataStart;
+        this.bitsPerEntry = bitsPerEntry;
+        mask = (1 << bitsPerEntry) - 1;
+    }
+
+    /**
+     * Opens the tablebase file at the given path.
+     *
+     * @param path
+     * @return
+     * @throws IOException if the file cannot be read, or is not a valid
+     *      tablebase.
+     */
+    public static Tablebase open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)){
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE){
+                throw new IOException("Tablebase too large: " + path);
+            }
+            // The mapping remains valid after the channel is closed
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, size);
+            try {
+                return read(data);
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid tablebase: " + path, e);
+            }
+        }
+    }
+
+    private static Tablebase read(ByteBuffer data) {
+        if (data.getInt() != MAGIC){
+            throw new IllegalArgumentException("Wrong magic number");
+        }
+        byte[] name = new byte[data.getShort()];
+        data.get(name);
+        Material material = Material.parse(
+                new String(name, StandardCharsets.US_ASCII));
+        int bitsPerEntry = data.get();
+        long numEntries = data.getLong();
+        if (bitsPerEntry < 1 || bitsPerEntry > Byte.SIZE){
+            throw new IllegalArgumentException(
+                    "Invalid bits per entry: " + bitsPerEntry);
+        }
+        if (numEntries != material.getNumPositions()){
+            throw new IllegalArgumentException(
+                    "Wrong number of entries: " + numEntries);
+        }
+        long dataSize = (numEntries * bitsPerEntry + Byte.SIZE - 1)
+                / Byte.SIZE;
+        if (data.position() + dataSize + PADDING > data.capacity()){
+            throw new IllegalArgumentException("File is truncated");
+        }
+        return new Tablebase(material, data, data.position(), bitsPerEntry);
+    }
+
+    /**
+     * Gets the entry for the given index.
+     *
+     * @param index
+     * @return 0 for a draw, or otherwise the number of plies until mate,
+     *      plus 1.
+     */
+    int probe(long index) {
+        long bitOffset = index * bitsPerEntry;
+        long bits = data.getLong(dataStart + (int) (bitOffset >>> 3));
+        int shift = Long.SIZE - (int) (bitOffset & 7) - bitsPerEntry;
+        return (int) (bits >>> shift) & mask;
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+}
@@ -0,0 +1,526 @@
+package chess.tablebase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import chess.Bitboards;
+import chess.Game;
+import chess.GamePiece;
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+import chess.MoveList;
+import chess.Moves;
+
+/**
+ * Headless tool for generating endgame tablebases by retrograde analysis.
+ *
+ * <p>Every position with the given material is first set up on a Game, to
+ * find the checkmates and stalemates. Then, in a series of passes, each
+ * position whose result is still unknown is looked up again using the
+ * results of its successors:
+ *
+ * <ul>
+ *  <li>If any move leads to a loss for the opponent, the position is a win,
+ *  with 1 more ply than the quickest such loss.</li>
+ *  <li>If every move leads to a win for the opponent, the position is a
+ *  loss, with 1 more ply than the slowest such win.</li>
+ * </ul>
+ *
+ * <p>Pass N finds every position that is mated in N plies, so once a pass
+ * goes beyond the longest mate found so far, the remaining positions must
+ * be draws. Moves are generated by the Game itself, so the results follow
+ * exactly the same rules as the rest of the program. Captures and
+ * promotions lead to other tablebases, which are generated first.
+ *
+ * <p>Each pass is split between several threads, each with its own Game.
+ *
+ * <p>Usage: the directory in which to write the tablebases, followed by the
+ * material of each one, for example, "tablebases KQvK KRvK KPvK".
+ *
+ * @author Dan Bryce
+ */
+public class TablebaseGenerator {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * Number of tasks each pass is split into, per thread.
+     *
+     * <p>Some parts of the table take much longer than others, so many small
+     * tasks balance the load better than one per thread.
+     */
+    private static final int TASKS_PER_THREAD = 16;
+
+    /*
+     * Codes used for each position during generation. Codes in between mean
+     * the position is mated in (code - 1) plies.
+     */
+    private static final int UNKNOWN = 0;
+    private static final int DRAW = Tablebases.MAX_PLIES_TO_MATE + 2;
+    private static final int INVALID = DRAW + 1;
+
+    /**
+     * The most plies to mate that a code can represent.
+     */
+    private static final int MAX_PLIES = Tablebases.MAX_PLIES_TO_MATE;
+
+    private static final Player[] PLAYERS = Player.values();
+
+    private final Material material;
+
+    /**
+     * Tablebases for every Material that can be reached by a capture or a
+     * promotion.
+     */
+    private final Tablebases tablebases;
+
+    /**
+     * The code of every position, indexed as described by {@link Material}.
+     *
+     * <p>This is shared between threads, but during a pass, each thread only
+     * writes to its own part of the array. Reading a code that another
+     * thread is writing only ever sees an earlier, less complete result.
+     */
+    private final byte[] codes;
+
+    private TablebaseGenerator(Material material, Tablebases tablebases) {
+        this.material = material;
+        this.tablebases = tablebases;
+        codes = new byte[(int) material.getNumPositions()];
+    }
+
+    /**
+     * The entry point of the application.
+     *
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2){
+            System.err.println("Usage: TablebaseGenerator <directory> "
+                    + "<material>...");
+            System.exit(1);
+        }
+        Path dir = Path.of(args[0]);
+        Files.createDirectories(dir);
+        Tablebases tablebases = Tablebases.open(dir);
+        int numThreads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 1; i < args.length; i++){
+            long startTime = System.nanoTime();
+            List<Material> generated = generate(dir, Material.parse(args[i]),
+                    tablebases, numThreads);
+            long elapsed = System.nanoTime() - startTime;
+            if (generated.isEmpty()){
+                System.out.println(args[i] + ": already generated");
+            } else {
+                System.out.println(args[i] + ": generated " + generated
+                        + " in " + (elapsed / (NANOS_PER_SECOND / 1000))
+                        + "ms");
+            }
+        }
+    }
+
+    /**
+     * Generates the tablebase for the given Material, along with any others
+     * that it depends on, and adds them to the given Tablebases.
+     *
+     * @param dir
+     *      Directory in which to write the tablebases.
+     * @param material
+     * @param tablebases
+     *      Tablebases that have already been generated; these are not
+     *      generated again.
+     * @param numThreads
+     * @return The Materials of the tablebases that were generated, in the
+     *      order in which they were generated.
+     * @throws IOException
+     * @throws IllegalArgumentException if tablebases cannot be generated for
+     *      the Material.
+     */
+    public static List<Material> generate(Path dir, Material material,
+            Tablebases tablebases, int numThreads) throws IOException {
+        if (material.getNumPieces() > Material.MAX_PIECES){
+            throw new IllegalArgumentException("Too many pieces: " + material);
+        }
+        if (material.hasPawnsOnBothSides()){
+            // The index has no room for the en passant square
+            throw new IllegalArgumentException(
+                    "Pawns on both sides are not supported: " + material);
+        }
+        if (numThreads < 1){
+            throw new IllegalArgumentException(
+                    "Invalid number of threads: " + numThreads);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+                r -> {
+                    Thread thread = new Thread(r, "Tablebase generator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            List<Material> generated = new ArrayList<>();
+            generate(dir, material, tablebases, executor,
+                    numThreads * TASKS_PER_THREAD, generated);
+            return generated;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void generate(Path dir, Material material,
+            Tablebases tablebases, ExecutorService executor, int numTasks,
+            List<Material> generated) throws IOException {
+        if (tablebases.contains(material)){
+            return;
+        }
+        for (Material successor : material.getSuccessors()){
+            generate(dir, successor, tablebases, executor, numTasks,
+                    generated);
+        }
+
+        TablebaseGenerator generator =
+                new TablebaseGenerator(material, tablebases);
+        int maxPlies = generator.run(executor, numTasks);
+        Path path = dir.resolve(material + Tablebase.EXTENSION);
+        generator.write(path, maxPlies);
+        tablebases.add(Tablebase.open(path));
+        generated.add(material);
+    }
+
+    /**
+     * Works out the code of every position.
+     *
+     * @param executor
+     * @param numTasks
+     * @return The most plies to mate of any position.
+     */
+    private int run(ExecutorService executor, int numTasks) {
+        int maxPlies = runPass(executor, numTasks, 0);
+
+        // Another pass is needed as long as there could be a position that
+        // is mated in 1 more ply than the longest mate found so far
+        for (int pass = 1; pass <= maxPlies + 1; pass++){
+            maxPlies = Math.max(maxPlies, runPass(executor, numTasks, pass));
+        }
+
+        for (int i = 0; i < codes.length; i++){
+            if (codes[i] == UNKNOWN){
+                codes[i] = (byte) DRAW;
+            }
+        }
+        return maxPlies;
+    }
+
+    /**
+     * Runs one pass over every position, split into the given number of
+     * tasks.
+     *
+     * @param executor
+     * @param numTasks
+     * @param pass
+     * @return The most plies to mate of any position found or looked up
+     *      during this pass.
+     */
+    private int runPass(ExecutorService executor, int numTasks, int pass) {
+        int chunkSize = (codes.length + numTasks - 1) / numTasks;
+        List<Future<Integer>> results = new ArrayList<>(numTasks);
+        for (int i = 0; i < codes.length; i += chunkSize){
+            int start = i;
+            int end = Math.min(start + chunkSize, codes.length);
+            Callable<Integer> task = pass == 0
+                    ? () -> new Worker().initialise(start, end)
+                    : () -> new Worker().update(start, end, pass);
+            results.add(executor.submit(task));
+        }
+
+        int maxPlies = 0;
+        for (Future<Integer> result : results){
+            maxPlies = Math.max(maxPlies, getResult(result));
+        }
+        return maxPlies;
+    }
+
+    private static int getResult(Future<Integer> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                    "Interrupted while generating tablebase", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to generate tablebase",
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Writes the tablebase file.
+     *
+     * @param path
+     * @param maxPlies
+     * @throws IOException
+     */
+    private void write(Path path, int maxPlies) throws IOException {
+        int bitsPerEntry = Integer.SIZE
+                - Integer.numberOfLeadingZeros(maxPlies + 1);
+        byte[] name = material.toString().getBytes(StandardCharsets.US_ASCII);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))){
+            out.writeInt(Tablebase.MAGIC);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeByte(bitsPerEntry);
+            out.writeLong(codes.length);
+
+            long bits = 0;
+            int numBits = 0;
+            for (byte code : codes){
+                int value = Byte.toUnsignedInt(code);
+                if (value == DRAW || value == INVALID){
+                    value = Tablebases.DRAW;
+                }
+                bits = (bits << bitsPerEntry) | value;
+                numBits += bitsPerEntry;
+                while (numBits >= Byte.SIZE){
+                    numBits -= Byte.SIZE;
+                    out.writeByte((int) (bits >>> numBits));
+                }
+            }
+            if (numBits > 0){
+                out.writeByte((int) (bits << (Byte.SIZE - numBits)));
+            }
+            out.write(new byte[Tablebase.PADDING]);
+        }
+    }
+
+    /**
+     * Looks up positions on a Game of its own.
+     */
+    private class Worker {
+
+        private final Game game = new Game();
+
+        private final MoveList moves = new MoveList();
+
+        /**
+         * The pieces of the current position, in index order.
+         */
+        private final GamePiece[] pieces =
+                new GamePiece[material.getNumPieces()];
+
+        private final int[] squares = new int[material.getNumPieces()];
+
+        /**
+         * The most plies to mate of any position found or looked up so far.
+         */
+        private int maxPlies;
+
+        Worker() {
+            // Pieces are added and removed for each position
+            game.clear();
+        }
+
+        /**
+         * Finds the impossible positions, and those that are already over.
+         *
+         * @param start
+         * @param end
+         * @return The most plies to mate found.
+         */
+        int initialise(int start, int end) {
+            for (int index = start; index < end; index++){
+                if (!setUp(index)){
+                    codes[index] = (byte) INVALID;
+                    continue;
+                }
+                game.getValidMoves(moves);
+                if (moves.isEmpty()){
+                    boolean inCheck =
+                            game.isPlayerInCheck(game.getCurrentPlayer());
+                    codes[index] = (byte) (inCheck ? toCode(0) : DRAW);
+                }
+            }
+            return maxPlies;
+        }
+
+        /**
+         * Looks up every position whose result is not yet known.
+         *
+         * @param start
+         * @param end
+         * @param pass
+         * @return The most plies to mate found or looked up.
+         */
+        int update(int start, int end, int pass) {
+            for (int index = start; index < end; index++){
+                if (codes[index] == UNKNOWN){
+                    setUp(index);
+                    codes[index] = (byte) evaluate(pass);
+                }
+            }
+            return maxPlies;
+        }
+
+        /**
+         * Works out the code of the current position from those of its
+         * successors.
+         *
+         * @param pass
+         * @return
+         */
+        private int evaluate(int pass) {
+            game.getValidMoves(moves);
+            int quickestLoss = Integer.MAX_VALUE;
+            int slowestWin = -1;
+            boolean allWins = true;
+
+            for (int i = 0; i < moves.size(); i++){
+                int code = getSuccessorCode(moves.get(i));
+                if (code == UNKNOWN || code == DRAW){
+                    allWins = false;
+                    continue;
+                }
+                int plies = code - 1;
+                if ((plies & 1) == 0){
+                    quickestLoss = Math.min(quickestLoss, plies);
+                    allWins = false;
+                } else {
+                    slowestWin = Math.max(slowestWin, plies);
+                }
+            }
+
+            // A loss that was only just found might not be the quickest, if
+            // a quicker one is still to be found in this pass
+            if (quickestLoss < pass){
+                return toCode(quickestLoss + 1);
+            }
+            if (allWins){
+                return toCode(slowestWin + 1);
+            }
+            return UNKNOWN;
+        }
+
+        /**
+         * Gets the code of the position after the given move.
+         *
+         * @param move
+         * @return
+         */
+        private int getSuccessorCode(int move) {
+            game.makeMove(move);
+            game.flipTurn();
+            int code;
+            if (Moves.isCapture(move) || Moves.isPromotion(move)){
+                int result = tablebases.probe(game);
+                if (result == Tablebases.NOT_FOUND){
+                    throw new IllegalStateException(
+                            "Missing tablebase for " + game.toFen());
+                }
+                code = result == Tablebases.DRAW ? DRAW : result;
+                if (code != DRAW){
+                    maxPlies = Math.max(maxPlies, code - 1);
+                }
+            } else {
+                int index = (int) material.getIndex(game, false);
+                code = Byte.toUnsignedInt(codes[index]);
+            }
+            game.flipTurn();
+            game.unmakeMove(move);
+            return code;
+        }
+
+        private int toCode(int plies) {
+            if (plies > MAX_PLIES){
+                throw new IllegalStateException(
+                        "Mate too long to store: " + plies + " plies");
+            }
+            maxPlies = Math.max(maxPlies, plies);
+            return plies + 1;
+        }
+
+        /**
+         * Sets up the position with the given index.
+         *
+         * @param index
+         * @return False if the position is impossible, or does not have the
+         *      pieces in index order.
+         */
+        private boolean setUp(long index) {
+            for (GamePiece piece : pieces){
+                if (piece != null){
+                    game.removePiece(piece);
+                }
+            }
+
+            for (int i = squares.length - 1; i >= 0; i--){
+                squares[i] = (int) (index & (Bitboards.NUM_SQUARES - 1));
+                index >>>= 6;
+            }
+            Player player = PLAYERS[(int) index];
+
+            long occupied = 0;
+            for (int i = 0; i < squares.length; i++){
+                long bit = Bitboards.bit(squares[i]);
+                Type type = material.getType(i);
+                int y = Bitboards.getY(squares[i]);
+                if ((occupied & bit) != 0){
+                    return clear();
+                }
+                if (i > 0 && type == material.getType(i - 1)
+                        && material.getOwner(i) == material.getOwner(i - 1)
+                        && squares[i] < squares[i - 1]){
+                    // The same position appears with the pieces swapped
+                    return clear();
+                }
+                if (type == Type.PAWN
+                        && (y == 0 || y == Game.SQUARES_PER_SIDE - 1)){
+                    return clear();
+                }
+                occupied |= bit;
+            }
+
+            for (int i = 0; i < squares.length; i++){
+                Player owner = material.getOwner(i);
+                Type type = material.getType(i);
+                int y = Bitboards.getY(squares[i]);
+                GamePiece piece = GamePiece.create(type,
+                        Bitboards.getX(squares[i]), y, owner);
+                int pawnY = owner == Player.WHITE
+                        ? Game.SQUARES_PER_SIDE - 2
+                        : 1;
+                piece.setMoved(type != Type.PAWN || y != pawnY);
+                game.addPiece(piece);
+                pieces[i] = piece;
+            }
+            if (game.getCurrentPlayer() != player){
+                game.flipTurn();
+            }
+
+            // The player who just moved cannot be in check
+            return !game.isPlayerInCheck(player.getOpponent());
+        }
+
+        private boolean clear() {
+            for (int i = 0; i < pieces.length; i++){
+                pieces[i] = null;
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,270 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import chess.Bitboards;
+import chess.Game;
+import chess.GamePiece.Player;
+import chess.GamePiece.Type;
+import chess.MoveList;
+import chess.Moves;
+
+/**
+ * A collection of endgame tablebases, which gives the exact result of any
+ * position with the right material.
+ *
+ * <p>A tablebase for one Material also covers the same Material with the
+ * colours swapped, so, for example, "KQvK" is enough for positions where
+ * either side has the Queen. Positions where neither side has enough
+ * material to deliver checkmate are always drawn, and need no tablebase.
+ *
+ * <p>Results are found by distance to mate, with perfect play by both
+ * sides. They ignore the 50-move rule and repetitions, and positions where
+ * castling is still possible are never found.
+ *
+ * <p>Tablebases can be probed by several threads at once. New tablebases
+ * can be added at any time, and are seen by subsequent probes.
+ *
+ * @author Dan Bryce
+ */
+public class Tablebases {
+
+    /**
+     * Result of a probe for a position that is not in any tablebase.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Result of a probe for a drawn position.
+     */
+    public static final int DRAW = 0;
+
+    /**
+     * The most plies to mate of any position that can be found.
+     */
+    public static final int MAX_PLIES_TO_MATE = 252;
+
+    /**
+     * The tablebases, replaced whenever one is added.
+     */
+    private volatile Tablebase[] tables = new Tablebase[0];
+
+    /**
+     * The key of each tablebase's Material (see
+     * {@link Material#getKey(Game, boolean)}).
+     */
+    private volatile long[] keys = new long[0];
+
+    /**
+     * The most pieces in any position that can be found.
+     *
+     * <p>With 3 pieces or fewer, insufficient material is always found.
+     */
+    private volatile int maxPieces = 3;
+
+    /**
+     * Opens every tablebase file in the given directory.
+     *
+     * @param dir
+     * @return
+     * @throws IOException
+     */
+    public static Tablebases open(Path dir) throws IOException {
+        Tablebases tablebases = new Tablebases();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+                "*" + Tablebase.EXTENSION)){
+            for (Path file : files){
+                tablebases.add(Tablebase.open(file));
+            }
+        }
+        return tablebases;
+    }
+
+    /**
+     * Adds a tablebase to this collection.
+     *
+     * @param table
+     */
+    public synchronized void add(Tablebase table) {
+        Material material = table.getMaterial();
+        Tablebase[] newTables = Arrays.copyOf(tables, tables.length + 1);
+        long[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+        newTables[tables.length] = table;
+        newKeys[keys.length] = material.getKey();
+
+        // Probes read the tables before the keys, so they never see a table
+        // without its key
+        keys = newKeys;
+        tables = newTables;
+        maxPieces = Math.max(maxPieces, material.getNumPieces());
+    }
+
+    /**
+     * Determines if positions with the given Material can be found, either
+     * in a tablebase or because the material is insufficient.
+     *
+     * @param material
+     * @return
+     */
+    public boolean contains(Material material) {
+        return material.isInsufficient()
+                || findTable(material.getKey()) != null
+                || findTable(material.mirror().getKey()) != null;
+    }
+
+    /**
+     * Looks up the current position of the given Game.
+     *
+     * @param game
+     * @return {@link #NOT_FOUND}, {@link #DRAW}, or otherwise the number of
+     *      plies until mate, plus 1. An odd number of plies means the player
+     *      to move wins (see {@link #isWin}).
+     */
+    public int probe(Game game) {
+        long occupied = game.getOccupied();
+        if (Long.bitCount(occupied) > maxPieces
+                || game.getCastlingRights() != 0
+                || game.getEnPassantSquare() != Game.NO_SQUARE){
+            return NOT_FOUND;
+        }
+        if (isInsufficientMaterial(game)){
+            return DRAW;
+        }
+
+        Tablebase table = findTable(Material.getKey(game, false));
+        if (table != null){
+            return table.probe(table.getMaterial().getIndex(game, false));
+        }
+        table = findTable(Material.getKey(game, true));
+        if (table != null){
+            return table.probe(table.getMaterial().getIndex(game, true));
+        }
+        return NOT_FOUND;
+    }
+
+    private Tablebase findTable(long key) {
+        Tablebase[] tables = this.tables;
+        long[] keys = this.keys;
+        for (int i = 0; i < tables.length; i++){
+            if (keys[i] == key){
+                return tables[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determines if the given Game has only the Kings and at most one
+     * Bishop or Knight, so that neither side can deliver checkmate.
+     *
+     * @param game
+     * @return
+     */
+    private static boolean isInsufficientMaterial(Game game) {
+        long minorPieces = 0;
+        long kings = 0;
+        for (Player player : Player.values()){
+            minorPieces |= game.getBitboard(player, Type.BISHOP)
+                    | game.getBitboard(player, Type.KNIGHT);
+            kings |= game.getBitboard(player, Type.KING);
+        }
+        long others = game.getOccupied() & ~kings & ~minorPieces;
+        return others == 0 && Bitboards.popLowestSquare(minorPieces) == 0;
+    }
+
+    /**
+     * Chooses the best move for the current player, according to the
+     * tablebases.
+     *
+     * <p>The winning side plays the quickest mate, and the losing side
+     * resists for as long as possible.
+     *
+     * @param game
+     * @return The move, or NONE if the position is not in the tablebases.
+     */
+    public int chooseMove(Game game) {
+        if (probe(game) == NOT_FOUND){
+            return Moves.NONE;
+        }
+
+        MoveList moves = new MoveList();
+        game.getValidMoves(moves);
+        int bestMove = Moves.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++){
+            int move = moves.get(i);
+            game.makeMove(move);
+            game.flipTurn();
+            int result = probe(game);
+            game.flipTurn();
+            game.unmakeMove(move);
+
+            if (result == NOT_FOUND){
+                continue;
+            }
+            int rank = rankReply(result);
+            if (rank > bestRank){
+                bestRank = rank;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Ranks a move by the result of the position it leads to, from the point
+     * of view of the player to move in that position.
+     *
+     * @param result
+     * @return A higher value for a better move.
+     */
+    private static int rankReply(int result) {
+        if (result == DRAW){
+            return 0;
+        }
+        int plies = getPliesToMate(result);
+        // The opponent being mated soonest is best, and the opponent mating
+        // us soonest is worst
+        return isWin(result) ? plies - Integer.MAX_VALUE / 2
+                : Integer.MAX_VALUE / 2 - plies;
+    }
+
+    /**
+     * Determines if a probe result means that the player to move wins.
+     *
+     * @param result
+     * @return
+     */
+    public static boolean isWin(int result) {
+        return result > DRAW && (getPliesToMate(result) & 1) == 1;
+    }
+
+    /**
+     * Determines if a probe result means that the player to move loses.
+     *
+     * @param result
+     * @return
+     */
+    public static boolean isLoss(int result) {
+        return result > DRAW && (getPliesToMate(result) & 1) == 0;
+    }
+
+    /**
+     * Gets the number of plies until mate from a win or loss probe result.
+     *
+     * @param result
+     * @return
+     */
+    public static int getPliesToMate(int result) {
+        return result - 1;
+    }
+
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+}
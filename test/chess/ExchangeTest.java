@@ -0,0 +1,107 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import chess.GamePiece.Type;
+
+/**
+ * Tests for the static exchange evaluation ({@link Game#getExchangeValue}
+ * and {@link Game#isHanging}).
+ *
+ * @author Dan Bryce
+ */
+public class ExchangeTest {
+
+    private static final int PAWN = PieceSquareTables.getPieceValue(Type.PAWN);
+    private static final int KNIGHT =
+            PieceSquareTables.getPieceValue(Type.KNIGHT);
+    private static final int BISHOP =
+            PieceSquareTables.getPieceValue(Type.BISHOP);
+    private static final int ROOK = PieceSquareTables.getPieceValue(Type.ROOK);
+    private static final int QUEEN =
+            PieceSquareTables.getPieceValue(Type.QUEEN);
+
+    @Test
+    public void undefendedPiece() {
+        assertExchange("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1",
+                "e1", "e5", null, PAWN);
+    }
+
+    @Test
+    public void defendedPiece() {
+        assertExchange("4k3/2p5/3n4/4P3/8/8/8/4K3 w - - 0 1",
+                "e5", "d6", null, KNIGHT - PAWN);
+        assertExchange("4k3/3p4/4p3/8/8/8/4Q3/4K3 w - - 0 1",
+                "e2", "e6", null, PAWN - QUEEN);
+    }
+
+    @Test
+    public void longExchange() {
+        // Every piece joins in; Black stops before losing the Queen
+        assertExchange("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3"
+                + " w - - 0 1", "d3", "e5", null, PAWN - KNIGHT);
+    }
+
+    @Test
+    public void xRay() {
+        assertExchange("4k3/4r3/8/4p3/8/8/4R3/5K2 w - - 0 1",
+                "e2", "e5", null, PAWN - ROOK);
+        assertExchange("4k3/4r3/8/4p3/8/8/4R3/4RK2 w - - 0 1",
+                "e2", "e5", null, PAWN);
+    }
+
+    @Test
+    public void promotions() {
+        assertExchange("4k3/P7/8/8/8/8/8/4K3 w - - 0 1",
+                "a7", "a8", Type.QUEEN, QUEEN - PAWN);
+        assertExchange("1r2k3/P7/8/8/8/8/8/4K3 w - - 0 1",
+                "a7", "a8", Type.QUEEN, -PAWN);
+        assertExchange("1r2k3/P7/8/8/8/8/8/4K3 w - - 0 1",
+                "a7", "b8", Type.QUEEN, ROOK + QUEEN - PAWN);
+    }
+
+    @Test
+    public void quietMoves() {
+        assertExchange("4k3/8/3p4/8/8/3N4/8/4K3 w - - 0 1",
+                "d3", "e5", null, -KNIGHT);
+        assertExchange("4k3/8/3p4/8/8/3N4/8/4K3 w - - 0 1",
+                "d3", "f4", null, 0);
+    }
+
+    @Test
+    public void hanging() {
+        assertHanging("4k3/8/3p4/4N3/8/8/8/4K3 w - - 0 1", "e5", true);
+        // Defended, but worth more than the Pawn attacking it
+        assertHanging("4k3/8/3p4/4N3/3P4/8/8/4K3 w - - 0 1", "e5", true);
+        assertHanging("4k3/4r3/8/4B3/8/8/8/4K3 w - - 0 1", "e5", true);
+        assertHanging("4k3/4r3/8/4B3/3P4/8/8/4K3 w - - 0 1", "e5", false);
+        // Only the King attacks it, and it is defended
+        assertHanging("8/8/8/4k3/4B3/3P4/8/4K3 w - - 0 1", "e4", false);
+        assertHanging("8/8/8/4k3/4B3/8/8/4K3 w - - 0 1", "e4", true);
+    }
+
+    private static void assertExchange(String fen, String from, String to,
+            Type promotion, int expected) {
+        Game game = new Game(fen);
+        int move = game.findLegalMove(Moves.parseSquare(from, 0),
+                Moves.parseSquare(to, 0), promotion);
+        assertEquals(expected, game.getExchangeValue(move),
+                fen + " " + from + to);
+    }
+
+    private static void assertHanging(String fen, String square,
+            boolean expected) {
+        Game game = new Game(fen);
+        boolean hanging = game.isHanging(Moves.parseSquare(square, 0));
+        if (expected){
+            assertTrue(hanging, fen);
+        } else {
+            assertFalse(hanging, fen);
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link Fen}.
+ *
+ * @author Dan Bryce
+ */
+public class FenTest {
+
+    private static final String[] POSITIONS = {
+        Fen.START_POSITION,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+        "4k3/8/8/8/8/8/8/4K3 b - - 99 120"
+    };
+
+    @Test
+    public void roundTrip() {
+        for (String fen : POSITIONS){
+            assertEquals(fen, new Game(fen).toFen());
+        }
+    }
+
+    @Test
+    public void missingMoveCounters() {
+        assertEquals("4k3/8/8/8/8/8/8/4K3 w - - 0 1",
+                new Game("4k3/8/8/8/8/8/8/4K3 w - -").toFen());
+    }
+
+    @Test
+    public void unusableRightsAreDropped() {
+        // No Rook on h1, and no Pawn that could capture en passant
+        assertEquals("r3k2r/8/8/3p4/8/8/8/R3K3 w Qkq - 0 1",
+                new Game("r3k2r/8/8/3p4/8/8/8/R3K3 w KQkq d6 0 1").toFen());
+    }
+
+    @Test
+    public void rejectsMalformedText() {
+        assertInvalid("");
+        assertInvalid("4k3/8/8/8/8/8/8/4K3");
+        assertInvalid("4k3/8/8/8/8/8/8/4K3 x - - 0 1");
+        assertInvalid("4k3/8/8/8/8/8/8/4K4 w - - 0 1");
+        assertInvalid("4k3/8/8/8/8/8/4K3 w - - 0 1");
+        assertInvalid("4k3/8/8/8/8/8/8/4K3 w X - 0 1");
+        assertInvalid("4k3/8/8/8/8/8/8/4K3 w - - 0 1 extra");
+    }
+
+    @Test
+    public void rejectsIllegalPositions() {
+        // Wrong number of Kings
+        assertInvalid("8/8/8/8/8/8/8/4K3 w - - 0 1");
+        assertInvalid("4k3/8/8/8/8/8/8/3KK3 w - - 0 1");
+        assertInvalid("8/8/8/8/8/8/8/8 w - - 0 1");
+
+        // Pawns on the first or last rank
+        assertInvalid("P3k3/8/8/8/8/8/8/4K3 w - - 0 1");
+        assertInvalid("4k3/8/8/8/8/8/8/p3K3 w - - 0 1");
+
+        // The player who has just moved is in check
+        assertInvalid("4k3/4Q3/8/8/8/8/8/4K3 w - - 0 1");
+        assertInvalid("4k3/8/8/8/8/8/4q3/4K3 b - - 0 1");
+    }
+
+    @Test
+    public void rejectsHalfmoveClockTooLarge() {
+        assertInvalid("4k3/8/8/8/8/8/8/4K3 w - - 2000000 1");
+        assertInvalid("4k3/8/8/8/8/8/8/4K3 w - - "
+                + (Game.MAX_STORED_HALFMOVE_CLOCK + 1) + " 1");
+    }
+
+    @Test
+    public void largeHalfmoveClockSurvivesMoves() {
+        String fen = "4k3/8/8/8/8/8/8/4K3 w - - "
+                + (Game.MAX_STORED_HALFMOVE_CLOCK - 1) + " 1";
+        Game game = new Game(fen);
+
+        int first = findMove(game, "e1", "d1");
+        game.makeMove(first);
+        game.flipTurn();
+        assertEquals(Game.MAX_STORED_HALFMOVE_CLOCK,
+                game.getHalfmoveClock());
+
+        int second = findMove(game, "e8", "d8");
+        game.makeMove(second);
+        game.flipTurn();
+        assertEquals(Game.MAX_STORED_HALFMOVE_CLOCK,
+                game.getHalfmoveClock());
+
+        game.flipTurn();
+        game.unmakeMove(second);
+        game.flipTurn();
+        game.unmakeMove(first);
+        assertEquals(fen, game.toFen());
+    }
+
+    private static int findMove(Game game, String from, String to) {
+        return game.findLegalMove(Moves.parseSquare(from, 0),
+                Moves.parseSquare(to, 0), null);
+    }
+
+    private static void assertInvalid(String fen) {
+        assertThrows(IllegalArgumentException.class, () -> new Game(fen),
+                fen);
+    }
+
+}
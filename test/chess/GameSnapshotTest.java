@@ -0,0 +1,55 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import chess.GamePiece.Type;
+
+/**
+ * Tests for {@link GameSnapshot}.
+ *
+ * @author Dan Bryce
+ */
+public class GameSnapshotTest {
+
+    @Test
+    public void castleByClickingTheRook() {
+        Game game = new Game("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        GameSnapshot snapshot = new GameSnapshot(game);
+        int king = square("e1");
+
+        long targets = snapshot.getLegalDestinations(king);
+        assertTrue((targets & Bitboards.bit(square("h1"))) != 0);
+        assertTrue((targets & Bitboards.bit(square("a1"))) != 0);
+        assertEquals(0, targets & Bitboards.bit(square("g1")));
+        assertEquals(0, targets & Bitboards.bit(square("c1")));
+
+        int move = snapshot.findLegalMove(king, square("h1"), null);
+        assertTrue(Moves.isCastle(move));
+        assertEquals(square("g1"), Moves.getTo(move));
+        assertEquals(Moves.NONE,
+                snapshot.findLegalMove(king, square("g1"), null));
+
+        // Ordinary moves are made by clicking their destination
+        assertEquals(game.findLegalMove(king, square("f1"), null),
+                snapshot.findLegalMove(king, square("f1"), null));
+    }
+
+    @Test
+    public void promotions() {
+        GameSnapshot snapshot = new GameSnapshot(
+                new Game("4k3/P7/8/8/8/8/8/4K3 w - - 0 1"));
+        int from = square("a7");
+        int to = square("a8");
+        assertTrue(snapshot.isPromotion(from, to));
+        int move = snapshot.findLegalMove(from, to, Type.KNIGHT);
+        assertEquals(Type.KNIGHT, Moves.getPromotion(move));
+    }
+
+    private static int square(String name) {
+        return Moves.parseSquare(name, 0);
+    }
+
+}
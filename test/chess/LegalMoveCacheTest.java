@@ -0,0 +1,80 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the legal moves cached by {@link Game} always match a fresh
+ * generation, as moves are made, undone and redone.
+ *
+ * @author Dan Bryce
+ */
+public class LegalMoveCacheTest {
+
+    private static final int NUM_GAMES = 50;
+
+    private static final int MAX_MOVES = 120;
+
+    @Test
+    public void cacheMatchesFreshGeneration() {
+        Random random = new Random(12345);
+        MoveList fresh = new MoveList();
+        for (int i = 0; i < NUM_GAMES; i++){
+            Game game = new Game();
+            for (int j = 0; j < MAX_MOVES; j++){
+                MoveList cached = game.getLegalMoves();
+                game.getValidMoves(fresh);
+                assertArrayEquals(sorted(fresh), sorted(cached));
+                checkIndexes(game, fresh);
+                if (cached.isEmpty()){
+                    break;
+                }
+
+                game.play(cached.get(random.nextInt(cached.size())));
+                if (random.nextInt(4) == 0){
+                    game.undo();
+                    game.redo();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the per-square lookups against the given legal moves.
+     *
+     * @param game
+     * @param moves
+     */
+    private static void checkIndexes(Game game, MoveList moves) {
+        long[] destinations = new long[Bitboards.NUM_SQUARES];
+        long[] sources = new long[Bitboards.NUM_SQUARES];
+        for (int i = 0; i < moves.size(); i++){
+            int move = moves.get(i);
+            destinations[Moves.getFrom(move)] |=
+                    Bitboards.bit(Moves.getTo(move));
+            sources[Moves.getTo(move)] |= Bitboards.bit(Moves.getFrom(move));
+            assertEquals(move, game.findLegalMove(Moves.getFrom(move),
+                    Moves.getTo(move), Moves.getPromotion(move)));
+        }
+        for (int square = 0; square < Bitboards.NUM_SQUARES; square++){
+            assertEquals(destinations[square],
+                    game.getLegalDestinations(square));
+            assertEquals(sources[square], game.getLegalSources(square));
+        }
+    }
+
+    private static int[] sorted(MoveList moves) {
+        int[] array = new int[moves.size()];
+        for (int i = 0; i < array.length; i++){
+            array[i] = moves.get(i);
+        }
+        Arrays.sort(array);
+        return array;
+    }
+
+}
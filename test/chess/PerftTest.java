@@ -0,0 +1,64 @@
+package chess;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the move generator against positions with known perft results.
+ *
+ * <p>The depths are kept low so that the tests run quickly; {@link Perft}
+ * itself searches deeper.
+ *
+ * @author Dan Bryce
+ */
+public class PerftTest {
+
+    @Test
+    public void startingPosition() {
+        assertPerft(Fen.START_POSITION, 20L, 400L, 8902L, 197281L);
+    }
+
+    @Test
+    public void kiwipete() {
+        assertPerft("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R"
+                + " w KQkq - 0 1", 48L, 2039L, 97862L);
+    }
+
+    @Test
+    public void rookAndPawnsEndgame() {
+        assertPerft("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                14L, 191L, 2812L, 43238L);
+    }
+
+    @Test
+    public void promotionsAndChecks() {
+        assertPerft("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1"
+                + " w kq - 0 1", 6L, 264L, 9467L);
+    }
+
+    @Test
+    public void discoveredChecks() {
+        assertPerft("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R"
+                + " w KQ - 1 8", 44L, 1486L, 62379L);
+    }
+
+    /**
+     * Checks the node count at each depth, starting from depth 1.
+     *
+     * @param fen
+     * @param expected
+     */
+    private static void assertPerft(String fen, long... expected) {
+        Game game = new Game(fen);
+        String before = game.toFen();
+        for (int i = 0; i < expected.length; i++){
+            int depth = i + 1;
+            assertEquals(expected[i], Perft.perft(game, depth),
+                    "depth " + depth);
+        }
+        // Every move should have been unmade
+        assertEquals(before, game.toFen());
+    }
+
+}
@@ -0,0 +1,82 @@
+package chess.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import chess.Game;
+import chess.Moves;
+import chess.tablebase.Tablebases;
+
+/**
+ * Tests for {@link Engine}.
+ *
+ * @author Dan Bryce
+ */
+public class EngineTest {
+
+    @Test
+    public void stopBetweenSearchesDoesNotAffectNextSearch() {
+        Engine engine = new Engine(new TranspositionTable(1), 3);
+        try {
+            Game game = new Game();
+            engine.search(game, SearchLimits.depth(2));
+            engine.stop();
+            SearchResult result = engine.search(game, SearchLimits.depth(4));
+            assertEquals(4, result.getDepth());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void stopEndsInfiniteSearch() throws Exception {
+        Engine engine = new Engine(new TranspositionTable(1), 2);
+        try {
+            Game game = new Game();
+            CompletableFuture<SearchResult> result = CompletableFuture
+                    .supplyAsync(() -> engine.search(game,
+                            SearchLimits.infinite()));
+            Thread.sleep(200);
+            engine.stop();
+            SearchResult searchResult = result.get(10, TimeUnit.SECONDS);
+            assertNotEquals(Moves.NONE, searchResult.getMove());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void findsMateInOne() {
+        Engine engine = new Engine(new TranspositionTable(1));
+        try {
+            Game game = new Game("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+            SearchResult result = engine.search(game, SearchLimits.depth(3));
+            assertEquals("a1a8", Moves.toString(result.getMove()));
+            assertTrue(result.isMate());
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void tablebaseScoresAreMateScores() {
+        // The longest possible tablebase mates, found at the deepest ply;
+        // probe results are the plies to mate + 1
+        int win = Tablebases.MAX_PLIES_TO_MATE;
+        int loss = Tablebases.MAX_PLIES_TO_MATE + 1;
+        assertTrue(Tablebases.isWin(win) && Tablebases.isLoss(loss));
+        int winScore = Searcher.getTablebaseScore(win, Searcher.MAX_PLY - 1);
+        int lossScore = Searcher.getTablebaseScore(loss,
+                Searcher.MAX_PLY - 1);
+        assertTrue(winScore > 0 && Searcher.isMateScore(winScore));
+        assertTrue(lossScore < 0 && Searcher.isMateScore(lossScore));
+        assertTrue(winScore < Searcher.MATE);
+    }
+
+}
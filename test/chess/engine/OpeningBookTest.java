@@ -0,0 +1,198 @@
+package chess.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import chess.Fen;
+import chess.Game;
+import chess.GamePiece.Type;
+import chess.Moves;
+
+/**
+ * Tests for {@link OpeningBook}.
+ *
+ * <p>Apart from {@link #standardKeyTable}, these use a key table of their
+ * own, so they check how keys and moves are encoded, not the standard
+ * table itself.
+ *
+ * @author Dan Bryce
+ */
+public class OpeningBookTest {
+
+    private static final int NUM_KEYS = 781;
+
+    private static final String CASTLING =
+            "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1";
+
+    private static final String PROMOTION = "4k3/P7/8/8/8/8/8/4K3 w - - 0 1";
+
+    /*
+     * Polyglot moves: source and destination squares as row * 8 + file,
+     * where row 0 is White's side.
+     */
+    private static final short E2E4 = (short) ((12 << 6) | 28);
+    private static final short E2E5 = (short) ((12 << 6) | 36);
+    private static final short D2D4 = (short) ((11 << 6) | 27);
+    private static final short E1H1 = (short) ((4 << 6) | 7);
+    private static final short A7A8Q = (short) ((4 << 12) | (48 << 6) | 56);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void keyLayout() {
+        Game start = new Game();
+
+        // White Pawn on e2: kind 1, row 1, file 4
+        assertEquals(1, OpeningBook.getKey(start, key(64 + 12)));
+
+        // Black King on e8: kind 10, row 7, file 4
+        assertEquals(1, OpeningBook.getKey(start, key(10 * 64 + 60)));
+
+        // Castling rights, in the order KQkq
+        assertEquals(1, OpeningBook.getKey(start, key(768)));
+        assertEquals(1, OpeningBook.getKey(start, key(771)));
+
+        // White to move
+        assertEquals(1, OpeningBook.getKey(start, key(780)));
+        assertEquals(0, OpeningBook.getKey(
+                new Game("4k3/8/8/8/8/8/8/4K3 b - - 0 1"), key(780)));
+
+        // En passant on the f-file, only when a capture is possible
+        assertEquals(1, OpeningBook.getKey(new Game(
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR"
+                        + " w KQkq f6 0 3"),
+                key(772 + 5)));
+        assertEquals(0, OpeningBook.getKey(new Game(
+                "rnbqkbnr/ppppp1pp/8/5p2/8/8/PPPPPPPP/RNBQKBNR"
+                        + " w KQkq f6 0 2"),
+                key(772 + 5)));
+    }
+
+    @Test
+    public void choosesBookMoves() {
+        long[] keys = randomKeys();
+        Game start = new Game();
+        Game castling = new Game(CASTLING);
+        Game promotion = new Game(PROMOTION);
+
+        List<long[]> entries = new ArrayList<>();
+        long startKey = OpeningBook.getKey(start, keys);
+        entries.add(new long[] { startKey, E2E4, 1 });
+        entries.add(new long[] { startKey, D2D4, 0 });
+        entries.add(new long[] { startKey, E2E5, 100 });
+        entries.add(new long[] {
+                OpeningBook.getKey(castling, keys), E1H1, 1 });
+        entries.add(new long[] {
+                OpeningBook.getKey(promotion, keys), A7A8Q, 1 });
+        OpeningBook book = new OpeningBook(toBook(entries), keys);
+
+        // The illegal move and the move with no weight are never chosen
+        for (int i = 0; i < 20; i++){
+            assertEquals(findMove(start, "e2", "e4", null),
+                    book.chooseMove(start));
+        }
+        assertEquals(findMove(castling, "e1", "g1", null),
+                book.chooseMove(castling));
+        assertEquals(findMove(promotion, "a7", "a8", Type.QUEEN),
+                book.chooseMove(promotion));
+        assertEquals(Moves.NONE, book.chooseMove(
+                new Game("4k3/8/8/8/8/8/8/4K3 w - - 0 1")));
+    }
+
+    @Test
+    public void rejectsWrongKeyTable() throws IOException {
+        Path keysPath = dir.resolve("keys.bin");
+        writeKeys(keysPath, randomKeys());
+        Path bookPath = dir.resolve("book.bin");
+        Files.write(bookPath, new byte[0]);
+
+        assertThrows(IOException.class,
+                () -> OpeningBook.open(bookPath, keysPath));
+    }
+
+    /**
+     * Checks the standard key table, if it is on the class path, against a
+     * book containing a move for the starting position.
+     */
+    @Test
+    public void standardKeyTable() throws IOException {
+        assumeTrue(OpeningBook.class.getResource("polyglot-random64.bin")
+                != null, "Polyglot key table not on the class path");
+
+        // Polyglot key of the starting position
+        List<long[]> entries = new ArrayList<>();
+        entries.add(new long[] { 0x463B96181691FC9CL, E2E4, 1 });
+        Path bookPath = dir.resolve("book.bin");
+        Files.write(bookPath, toBook(entries).array());
+
+        OpeningBook book = OpeningBook.open(bookPath);
+        Game game = new Game(Fen.START_POSITION);
+        assertEquals(findMove(game, "e2", "e4", null),
+                book.chooseMove(game));
+    }
+
+    private static long[] key(int index) {
+        long[] keys = new long[NUM_KEYS];
+        keys[index] = 1;
+        return keys;
+    }
+
+    private static long[] randomKeys() {
+        Random random = new Random(1);
+        long[] keys = new long[NUM_KEYS];
+        for (int i = 0; i < keys.length; i++){
+            keys[i] = random.nextLong();
+        }
+        return keys;
+    }
+
+    /**
+     * Creates the entries of a book.
+     *
+     * @param entries
+     *      Key, Polyglot move and weight of each entry.
+     * @return
+     */
+    private static ByteBuffer toBook(List<long[]> entries) {
+        entries.sort((a, b) -> Long.compareUnsigned(a[0], b[0]));
+        ByteBuffer buffer = ByteBuffer.allocate(entries.size() * 16);
+        for (long[] entry : entries){
+            buffer.putLong(entry[0]);
+            buffer.putShort((short) entry[1]);
+            buffer.putShort((short) entry[2]);
+            buffer.putInt(0);
+        }
+        return buffer;
+    }
+
+    private static void writeKeys(Path path, long[] keys)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                Files.newOutputStream(path))){
+            for (long key : keys){
+                out.writeLong(key);
+            }
+        }
+    }
+
+    private static int findMove(Game game, String from, String to,
+            Type promotion) {
+        return game.findLegalMove(Moves.parseSquare(from, 0),
+                Moves.parseSquare(to, 0), promotion);
+    }
+
+}
@@ -0,0 +1,93 @@
+package chess.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import chess.Moves;
+
+/**
+ * Tests for {@link TranspositionTable}.
+ *
+ * @author Dan Bryce
+ */
+public class TranspositionTableTest {
+
+    private static final long HASH = 0x123456789abcdefL;
+
+    @Test
+    public void storedEntryIsFound() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = Moves.create(12, 28, 0);
+        table.store(HASH, move, -250, 7, TranspositionTable.LOWER);
+
+        long data = table.probe(HASH);
+        assertNotEquals(TranspositionTable.NONE, data);
+        assertEquals(move, TranspositionTable.getMove(data));
+        assertEquals(-250, TranspositionTable.getScore(data));
+        assertEquals(7, TranspositionTable.getDepth(data));
+        assertEquals(TranspositionTable.LOWER,
+                TranspositionTable.getBound(data));
+    }
+
+    @Test
+    public void otherPositionInSameBucketIsNotFound() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(HASH, Moves.NONE, 0, 1, TranspositionTable.EXACT);
+
+        // Flipping the same bit in both halves gives the same bucket
+        long other = HASH ^ (1L << 40) ^ (1L << 8);
+        assertEquals(TranspositionTable.NONE, table.probe(other));
+    }
+
+    @Test
+    public void clearRemovesEntries() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(HASH, Moves.NONE, 0, 1, TranspositionTable.EXACT);
+        table.clear();
+        assertEquals(TranspositionTable.NONE, table.probe(HASH));
+    }
+
+    /**
+     * Many threads write different entries for one position at once; every
+     * entry that is found must be one that was written whole.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void concurrentWritesNeverMix() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(1);
+        int numThreads = 4;
+        int[] mixed = new int[1];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 1; t <= numThreads; t++){
+            int value = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 200000; i++){
+                    table.store(HASH, value, value, value,
+                            TranspositionTable.EXACT);
+                    long data = table.probe(HASH);
+                    if (data != TranspositionTable.NONE
+                            && (TranspositionTable.getScore(data)
+                                    != TranspositionTable.getDepth(data))){
+                        synchronized (mixed){
+                            mixed[0]++;
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads){
+            thread.start();
+        }
+        for (Thread thread : threads){
+            thread.join();
+        }
+        assertEquals(0, mixed[0]);
+    }
+
+}
@@ -0,0 +1,130 @@
+package chess.pgn;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import chess.Game;
+
+/**
+ * Tests for {@link PgnReader}.
+ *
+ * @author Dan Bryce
+ */
+public class PgnReaderTest {
+
+    private static final String PGN = String.join("\n",
+            "[Event \"Comments, variations and NAGs\"]",
+            "[Result \"1-0\"]",
+            "",
+            "1. e4 e5 2. Nf3 {A comment} Nc6 3. Bb5 (3. Bc4 Bc5) a6 $1",
+            "4. Bxc6 dxc6 5. O-O 1-0",
+            "",
+            "[Event \"Custom position\"]",
+            "[SetUp \"1\"]",
+            "[FEN \"4k3/8/8/8/8/8/4P3/4K3 w - - 0 1\"]",
+            "",
+            "1. e4 Kd7 2. e5 1/2-1/2",
+            "",
+            "[Event \"Illegal move\"]",
+            "",
+            "1. e4 e5 2. Qh8 0-1",
+            "",
+            "[Event \"After a skipped game\"]",
+            "",
+            "1. d4 d5 0-1",
+            "");
+
+    private static final List<String> EXPECTED = List.of(
+            "r1bqkbnr/1pp2ppp/p1p5/4p3/4P3/5N2/PPPP1PPP/RNBQ1RK1 b kq - 1 5"
+                    + " WHITE_WINS",
+            "8/3k4/8/4P3/8/8/8/4K3 b - - 0 2 DRAW",
+            "rnbqkbnr/ppp1pppp/8/3p4/3P4/8/PPP1PPPP/RNBQKBNR w KQkq - 0 2"
+                    + " BLACK_WINS");
+
+    /**
+     * The number of moves in the games that are read successfully.
+     */
+    private static final int EXPECTED_MOVES = 9 + 3 + 2;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void readsGamesOnOneThread() throws IOException {
+        checkRead(1);
+    }
+
+    @Test
+    public void readsGamesOnSeveralThreads() throws IOException {
+        checkRead(4);
+    }
+
+    @Test
+    public void skipsMovesBeforeAnIllegalMove() throws IOException {
+        Path file = dir.resolve("illegal.pgn");
+        Files.write(file, "1. e4 e5 2. Nf3 Nc6 3. Qh8 Nf6 0-1\n"
+                .getBytes(StandardCharsets.US_ASCII));
+
+        AtomicInteger moves = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        long games = PgnReader.read(file, new PgnListener() {
+
+            @Override
+            public void movePlayed(Game game, int move) {
+                moves.incrementAndGet();
+            }
+
+            @Override
+            public void gameFinished(Game game, Result result) {
+                finished.incrementAndGet();
+            }
+
+        }, 1);
+
+        assertEquals(0, games);
+        assertEquals(0, moves.get());
+        assertEquals(0, finished.get());
+    }
+
+    private void checkRead(int numThreads) throws IOException {
+        Path file = dir.resolve("games.pgn");
+        Files.write(file, PGN.getBytes(StandardCharsets.US_ASCII));
+
+        AtomicInteger moves = new AtomicInteger();
+        List<String> finished = Collections.synchronizedList(
+                new ArrayList<>());
+        long games = PgnReader.read(file, new PgnListener() {
+
+            @Override
+            public void movePlayed(Game game, int move) {
+                moves.incrementAndGet();
+            }
+
+            @Override
+            public void gameFinished(Game game, Result result) {
+                finished.add(game.toFen() + " " + result);
+            }
+
+        }, numThreads);
+
+        assertEquals(EXPECTED.size(), games);
+        assertEquals(EXPECTED_MOVES, moves.get());
+        List<String> sorted = new ArrayList<>(finished);
+        Collections.sort(sorted);
+        List<String> expected = new ArrayList<>(EXPECTED);
+        Collections.sort(expected);
+        assertEquals(expected, sorted);
+    }
+
+}
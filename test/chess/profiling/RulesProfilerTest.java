@@ -0,0 +1,101 @@
+package chess.profiling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import chess.Game;
+import chess.MoveList;
+
+/**
+ * Tests for {@link RulesProfiler}.
+ *
+ * @author Dan Bryce
+ */
+public class RulesProfilerTest {
+
+    @BeforeEach
+    public void setUp() {
+        RulesProfiler.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RulesProfiler.setEnabled(false);
+        RulesProfiler.reset();
+    }
+
+    @Test
+    public void countsMovesInTheStartingPosition() {
+        RulesProfiler.setEnabled(true);
+        MoveList moves = new MoveList();
+        new Game().getValidMoves(moves);
+
+        assertEquals(20, moves.size());
+        assertEquals(1, RulesProfiler.getCalls(Operation.GENERATE_MOVES));
+        assertTrue(RulesProfiler.getTotalNanos(Operation.GENERATE_MOVES) > 0);
+        assertEquals(20, RulesProfiler.getLegalMoves());
+        assertEquals(20, RulesProfiler.getPseudoLegalMoves());
+        assertEquals(1.0, RulesProfiler.getLegalMoveRatio());
+    }
+
+    @Test
+    public void legalMoveRatio() {
+        RulesProfiler.setEnabled(true);
+        MoveList moves = new MoveList();
+        // The King can step to 5 squares, but only 3 are safe
+        new Game("4k3/8/8/8/8/8/4r3/4K3 w - - 0 1").getValidMoves(moves);
+
+        assertEquals(3, moves.size());
+        assertEquals(3, RulesProfiler.getLegalMoves());
+        assertEquals(5, RulesProfiler.getPseudoLegalMoves());
+        assertEquals(0.6, RulesProfiler.getLegalMoveRatio(), 1e-9);
+    }
+
+    @Test
+    public void beginAndEndCountCalls() {
+        for (int i = 0; i < 3; i++){
+            RulesEvent event = RulesProfiler.begin(Operation.UNDO_ACTION);
+            RulesProfiler.end(event);
+        }
+
+        assertEquals(3, RulesProfiler.getCalls(Operation.UNDO_ACTION));
+        assertTrue(RulesProfiler.getTotalNanos(Operation.UNDO_ACTION) > 0);
+        assertEquals(0, RulesProfiler.getCalls(Operation.EXECUTE_ACTION));
+    }
+
+    @Test
+    public void resetClearsCounters() {
+        RulesProfiler.setEnabled(true);
+        new Game().getValidMoves(new MoveList());
+        RulesProfiler.end(RulesProfiler.begin(Operation.EXECUTE_ACTION));
+
+        RulesProfiler.reset();
+
+        for (Operation operation : Operation.values()){
+            assertEquals(0, RulesProfiler.getCalls(operation));
+            assertEquals(0, RulesProfiler.getTotalNanos(operation));
+        }
+        assertEquals(0, RulesProfiler.getLegalMoves());
+        assertEquals(0, RulesProfiler.getPseudoLegalMoves());
+        assertEquals(1.0, RulesProfiler.getLegalMoveRatio());
+    }
+
+    @Test
+    public void disabledProfilerRecordsNothing() {
+        Game game = new Game();
+        game.getValidMoves(new MoveList());
+        game.play(game.getLegalMoves().get(0));
+        game.undo();
+
+        for (Operation operation : Operation.values()){
+            assertEquals(0, RulesProfiler.getCalls(operation));
+        }
+        assertEquals(0, RulesProfiler.getLegalMoves());
+        assertEquals(0, RulesProfiler.getPseudoLegalMoves());
+    }
+
+}
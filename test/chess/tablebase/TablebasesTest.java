@@ -0,0 +1,114 @@
+package chess.tablebase;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import chess.Game;
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+
+/**
+ * Generates the KQvK tablebase, and checks it against known positions.
+ *
+ * @author Dan Bryce
+ */
+public class TablebasesTest {
+
+    /**
+     * The longest mate in KQvK is in 10 moves.
+     */
+    private static final int LONGEST_KQVK_MATE_PLIES = 19;
+
+    @TempDir
+    static Path dir;
+
+    private static Tablebases tablebases;
+
+    @BeforeAll
+    public static void generate() throws IOException {
+        TablebaseGenerator.generate(dir, Material.parse("KQvK"),
+                new Tablebases(), Runtime.getRuntime().availableProcessors());
+        tablebases = Tablebases.open(dir);
+    }
+
+    @Test
+    public void mateInOne() {
+        int result = tablebases.probe(
+                new Game("k7/8/1K6/8/8/8/7Q/8 w - - 0 1"));
+        assertTrue(Tablebases.isWin(result));
+        assertEquals(1, Tablebases.getPliesToMate(result));
+    }
+
+    @Test
+    public void mated() {
+        int result = tablebases.probe(
+                new Game("k6Q/8/1K6/8/8/8/8/8 b - - 0 1"));
+        assertTrue(Tablebases.isLoss(result));
+        assertEquals(0, Tablebases.getPliesToMate(result));
+    }
+
+    @Test
+    public void stalemate() {
+        assertEquals(Tablebases.DRAW, tablebases.probe(
+                new Game("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1")));
+    }
+
+    @Test
+    public void queenCanBeCaptured() {
+        assertEquals(Tablebases.DRAW, tablebases.probe(
+                new Game("8/8/8/8/8/8/1Q6/k3K3 b - - 0 1")));
+    }
+
+    @Test
+    public void coloursSwapped() {
+        int result = tablebases.probe(
+                new Game("K7/8/1k6/8/8/8/7q/8 b - - 0 1"));
+        assertTrue(Tablebases.isWin(result));
+        assertEquals(1, Tablebases.getPliesToMate(result));
+    }
+
+    @Test
+    public void notFound() {
+        assertEquals(Tablebases.NOT_FOUND, tablebases.probe(
+                new Game("k7/8/1K6/8/8/8/8/6RR w - - 0 1")));
+    }
+
+    @Test
+    public void longestMate() {
+        // Black's King in the centre, and White's pieces in the corner
+        int result = tablebases.probe(
+                new Game("8/8/8/3k4/8/8/8/KQ6 w - - 0 1"));
+        assertTrue(Tablebases.isWin(result));
+        assertTrue(Tablebases.getPliesToMate(result)
+                <= LONGEST_KQVK_MATE_PLIES);
+    }
+
+    @Test
+    public void engineUsesTablebases() {
+        Engine engine = new Engine(new TranspositionTable(1));
+        try {
+            engine.setTablebases(tablebases);
+            Game game = new Game("k7/8/1K6/8/8/8/7Q/8 w - - 0 1");
+            SearchResult result = engine.search(game, SearchLimits.depth(1));
+            assertTrue(result.isMate());
+            assertTrue(result.getScore() > 0);
+            Game next = new Game(game);
+            next.play(result.getMove());
+            assertTrue(Tablebases.isLoss(tablebases.probe(next)));
+            assertEquals(0,
+                    Tablebases.getPliesToMate(tablebases.probe(next)));
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+}